@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a few clusters started in the background so that test classes which each need a cluster of their own do not
+ * have to wait for one to start.
+ *
+ * Each cluster comes from calling the given factory, which should build a new {@link DockerComposeRule} with its own
+ * project name each time. A {@link PooledCluster} takes a started cluster from the pool before its tests, and shuts
+ * it down afterwards, at which point the pool starts another to replace it.
+ *
+ * The pool keeps enough clusters started to cover the leases expected while a replacement starts up, estimated from
+ * recent lease intervals and startup times, between the minimum and maximum sizes.
+ */
+public class ClusterPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ClusterPool.class);
+
+    public static final int DEFAULT_MIN_SIZE = 1;
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /**
+     * The weight given to each new observation in the moving averages of lease intervals and startup times.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    private final Supplier<DockerComposeRule> clusterFactory;
+    private final int minSize;
+    private final int maxSize;
+    private final Ticker ticker;
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("cluster-pool-%d")
+            .setDaemon(true)
+            .build());
+    private final Deque<CompletableFuture<DockerComposeRule>> clusters = new ArrayDeque<>();
+    private final List<CompletableFuture<Void>> shutdowns = new ArrayList<>();
+
+    private long lastLeaseNanos = -1;
+    private double meanLeaseIntervalMillis = Double.NaN;
+    private double meanStartupMillis = Double.NaN;
+    private boolean closed = false;
+
+    ClusterPool(Supplier<DockerComposeRule> clusterFactory, int minSize, int maxSize, Ticker ticker) {
+        Preconditions.checkArgument(minSize >= 0, "minSize must not be negative, but was %s", minSize);
+        Preconditions.checkArgument(maxSize >= Math.max(minSize, 1),
+                "maxSize must be at least minSize and 1, but was %s", maxSize);
+        this.clusterFactory = clusterFactory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.ticker = ticker;
+        replenish();
+    }
+
+    public static ClusterPool of(Supplier<DockerComposeRule> clusterFactory) {
+        return of(clusterFactory, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Starts a pool which shuts its clusters down when the JVM exits, if it has not been closed before then.
+     */
+    public static ClusterPool of(Supplier<DockerComposeRule> clusterFactory, int minSize, int maxSize) {
+        ClusterPool pool = new ClusterPool(clusterFactory, minSize, maxSize, Ticker.systemTicker());
+        Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "cluster-pool-shutdown"));
+        return pool;
+    }
+
+    /**
+     * A rule which takes a cluster from this pool for the duration of a test class.
+     */
+    public PooledCluster lease() {
+        return new PooledCluster(this);
+    }
+
+    /**
+     * Takes the longest-running started cluster from the pool, waiting for one to start if none are ready yet.
+     */
+    DockerComposeRule take() throws IOException, InterruptedException {
+        CompletableFuture<DockerComposeRule> cluster;
+        synchronized (this) {
+            Preconditions.checkState(!closed, "Cluster pool has been closed");
+            recordLease();
+            if (clusters.isEmpty()) {
+                startCluster();
+            }
+            cluster = clusters.removeFirst();
+            replenish();
+        }
+
+        try {
+            return cluster.get();
+        } catch (InterruptedException e) {
+            cluster.thenAccept(this::release);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            Throwables.propagateIfPossible(cause, IOException.class, InterruptedException.class);
+            throw new RuntimeException("Error starting pooled docker-compose cluster", cause);
+        }
+    }
+
+    /**
+     * Shuts down a cluster which is no longer needed in the background, and starts another in its place.
+     */
+    synchronized void release(DockerComposeRule cluster) {
+        if (closed) {
+            shutDown(cluster);
+            return;
+        }
+        shutdowns.add(CompletableFuture.runAsync(() -> shutDown(cluster), executor));
+        replenish();
+    }
+
+    /**
+     * How many started clusters the pool tries to keep ready.
+     */
+    synchronized int targetSize() {
+        if (Double.isNaN(meanLeaseIntervalMillis) || Double.isNaN(meanStartupMillis)) {
+            return minSize;
+        }
+        int needed = (int) Math.ceil(meanStartupMillis / Math.max(meanLeaseIntervalMillis, 1));
+        return Math.max(minSize, Math.min(maxSize, needed));
+    }
+
+    @Override
+    public void close() {
+        List<CompletableFuture<DockerComposeRule>> remaining;
+        List<CompletableFuture<Void>> pendingShutdowns;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            remaining = new ArrayList<>(clusters);
+            clusters.clear();
+            pendingShutdowns = new ArrayList<>(shutdowns);
+        }
+
+        log.info("Shutting down {} pooled docker-compose clusters", remaining.size());
+        remaining.forEach(cluster -> pendingShutdowns.add(cluster.thenAcceptAsync(this::shutDown, executor)));
+        CompletableFuture.allOf(pendingShutdowns.toArray(new CompletableFuture<?>[pendingShutdowns.size()]))
+                .handle((ignored, failure) -> null)
+                .join();
+        executor.shutdown();
+    }
+
+    private void replenish() {
+        shutdowns.removeIf(CompletableFuture::isDone);
+        while (!closed && clusters.size() < targetSize()) {
+            startCluster();
+        }
+    }
+
+    private void startCluster() {
+        clusters.addLast(CompletableFuture.supplyAsync(this::startNewCluster, executor));
+    }
+
+    private DockerComposeRule startNewCluster() {
+        DockerComposeRule cluster = clusterFactory.get();
+        long start = ticker.read();
+        try {
+            log.debug("Starting pooled docker-compose cluster '{}'", cluster.projectName().asString());
+            cluster.before();
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            shutDown(cluster);
+            throw new CompletionException(e);
+        }
+        recordStartup(TimeUnit.NANOSECONDS.toMillis(ticker.read() - start));
+        return cluster;
+    }
+
+    private void shutDown(DockerComposeRule cluster) {
+        try {
+            cluster.after();
+        } catch (RuntimeException e) {
+            log.warn("Error shutting down pooled docker-compose cluster", e);
+        }
+    }
+
+    synchronized void recordLease() {
+        long now = ticker.read();
+        if (lastLeaseNanos >= 0) {
+            long interval = TimeUnit.NANOSECONDS.toMillis(now - lastLeaseNanos);
+            meanLeaseIntervalMillis = movingAverage(meanLeaseIntervalMillis, interval);
+        }
+        lastLeaseNanos = now;
+    }
+
+    synchronized void recordStartup(long millis) {
+        meanStartupMillis = movingAverage(meanStartupMillis, millis);
+    }
+
+    private static double movingAverage(double average, long observation) {
+        return Double.isNaN(average) ? observation : SMOOTHING * observation + (1 - SMOOTHING) * average;
+    }
+}
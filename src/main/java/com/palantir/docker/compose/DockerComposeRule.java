@@ -5,9 +5,17 @@ package com.palantir.docker.compose;
 
 import static com.palantir.docker.compose.connection.waiting.ClusterHealthCheck.serviceHealthCheck;
 import static com.palantir.docker.compose.connection.waiting.ClusterHealthCheck.transformingHealthCheck;
-
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.build.CachedImage;
+import com.palantir.docker.compose.build.ImageCache;
+import com.palantir.docker.compose.build.ImagePrePull;
+import com.palantir.docker.compose.build.IncrementalBuild;
+import com.palantir.docker.compose.build.ParallelBuild;
 import com.palantir.docker.compose.configuration.DockerComposeFiles;
 import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ServiceGraph;
 import com.palantir.docker.compose.configuration.ShutdownStrategy;
 import com.palantir.docker.compose.connection.Cluster;
 import com.palantir.docker.compose.connection.Container;
@@ -17,7 +25,10 @@ import com.palantir.docker.compose.connection.DockerPort;
 import com.palantir.docker.compose.connection.ImmutableCluster;
 import com.palantir.docker.compose.connection.waiting.ClusterHealthCheck;
 import com.palantir.docker.compose.connection.waiting.ClusterWait;
+import com.palantir.docker.compose.connection.waiting.DependencyOrderedWaits;
 import com.palantir.docker.compose.connection.waiting.HealthCheck;
+import com.palantir.docker.compose.connection.waiting.ReadinessHistory;
+import com.palantir.docker.compose.execution.BackgroundShutdownStrategy;
 import com.palantir.docker.compose.execution.ConflictingContainerRemovingDockerCompose;
 import com.palantir.docker.compose.execution.DefaultDockerCompose;
 import com.palantir.docker.compose.execution.Docker;
@@ -29,16 +40,32 @@ import com.palantir.docker.compose.execution.DockerComposeRunArgument;
 import com.palantir.docker.compose.execution.DockerComposeRunOption;
 import com.palantir.docker.compose.execution.DockerExecutable;
 import com.palantir.docker.compose.execution.RetryingDockerCompose;
+import com.palantir.docker.compose.execution.SidecarProbingDockerCompose;
 import com.palantir.docker.compose.logging.DoNothingLogCollector;
 import com.palantir.docker.compose.logging.FileLogCollector;
 import com.palantir.docker.compose.logging.LogCollector;
 import com.palantir.docker.compose.logging.LogDirectory;
+import com.palantir.docker.compose.sidecar.SidecarProber;
+import com.palantir.docker.compose.warmup.WarmUp;
+import com.palantir.docker.compose.watchdog.DoNothingWatchdog;
+import com.palantir.docker.compose.watchdog.DockerEventsWatchdog;
+import com.palantir.docker.compose.watchdog.Watchdog;
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import org.immutables.value.Value;
 import org.joda.time.Duration;
 import org.joda.time.ReadableDuration;
 import org.junit.rules.ExternalResource;
+import org.junit.rules.TestRule;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,8 +74,13 @@ import org.slf4j.LoggerFactory;
 public abstract class DockerComposeRule extends ExternalResource {
     public static final Duration DEFAULT_TIMEOUT = Duration.standardMinutes(2);
     public static final int DEFAULT_RETRY_ATTEMPTS = 2;
+    public static final Duration DEFAULT_STOP_TIMEOUT = Duration.standardSeconds(10);
+    public static final Duration DEFAULT_LEAKED_PROJECT_TIME_TO_LIVE = Duration.standardHours(6);
 
     private static final Logger log = LoggerFactory.getLogger(DockerComposeRule.class);
+    private static final Pattern UNHEALTHY_STATUS = Pattern.compile("\\((unhealthy|health: starting|Paused)\\)");
+
+    private final LazyServices lazyServices = new LazyServices();
 
     public DockerPort hostNetworkedPort(int port) {
         return new DockerPort(machine().getIp(), port, port);
@@ -58,6 +90,40 @@ public abstract class DockerComposeRule extends ExternalResource {
 
     protected abstract List<ClusterWait> clusterWaits();
 
+    /**
+     * The services to start, along with the services they depend on. When empty, every service is started.
+     */
+    protected abstract Set<String> services();
+
+    /**
+     * Rather than starting the services before the tests run, start each one, along with the services it depends
+     * on, when the cluster is first asked for its container. See {@link LazyServices} for details.
+     */
+    @Value.Default
+    protected boolean lazyStart() {
+        return false;
+    }
+
+    /**
+     * Run after all the waits have passed, before the tests start.
+     */
+    protected abstract List<WarmUp> warmUps();
+
+    /**
+     * A directory in which to keep a history of how long each wait takes to pass. See
+     * {@link ClusterWait#withReadinessHistory} for how it is used.
+     */
+    protected abstract Optional<String> readinessHistoryDirectory();
+
+    /**
+     * Fail, rather than just warn, when waits with a {@link #readinessHistoryDirectory()} take much longer to pass
+     * than they have in the past.
+     */
+    @Value.Default
+    protected boolean failOnSlowStartup() {
+        return false;
+    }
+
     @Value.Default
     public DockerMachine machine() {
         return DockerMachine.localMachine().build();
@@ -65,6 +131,12 @@ public abstract class DockerComposeRule extends ExternalResource {
 
     @Value.Default
     public ProjectName projectName() {
+        if (keepAlive()) {
+            return KeptAliveCluster.projectName(files(), machine());
+        }
+        if (shareCluster()) {
+            return SharedClusters.instance().projectName(SharedClusters.key(this), sharedClusterLockDirectory());
+        }
         return ProjectName.random();
     }
 
@@ -94,6 +166,15 @@ public abstract class DockerComposeRule extends ExternalResource {
         return ShutdownStrategy.GRACEFUL;
     }
 
+    /**
+     * How long the {@link ShutdownStrategy#GRACEFUL graceful shutdown strategy} gives containers to stop after
+     * sending them SIGTERM, before killing them.
+     */
+    @Value.Default
+    public ReadableDuration stopTimeout() {
+        return DEFAULT_STOP_TIMEOUT;
+    }
+
     @Value.Default
     public DockerCompose dockerCompose() {
         DockerCompose dockerCompose = new DefaultDockerCompose(dockerComposeExecutable(), machine());
@@ -102,9 +183,16 @@ public abstract class DockerComposeRule extends ExternalResource {
 
     @Value.Default
     public Cluster containers() {
+        DockerCompose containerDockerCompose = dockerCompose();
+        if (probeFromSidecar()) {
+            containerDockerCompose = new SidecarProbingDockerCompose(containerDockerCompose, sidecarProber());
+        }
+        ContainerCache containerCache = lazyStart()
+                ? new LazyServices.StartingContainerCache(containerDockerCompose, this, lazyServices)
+                : new ContainerCache(containerDockerCompose);
         return ImmutableCluster.builder()
                 .ip(machine().getIp())
-                .containerCache(new ContainerCache(dockerCompose()))
+                .containerCache(containerCache)
                 .build();
     }
 
@@ -123,33 +211,470 @@ public abstract class DockerComposeRule extends ExternalResource {
         return new DoNothingLogCollector();
     }
 
+    @Value.Default
+    protected Watchdog watchdog() {
+        return new DoNothingWatchdog();
+    }
+
+    /**
+     * Run the port and HTTP checks on containers from a small container on the project's default network, rather than
+     * from the JVM. See {@link SidecarProber} for details.
+     */
+    @Value.Default
+    protected boolean probeFromSidecar() {
+        return false;
+    }
+
+    /**
+     * The image of the container which runs the checks when {@link #probeFromSidecar() probing from a sidecar}.
+     */
+    @Value.Default
+    protected String sidecarImage() {
+        return SidecarProber.DEFAULT_IMAGE;
+    }
+
+    @Value.Default
+    protected SidecarProber sidecarProber() {
+        return new SidecarProber(docker(), projectName().asString() + "_default", sidecarImage());
+    }
+
+    /**
+     * Use the same cluster as every other rule in the JVM with the same docker-compose files, environment and waits,
+     * rather than starting a new one. See {@link SharedClusters} for details.
+     */
+    @Value.Default
+    protected boolean shareCluster() {
+        return false;
+    }
+
+    /**
+     * How long to keep a shared cluster running once no rules are using it. When absent, it is kept running until
+     * the JVM exits, so that test classes which run one after another can all use it.
+     */
+    protected abstract Optional<ReadableDuration> sharedClusterIdleTimeout();
+
+    /**
+     * A directory through which to share the cluster with other JVMs on the same machine, such as the other forks of
+     * a parallel test task. See {@link SharedClusterLeases} for details.
+     */
+    protected abstract Optional<String> sharedClusterLockDirectory();
+
+    /**
+     * Use the cluster left running by the last run of the tests, if the docker-compose files have not changed since
+     * it was started and all its containers are still up. See {@link KeptAliveCluster} for details.
+     */
+    @Value.Default
+    protected boolean keepAlive() {
+        return false;
+    }
+
+    /**
+     * When the docker-compose files of a cluster which is kept alive have changed, bring it up to date rather than
+     * starting it again from scratch, only recreating and waiting on the services which changed and their dependents.
+     * See {@link IncrementalUp} for details.
+     */
+    @Value.Default
+    protected boolean incrementalUp() {
+        return false;
+    }
+
+    /**
+     * Where to record the fingerprints of the docker-compose files of clusters which are kept alive.
+     */
+    @Value.Default
+    protected String keepAliveDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "docker-compose-rule").getPath();
+    }
+
+    /**
+     * Before starting, remove the projects left behind by test JVMs which died without shutting their clusters down,
+     * along with any projects older than this. See {@link LeakedProjects} for details.
+     */
+    protected abstract Optional<ReadableDuration> leakedProjectTimeToLive();
+
+    /**
+     * Build only the images of services whose build context, Dockerfile or build args have changed since an image
+     * was last built from them, rather than running <code>docker-compose build</code> every time. See
+     * {@link IncrementalBuild} for details.
+     */
+    @Value.Default
+    protected boolean skipUnchangedBuilds() {
+        return false;
+    }
+
+    /**
+     * Where to keep the hashes of files in build contexts, so that unchanged files are not read again.
+     */
+    @Value.Default
+    protected String buildCacheDirectory() {
+        return new File(System.getProperty("java.io.tmpdir"), "docker-compose-rule").getPath();
+    }
+
+    /**
+     * How many services to build at once. Above one, the rule builds each service separately rather than running
+     * <code>docker-compose build</code>. See {@link ParallelBuild} for details.
+     */
+    @Value.Default
+    protected int buildParallelism() {
+        return ParallelBuild.DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * How many images to pull at once before starting the cluster, or none to leave docker-compose to pull them one
+     * at a time. See {@link ImagePrePull} for details.
+     */
+    protected abstract Optional<Integer> pullParallelism();
+
+    /**
+     * A directory of saved images to load before building or pulling anything, and to save new images to once the
+     * cluster is up. See {@link ImageCache} for details.
+     */
+    protected abstract Optional<ImageCache> imageCache();
+
+    /**
+     * Run the waits on services in the order given by the <code>depends_on</code> and <code>links</code>
+     * sections of the docker-compose files, waiting on independent services in parallel,
+     * rather than one after another in the order they were added.
+     */
+    @Value.Default
+    protected boolean waitInDependencyOrder() {
+        return false;
+    }
+
     @Override
     public void before() throws IOException, InterruptedException {
+        if (leakedProjectTimeToLive().isPresent()) {
+            LeakedProjects.reapOnce(this, leakedProjectTimeToLive().get());
+        }
+        if (shareCluster()) {
+            SharedClusters.instance().attach(SharedClusters.key(this), this);
+        } else {
+            startCluster();
+        }
+        watchdog().startWatching(this);
+    }
+
+    void startCluster() throws IOException, InterruptedException {
+        BackgroundShutdownStrategy.awaitTeardown(projectName());
+        if (!keepAlive()) {
+            startNewCluster();
+            return;
+        }
+
+        KeptAliveCluster keptAlive = new KeptAliveCluster(new File(keepAliveDirectory()), projectName(), files());
+        if (keptAlive.isReusable(this)) {
+            log.info("Using docker-compose project '{}' kept alive by an earlier run", projectName().asString());
+            attachToCluster();
+            return;
+        }
+        if (incrementalUp() && !containerStatuses().isEmpty()) {
+            log.info("Updating docker-compose project '{}' kept alive by an earlier run", projectName().asString());
+            updateCluster(keptAlive.forget());
+        } else {
+            keptAlive.discard(this);
+            startNewCluster();
+        }
+        keptAlive.record();
+    }
+
+    private void startNewCluster() throws IOException, InterruptedException {
+        if (ownsCluster()) {
+            LeakedProjects.stamp(this);
+        }
+        if (lazyStart()) {
+            log.debug("Starting docker-compose services on first use");
+            warmUps().forEach(warmUp -> warmUp.run(containers()));
+            return;
+        }
+
         log.debug("Starting docker-compose cluster");
-        dockerCompose().build();
+        List<CachedImage> cachedImages = prepareImages(services());
+        List<ClusterWait> waits = clusterWaits();
+        if (services().isEmpty()) {
+            upDockerCompose().up();
+        } else {
+            upDockerCompose().up(services());
+            Set<String> started = ServiceGraph.parseFromDockerComposeConfig(dockerCompose().config())
+                    .subgraph(services())
+                    .services();
+            waits = waits.stream()
+                    .filter(wait -> started.containsAll(wait.services()))
+                    .collect(toList());
+        }
+        afterUp(cachedImages);
 
-        DockerCompose upDockerCompose = dockerCompose();
+        log.debug("Waiting for services");
+        waitForServices(waits);
+        warmUps().forEach(warmUp -> warmUp.run(containers()));
+        log.debug("docker-compose cluster started");
+    }
+
+    /**
+     * Starts services on their first use, when {@link #lazyStart() starting them lazily}, without waiting for them.
+     *
+     * @param newServices the services to start, including any services they depend on which are not yet started
+     * @param firstStart whether nothing has been started before
+     */
+    void upLazily(Set<String> newServices, boolean firstStart) throws IOException, InterruptedException {
+        List<CachedImage> cachedImages = prepareImages(newServices);
+        upDockerCompose().up(newServices);
+        if (firstStart) {
+            afterUp(cachedImages);
+            return;
+        }
+        if (imageCache().isPresent()) {
+            imageCache().get().saveInBackground(docker(), cachedImages);
+        }
+        logCollector().startCollectingNewContainers(dockerCompose());
+    }
+
+    /**
+     * Waits on services started by {@link #upLazily}.
+     *
+     * @param newServices the services just started
+     * @param startedServices every service started or being started so far, including the new ones
+     * @param firstStart whether nothing had been started before
+     */
+    void waitLazily(Set<String> newServices, Set<String> startedServices, boolean firstStart)
+            throws IOException, InterruptedException {
+        waitForServices(clusterWaits().stream()
+                .filter(wait -> wait.services().isEmpty()
+                        ? firstStart
+                        : startedServices.containsAll(wait.services())
+                                && !Collections.disjoint(wait.services(), newServices))
+                .collect(toList()));
+    }
+
+    /**
+     * Brings a cluster left running by an earlier run up to date, only waiting again on the services which changed,
+     * unless the earlier run never finished starting or updating it.
+     */
+    private void updateCluster(boolean earlierRunFinished) throws IOException, InterruptedException {
+        log.debug("Updating docker-compose cluster");
+        List<CachedImage> cachedImages = prepareImages(services());
+        Set<String> changed = earlierRunFinished
+                ? new IncrementalUp(this).up(upDockerCompose())
+                : upEveryService();
+        afterUp(cachedImages);
+        if (changed.isEmpty()) {
+            log.debug("No services changed, so not waiting for anything");
+            return;
+        }
+
+        log.debug("Waiting for services {}", changed);
+        waitForServices(clusterWaits().stream()
+                .filter(wait -> wait.services().isEmpty() || !Collections.disjoint(wait.services(), changed))
+                .collect(toList()));
+        warmUps().forEach(warmUp -> warmUp.run(containers()));
+        log.debug("docker-compose cluster updated");
+    }
+
+    private Set<String> upEveryService() throws IOException, InterruptedException {
+        log.info("An earlier run did not finish starting docker-compose project '{}', so waiting for every service",
+                projectName().asString());
+        ServiceGraph serviceGraph = ServiceGraph.parseFromDockerComposeConfig(dockerCompose().config());
+        if (services().isEmpty()) {
+            upDockerCompose().up();
+            return serviceGraph.services();
+        }
+        upDockerCompose().up(services());
+        return serviceGraph.subgraph(services()).services();
+    }
+
+    /**
+     * Whether the cluster lives no longer than this JVM, so is leaked if the JVM dies before shutting it down.
+     */
+    private boolean ownsCluster() {
+        return !keepAlive()
+                && !sharedClusterLockDirectory().isPresent()
+                && shutdownStrategy() != ShutdownStrategy.SKIP
+                && shutdownStrategy() != ShutdownStrategy.KEEP_ALIVE;
+    }
+
+    private DockerCompose upDockerCompose() {
         if (removeConflictingContainersOnStartup()) {
-            upDockerCompose = new ConflictingContainerRemovingDockerCompose(upDockerCompose, docker());
+            return new ConflictingContainerRemovingDockerCompose(dockerCompose(), docker());
         }
-        upDockerCompose.up();
+        return dockerCompose();
+    }
 
+    private void afterUp(List<CachedImage> cachedImages) throws IOException, InterruptedException {
+        if (imageCache().isPresent()) {
+            imageCache().get().saveInBackground(docker(), cachedImages);
+        }
+        if (probeFromSidecar()) {
+            sidecarProber().start();
+        }
         logCollector().startCollecting(dockerCompose());
-        log.debug("Waiting for services");
-        clusterWaits().forEach(clusterWait -> clusterWait.waitUntilReady(containers()));
-        log.debug("docker-compose cluster started");
+    }
+
+    /**
+     * Whether every container of a cluster started by another rule or an earlier run with the same project name is
+     * still up, and none is paused, unhealthy or still waiting for its first docker health check to pass.
+     */
+    boolean isClusterAlive() throws IOException, InterruptedException {
+        List<String> statuses = containerStatuses();
+        return !statuses.isEmpty() && statuses.stream().allMatch(DockerComposeRule::isUpAndHealthy);
+    }
+
+    static boolean isUpAndHealthy(String status) {
+        return status.startsWith("Up") && !UNHEALTHY_STATUS.matcher(status).find();
+    }
+
+    List<String> containerStatuses() throws IOException, InterruptedException {
+        return docker().statuses("label=com.docker.compose.project=" + projectName().asString());
+    }
+
+    void attachToCluster() throws IOException, InterruptedException {
+        if (probeFromSidecar()) {
+            sidecarProber().start();
+        }
+    }
+
+    void detachFromCluster() {
+        if (!probeFromSidecar()) {
+            return;
+        }
+        try {
+            sidecarProber().stop();
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException("Error stopping sidecar prober", e);
+        }
+    }
+
+    /**
+     * Builds and pulls the images of the services, after loading any which are in the image cache.
+     *
+     * @param services the services whose images to prepare, along with the services they depend on, or none for all
+     * @return the images which can be saved to the image cache
+     */
+    private List<CachedImage> prepareImages(Set<String> services) throws IOException, InterruptedException {
+        if (!buildsEachService(services) && !imageCache().isPresent() && !pullParallelism().isPresent()) {
+            dockerCompose().build();
+            return Collections.emptyList();
+        }
+
+        ServiceGraph serviceGraph = ServiceGraph.parseFromDockerComposeConfig(dockerCompose().config());
+        if (!services.isEmpty()) {
+            serviceGraph = serviceGraph.subgraph(services);
+        }
+        Optional<IncrementalBuild> incrementalBuild = skipUnchangedBuilds()
+                ? Optional.of(new IncrementalBuild(
+                        docker(), projectName(), new File(buildCacheDirectory()), buildParallelism()))
+                : Optional.empty();
+        List<CachedImage> cachedImages = Collections.emptyList();
+        if (imageCache().isPresent()) {
+            cachedImages = ImageCache.imagesOf(serviceGraph, incrementalBuild);
+            imageCache().get().load(docker(), cachedImages);
+        }
+        CompletableFuture<Void> pulls = pullParallelism().isPresent()
+                ? new ImagePrePull(docker(), pullParallelism().get()).pullMissing(serviceGraph.pulledImages())
+                : CompletableFuture.completedFuture(null);
+
+        if (incrementalBuild.isPresent()) {
+            incrementalBuild.get().build(serviceGraph);
+        } else if (buildsEachService(services)) {
+            new ParallelBuild(buildParallelism())
+                    .build(serviceGraph.servicesWithBuilds(), service -> dockerCompose().build(service));
+        } else {
+            dockerCompose().build();
+        }
+        pulls.join();
+        return cachedImages;
+    }
+
+    /**
+     * Whether to build each service separately, rather than all of them with a single
+     * <code>docker-compose build</code>.
+     */
+    private boolean buildsEachService(Set<String> services) {
+        return skipUnchangedBuilds() || buildParallelism() > 1 || !services.isEmpty();
+    }
+
+    private void waitForServices(List<ClusterWait> clusterWaits) throws IOException, InterruptedException {
+        List<ClusterWait> waits = clusterWaits;
+        if (readinessHistoryDirectory().isPresent()) {
+            ReadinessHistory history = ReadinessHistory.forFiles(
+                    new File(readinessHistoryDirectory().get()), files(), failOnSlowStartup());
+            waits = waits.stream()
+                    .map(wait -> wait.withReadinessHistory(history))
+                    .collect(toList());
+        }
+
+        if (waitInDependencyOrder()) {
+            ServiceGraph serviceGraph = ServiceGraph.parseFromDockerComposeConfig(dockerCompose().config());
+            new DependencyOrderedWaits(serviceGraph, waits).waitUntilReady(waitedOnContainers());
+        } else {
+            Cluster containers = waitedOnContainers();
+            waits.forEach(clusterWait -> clusterWait.waitUntilReady(containers));
+        }
+    }
+
+    /**
+     * The containers for the waits to check, which must not wait in turn for the services they check to be started
+     * when starting them lazily.
+     */
+    private Cluster waitedOnContainers() {
+        Cluster containers = containers();
+        if (containers.containerCache() instanceof LazyServices.StartingContainerCache) {
+            return ImmutableCluster.builder()
+                    .from(containers)
+                    .containerCache(((LazyServices.StartingContainerCache) containers.containerCache())
+                            .withoutStarting())
+                    .build();
+        }
+        return containers;
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        return super.apply(watchdog().guard(base, description), description);
+    }
+
+    /**
+     * A rule which fails each test during which a container dies, for use alongside a cluster which is a
+     * {@link org.junit.ClassRule}. Without it, such a death fails the test class once all its tests have run.
+     */
+    public TestRule failingTestsOnContainerDeath() {
+        return (base, description) -> watchdog().guard(base, description);
     }
 
     @Override
     public void after() {
+        watchdog().stopWatching();
+        if (shareCluster()) {
+            SharedClusters.instance().detach(SharedClusters.key(this), this);
+        } else {
+            stopCluster();
+        }
+    }
+
+    void stopCluster() {
         try {
-            shutdownStrategy().shutdown(this);
-            logCollector().stopCollecting();
+            if (probeFromSidecar()) {
+                sidecarProber().stop();
+            }
+            shutdownStrategy().shutdown(this, this::afterShutdown);
+            lazyServices.reset();
+            if (imageCache().isPresent()) {
+                imageCache().get().awaitSaves();
+            }
         } catch (IOException | InterruptedException e) {
             throw new RuntimeException("Error cleaning up docker compose cluster", e);
         }
     }
 
+    /**
+     * Runs once the containers have stopped, which with {@link ShutdownStrategy#BACKGROUND} is only once the
+     * background teardown has finished.
+     */
+    private void afterShutdown() throws InterruptedException {
+        logCollector().stopCollecting();
+        if (ownsCluster()) {
+            LeakedProjects.unstamp(this);
+        }
+    }
+
     public String exec(DockerComposeExecOption options, String containerName,
             DockerComposeExecArgument arguments) throws IOException, InterruptedException {
         return dockerCompose().exec(options, containerName, arguments);
@@ -182,6 +707,152 @@ public abstract class DockerComposeRule extends ExternalResource {
             return logCollector(FileLogCollector.fromPath(path));
         }
 
+        /**
+         * Fail the running test as soon as a container in the cluster exits with a non-zero exit code
+         * or is killed for running out of memory, rather than waiting for the test to time out.
+         *
+         * See {@link DockerEventsWatchdog} for details.
+         */
+        public Builder failFastOnContainerDeath() {
+            return watchdog(new DockerEventsWatchdog());
+        }
+
+        /**
+         * Run the port and HTTP checks of {@link com.palantir.docker.compose.connection.waiting.HealthChecks} from a
+         * container on the project's network, which saves a network round trip per probe when docker is remote.
+         *
+         * See {@link SidecarProber} for details.
+         */
+        public Builder probingFromSidecar() {
+            return probeFromSidecar(true);
+        }
+
+        /**
+         * Probe from a sidecar as with {@link #probingFromSidecar()}, using the given image, which must have the
+         * busybox <code>sh</code>, <code>nc</code> and <code>wget</code>, e.g. from a local registry mirror.
+         */
+        public Builder probingFromSidecar(String image) {
+            return probeFromSidecar(true).sidecarImage(image);
+        }
+
+        /**
+         * Use the same cluster as every other rule in the JVM with the same docker-compose files, environment and
+         * waits, keeping it running until the JVM exits.
+         *
+         * See {@link SharedClusters} for details.
+         */
+        public Builder sharingCluster() {
+            return shareCluster(true);
+        }
+
+        /**
+         * Use the same cluster as every other rule in the JVM with the same docker-compose files, environment and
+         * waits, shutting it down once no rules have used it for <code>idleTimeout</code>.
+         */
+        public Builder sharingCluster(ReadableDuration idleTimeout) {
+            return shareCluster(true).sharedClusterIdleTimeout(idleTimeout);
+        }
+
+        /**
+         * Use the same cluster as every other JVM on the machine whose rules have the same docker-compose files,
+         * environment and waits and the same <code>lockDirectory</code>, such as the forks of a test task with
+         * <code>maxParallelForks</code> set. The cluster is shut down once the last of them is finished with it.
+         *
+         * See {@link SharedClusterLeases} for details.
+         */
+        public Builder sharingClusterBetweenJvms(String lockDirectory) {
+            return shareCluster(true).sharedClusterLockDirectory(lockDirectory);
+        }
+
+        /**
+         * Only start the given services and the services they depend on, and only run the waits on those services.
+         */
+        public Builder services(String... serviceNames) {
+            return addService(serviceNames);
+        }
+
+        /**
+         * Only start each service, along with the services it depends on, when a test first asks the cluster for
+         * its container, and only then run the waits on it. Services which no test uses are never started.
+         *
+         * See {@link LazyServices} for details.
+         */
+        public Builder startingServicesLazily() {
+            return lazyStart(true);
+        }
+
+        /**
+         * Leave the cluster running after the tests, and use it again on the next run rather than starting a new one,
+         * unless the docker-compose files have changed or any of its containers have stopped. This saves waiting for
+         * the cluster to start each time the tests are run locally, but should never be used on CI.
+         *
+         * See {@link KeptAliveCluster} for details.
+         */
+        public Builder keepingClusterAlive() {
+            return keepAlive(true).shutdownStrategy(ShutdownStrategy.KEEP_ALIVE);
+        }
+
+        /**
+         * Keep the cluster alive as with {@link #keepingClusterAlive()}, but when the docker-compose files have
+         * changed, only recreate the services whose configuration or image has changed and the services which depend
+         * on them, and only run the waits on those services.
+         *
+         * See {@link IncrementalUp} for details.
+         */
+        public Builder keepingClusterAliveAndUpdatingIt() {
+            return keepingClusterAlive().incrementalUp(true);
+        }
+
+        /**
+         * Before starting, remove the clusters left behind by test JVMs on this machine which crashed or were
+         * killed, and any clusters of other machines started more than
+         * {@link DockerComposeRule#DEFAULT_LEAKED_PROJECT_TIME_TO_LIVE} ago.
+         *
+         * See {@link LeakedProjects} for details.
+         */
+        public Builder reapingLeakedProjects() {
+            return leakedProjectTimeToLive(DEFAULT_LEAKED_PROJECT_TIME_TO_LIVE);
+        }
+
+        /**
+         * Only build the images of services whose build contexts have changed since they were last built.
+         *
+         * See {@link IncrementalBuild} for details.
+         */
+        public Builder skippingUnchangedBuilds() {
+            return skipUnchangedBuilds(true);
+        }
+
+        /**
+         * Build up to <code>parallelism</code> services at once, each with its own build.
+         *
+         * See {@link ParallelBuild} for details.
+         */
+        public Builder buildingInParallel(int parallelism) {
+            return buildParallelism(parallelism);
+        }
+
+        /**
+         * Pull the images of services which are not already present, {@link ImagePrePull#DEFAULT_PARALLELISM} at a
+         * time, while building the others.
+         *
+         * See {@link ImagePrePull} for details.
+         */
+        public Builder pullingImagesInParallel() {
+            return pullParallelism(ImagePrePull.DEFAULT_PARALLELISM);
+        }
+
+        /**
+         * Load images from <code>docker save</code> tarballs in <code>path</code> rather than building or pulling
+         * them, and save the images which are not there yet once the cluster is up, keeping up to
+         * {@link ImageCache#DEFAULT_MAX_BYTES} of the most recently used ones.
+         *
+         * See {@link ImageCache} for details.
+         */
+        public Builder cachingImagesIn(String path) {
+            return imageCache(ImageCache.fromPath(path));
+        }
+
         /**
          * @deprecated Please use {@link DockerComposeRule#shutdownStrategy()} with {@link ShutdownStrategy#SKIP} instead.
          */
@@ -200,7 +871,7 @@ public abstract class DockerComposeRule extends ExternalResource {
 
         public Builder waitingForService(String serviceName, HealthCheck<Container> healthCheck, ReadableDuration timeout) {
             ClusterHealthCheck clusterHealthCheck = serviceHealthCheck(serviceName, healthCheck);
-            return addClusterWait(new ClusterWait(clusterHealthCheck, timeout));
+            return addClusterWait(new ClusterWait(clusterHealthCheck, timeout, ImmutableList.of(serviceName)));
         }
 
         public Builder waitingForServices(List<String> services, HealthCheck<List<Container>> healthCheck) {
@@ -209,7 +880,16 @@ public abstract class DockerComposeRule extends ExternalResource {
 
         public Builder waitingForServices(List<String> services, HealthCheck<List<Container>> healthCheck, ReadableDuration timeout) {
             ClusterHealthCheck clusterHealthCheck = serviceHealthCheck(services, healthCheck);
-            return addClusterWait(new ClusterWait(clusterHealthCheck, timeout));
+            return addClusterWait(new ClusterWait(clusterHealthCheck, timeout, services));
+        }
+
+        /**
+         * Once the services are ready, send HTTP requests to one until its latency settles down.
+         * Use {@link #addWarmUp} with a {@link WarmUp#builder()} to tune the warm-up or send other kinds of request.
+         */
+        public Builder warmingUpService(String serviceName, int internalPort,
+                Function<DockerPort, String> urlFunction) {
+            return addWarmUp(WarmUp.builder().httpRequestsTo(serviceName, internalPort, urlFunction).build());
         }
 
         public Builder waitingForHostNetworkedPort(int port, HealthCheck<DockerPort> healthCheck) {
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.immutables.value.Value;
+import org.joda.time.Duration;
+import org.joda.time.ReadableDuration;
+import org.junit.rules.ExternalResource;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts several docker-compose projects at once, rather than one after another as with a
+ * {@link org.junit.rules.RuleChain}. A project only waits for another to start if it has been declared to depend on
+ * it, and all of them must have started within {@link #startupTimeout()}. On the way down, projects are shut down
+ * concurrently too, each one after the projects which depend on it.
+ * <p>
+ * If any project fails to start, every project which had begun starting is shut down before the failure is thrown.
+ */
+@Value.Immutable
+public abstract class DockerComposeRuleGroup extends ExternalResource {
+    private static final Logger log = LoggerFactory.getLogger(DockerComposeRuleGroup.class);
+
+    public static final Duration DEFAULT_STARTUP_TIMEOUT = Duration.standardMinutes(10);
+
+    public abstract Map<String, DockerComposeRule> projects();
+
+    /**
+     * For each project, the projects which must have started before it starts.
+     */
+    protected abstract Multimap<String, String> dependencies();
+
+    @Value.Default
+    public ReadableDuration startupTimeout() {
+        return DEFAULT_STARTUP_TIMEOUT;
+    }
+
+    @Value.Check
+    protected void validate() {
+        dependencies().entries().forEach(dependency -> {
+            Preconditions.checkState(projects().containsKey(dependency.getKey()),
+                    "Unknown project '%s' has dependencies", dependency.getKey());
+            Preconditions.checkState(projects().containsKey(dependency.getValue()),
+                    "Project '%s' depends on unknown project '%s'", dependency.getKey(), dependency.getValue());
+        });
+        startOrder();
+    }
+
+    @Override
+    public Statement apply(Statement base, Description description) {
+        Statement guarded = base;
+        for (DockerComposeRule project : projects().values()) {
+            guarded = project.watchdog().guard(guarded, description);
+        }
+        return super.apply(guarded, description);
+    }
+
+    @Override
+    public void before() throws IOException, InterruptedException {
+        ExecutorService executor = executor("docker-compose-startup-%d");
+        Set<String> begun = Sets.newConcurrentHashSet();
+        Map<String, CompletableFuture<Void>> started = new HashMap<>();
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (String name : startOrder()) {
+            CompletableFuture<Void> start = CompletableFuture
+                    .allOf(dependencies().get(name).stream().map(started::get).toArray(CompletableFuture[]::new))
+                    .thenRunAsync(() -> {
+                        begun.add(name);
+                        log.info("Starting docker-compose project '{}'", name);
+                        try {
+                            projects().get(name).before();
+                        } catch (Exception e) {
+                            throw new CompletionException(e);
+                        }
+                    }, executor);
+            start.whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    firstFailure.completeExceptionally(failure);
+                }
+            });
+            started.put(name, start);
+        }
+
+        try {
+            CompletableFuture<Void> allStarted =
+                    CompletableFuture.allOf(started.values().toArray(new CompletableFuture<?>[0]));
+            CompletableFuture.anyOf(allStarted, firstFailure)
+                    .get(startupTimeout().getMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            List<String> unfinished = started.entrySet().stream()
+                    .filter(project -> !project.getValue().isDone())
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .collect(toList());
+            abandonStartup(executor, begun);
+            throw new IllegalStateException("Docker-compose projects " + unfinished + " did not start within "
+                    + startupTimeout().getMillis() + "ms");
+        } catch (ExecutionException e) {
+            abandonStartup(executor, begun);
+            Throwable failure = unwrap(e);
+            Throwables.propagateIfPossible(failure, IOException.class);
+            if (failure instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new RuntimeException(failure);
+        } catch (InterruptedException e) {
+            abandonStartup(executor, begun);
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void abandonStartup(ExecutorService executor, Set<String> begun) throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        shutDown(begun);
+    }
+
+    @Override
+    public void after() {
+        shutDown(projects().keySet());
+    }
+
+    /**
+     * Shuts down the given projects concurrently, each one once everything that depends on it has been shut down.
+     */
+    private void shutDown(Set<String> projectsToShutDown) {
+        ExecutorService executor = executor("docker-compose-shutdown-%d");
+        try {
+            Multimap<String, String> dependents = ImmutableMultimap.copyOf(dependencies()).inverse();
+            List<String> shutdownOrder = new ArrayList<>(startOrder());
+            Collections.reverse(shutdownOrder);
+
+            Map<String, CompletableFuture<Void>> stopped = new HashMap<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (String name : shutdownOrder) {
+                CompletableFuture<Void> stop = CompletableFuture
+                        .allOf(dependents.get(name).stream().map(stopped::get).toArray(CompletableFuture[]::new))
+                        .handle((ignored, failure) -> null)
+                        .thenRunAsync(() -> {
+                            if (projectsToShutDown.contains(name)) {
+                                log.info("Shutting down docker-compose project '{}'", name);
+                                projects().get(name).after();
+                            }
+                        }, executor);
+                stop.whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        synchronized (failures) {
+                            failures.add(unwrap(failure));
+                        }
+                    }
+                });
+                stopped.put(name, stop);
+            }
+
+            CompletableFuture.allOf(stopped.values().toArray(new CompletableFuture<?>[0]))
+                    .handle((ignored, failure) -> null)
+                    .join();
+            synchronized (failures) {
+                if (!failures.isEmpty()) {
+                    RuntimeException failure = new RuntimeException(
+                            "Error shutting down docker-compose projects", failures.get(0));
+                    failures.stream().skip(1).forEach(failure::addSuppressed);
+                    throw failure;
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The projects in an order in which every project comes after the projects it depends on.
+     */
+    private List<String> startOrder() {
+        List<String> order = new ArrayList<>();
+        Set<String> placed = new HashSet<>();
+        while (placed.size() < projects().size()) {
+            List<String> ready = projects().keySet().stream()
+                    .filter(name -> !placed.contains(name))
+                    .filter(name -> placed.containsAll(dependencies().get(name)))
+                    .collect(toList());
+            if (ready.isEmpty()) {
+                List<String> cyclic = projects().keySet().stream()
+                        .filter(name -> !placed.contains(name))
+                        .collect(toList());
+                throw new IllegalStateException("Docker-compose projects " + cyclic + " depend on each other");
+            }
+            order.addAll(ready);
+            placed.addAll(ready);
+        }
+        return order;
+    }
+
+    private static ExecutorService executor(String nameFormat) {
+        return Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat(nameFormat)
+                .setDaemon(true)
+                .build());
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder extends ImmutableDockerComposeRuleGroup.Builder {
+
+        public Builder project(String name, DockerComposeRule rule) {
+            return putProjects(name, rule);
+        }
+
+        /**
+         * Only start {@code project} once {@code dependency} has started, and shut it down before {@code dependency}.
+         */
+        public Builder dependency(String project, String dependency) {
+            return putDependencies(project, dependency);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.util.stream.Collectors.joining;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings a cluster left running by an earlier run up to date, and works out which of its services need waiting for
+ * again.
+ *
+ * docker-compose labels each container with a hash of its service's configuration, and <code>docker-compose up</code>
+ * only recreates the containers whose label no longer matches the configuration or whose image has changed, along
+ * with the containers of services which depend on them. The containers of each service are listed before and after
+ * <code>up</code>, and a service has changed if any of its containers was created, recreated or started. A service
+ * whose containers were not all up and healthy before <code>up</code> is waited for again too, as <code>up</code>
+ * leaves it alone, yet it may never have passed its waits.
+ */
+final class IncrementalUp {
+    private static final Logger log = LoggerFactory.getLogger(IncrementalUp.class);
+
+    private static final String CONTAINER_FORMAT = "{{.Label \"com.docker.compose.service\"}} {{.ID}} {{.Status}}";
+
+    private final DockerComposeRule rule;
+
+    IncrementalUp(DockerComposeRule rule) {
+        this.rule = rule;
+    }
+
+    /**
+     * Runs <code>docker-compose up</code> against the existing containers.
+     *
+     * @return the services whose containers changed, along with every service which depends on them
+     */
+    Set<String> up(DockerCompose upDockerCompose) throws IOException, InterruptedException {
+        List<String> before = containers();
+        if (rule.services().isEmpty()) {
+            upDockerCompose.up();
+        } else {
+            upDockerCompose.up(rule.services());
+        }
+        Map<String, String> containersBefore = containersByService(before);
+        Map<String, String> containersAfter = containersByService(containers());
+
+        Set<String> notReady = notReadyServices(before);
+        Set<String> changed = Sets.newTreeSet(Sets.filter(containersAfter.keySet(),
+                service -> notReady.contains(service)
+                        || !Objects.equals(containersBefore.get(service), containersAfter.get(service))));
+        ServiceGraph serviceGraph = ServiceGraph.parseFromDockerComposeConfig(rule.dockerCompose().config());
+        Set<String> dependents = serviceGraph.transitiveDependentsOf(changed);
+        log.info("Services {} of docker-compose project '{}' changed or were not ready, along with their dependents {}",
+                changed, rule.projectName().asString(), dependents);
+        return Sets.union(changed, dependents);
+    }
+
+    /**
+     * The service, id and status of each of the project's containers.
+     */
+    private List<String> containers() throws IOException, InterruptedException {
+        List<String> containers = new ArrayList<>();
+        String projectFilter = "label=com.docker.compose.project=" + rule.projectName().asString();
+        for (String line : rule.docker().ps(CONTAINER_FORMAT, projectFilter)) {
+            if (Splitter.on(' ').limit(3).splitToList(line).size() == 3) {
+                containers.add(line);
+            }
+        }
+        return containers;
+    }
+
+    private static Set<String> notReadyServices(List<String> containers) {
+        Set<String> notReady = new TreeSet<>();
+        for (String container : containers) {
+            List<String> fields = Splitter.on(' ').limit(3).splitToList(container);
+            if (!DockerComposeRule.isUpAndHealthy(fields.get(2))) {
+                notReady.add(fields.get(0));
+            }
+        }
+        return notReady;
+    }
+
+    /**
+     * For each service, the ids of its containers, noting which are not running.
+     */
+    private static Map<String, String> containersByService(List<String> lines) {
+        Map<String, List<String>> containers = new TreeMap<>();
+        for (String line : lines) {
+            List<String> fields = Splitter.on(' ').limit(3).splitToList(line);
+            String container = fields.get(2).startsWith("Up") ? fields.get(1) : fields.get(1) + " (not running)";
+            containers.computeIfAbsent(fields.get(0), service -> new ArrayList<>()).add(container);
+        }
+        Map<String, String> byService = new TreeMap<>();
+        containers.forEach((service, ids) -> byService.put(service, ids.stream().sorted().collect(joining(","))));
+        return byService;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hashing;
+import com.palantir.docker.compose.configuration.DockerComposeFiles;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import com.palantir.docker.compose.connection.DockerMachine;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether a cluster left running by an earlier run of a rule built with
+ * {@link DockerComposeRule.Builder#keepingClusterAlive()} can be used again.
+ *
+ * Such rules use a project name derived from the paths of their docker-compose files, so every run finds the same
+ * containers. The {@link DockerComposeFiles#fingerprint()} of the files the cluster was started from is recorded in a
+ * small file named after the project. The cluster is reused if that fingerprint still matches and all its containers
+ * are up; otherwise it is shut down and started again from scratch, or brought up to date by {@link IncrementalUp}.
+ * The fingerprint is only recorded once the cluster has been started and waited for, so a run which fails part way
+ * leaves none behind.
+ */
+final class KeptAliveCluster {
+    private static final Logger log = LoggerFactory.getLogger(KeptAliveCluster.class);
+
+    private static final int PROJECT_NAME_LENGTH = 16;
+
+    private final File fingerprintFile;
+    private final String fingerprint;
+
+    KeptAliveCluster(File directory, ProjectName projectName, DockerComposeFiles files) {
+        this.fingerprintFile = new File(directory, projectName.asString() + ".fingerprint");
+        this.fingerprint = files.fingerprint();
+    }
+
+    static ProjectName projectName(DockerComposeFiles files, DockerMachine machine) {
+        String name = Hashing.sha256()
+                .hashString(String.join(" ", files.constructComposeFileCommand()) + " " + machine.getIp(), UTF_8)
+                .toString()
+                .substring(0, PROJECT_NAME_LENGTH);
+        return ProjectName.fromString(name);
+    }
+
+    /**
+     * Whether the rule can use the running cluster as it is, without building, starting or waiting for anything.
+     */
+    boolean isReusable(DockerComposeRule rule) throws IOException, InterruptedException {
+        Optional<String> recorded = recordedFingerprint();
+        if (!recorded.isPresent()) {
+            return false;
+        }
+        if (!recorded.get().equals(fingerprint)) {
+            log.info("docker-compose files have changed since project '{}' was started",
+                    rule.projectName().asString());
+            return false;
+        }
+        return rule.isClusterAlive();
+    }
+
+    /**
+     * Shuts down whatever is left of an earlier cluster which cannot be reused.
+     */
+    void discard(DockerComposeRule rule) throws IOException, InterruptedException {
+        Files.deleteIfExists(fingerprintFile.toPath());
+        List<String> statuses = rule.containerStatuses();
+        if (!statuses.isEmpty()) {
+            log.info("Shutting down the {} containers of docker-compose project '{}' from an earlier run",
+                    statuses.size(), rule.projectName().asString());
+            ShutdownStrategy.GRACEFUL.shutdown(rule);
+        }
+    }
+
+    /**
+     * Forgets the recorded fingerprint before the cluster is updated, so that if the update fails part way, such as in
+     * its waits, the next run does not take the cluster for one which was fully started.
+     *
+     * @return whether the earlier run finished starting or updating the cluster, having recorded its fingerprint
+     */
+    boolean forget() throws IOException {
+        return Files.deleteIfExists(fingerprintFile.toPath());
+    }
+
+    void record() throws IOException {
+        Files.createDirectories(fingerprintFile.getAbsoluteFile().getParentFile().toPath());
+        Files.write(fingerprintFile.toPath(), fingerprint.getBytes(UTF_8));
+    }
+
+    private Optional<String> recordedFingerprint() throws IOException {
+        if (!fingerprintFile.exists()) {
+            return Optional.empty();
+        }
+        return Optional.of(new String(Files.readAllBytes(fingerprintFile.toPath()), UTF_8).trim());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.connection.Container;
+import com.palantir.docker.compose.connection.ContainerCache;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts services on first use, for rules built with {@link DockerComposeRule.Builder#startingServicesLazily()}.
+ *
+ * Nothing is started before the tests run. The first time the cluster is asked for a service's container, that
+ * service is started along with every service it depends on which has not been started yet, and the waits on the
+ * newly started services run before the container is handed out. Services which no test uses are never started, and
+ * when the rule names the {@link DockerComposeRule#services() services} to start, nothing outside them is started.
+ *
+ * Each service is started at most once. Tests which ask for a service while it is being started wait for that start
+ * to finish, while services which do not depend on each other are started at the same time. Later starts wait for the
+ * first to bring its services up, as that sets up what they rely on, such as log collection, but not for its waits,
+ * so that a wait may itself use another service which has not been started yet.
+ */
+final class LazyServices {
+    private static final Logger log = LoggerFactory.getLogger(LazyServices.class);
+
+    private static final CompletableFuture<Void> NOTHING_TO_START = CompletableFuture.completedFuture(null);
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> starts = new ConcurrentHashMap<>();
+    private CompletableFuture<Void> setUp = null;
+
+    /**
+     * Starts the service, and anything it depends on, unless it has already been started, then waits until it is
+     * ready.
+     */
+    void start(DockerComposeRule rule, String service) {
+        try {
+            CompletableFuture<Void> start = starts.get(service);
+            if (start == null) {
+                start = startIfNotStarted(rule, service);
+            }
+            start.get();
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private CompletableFuture<Void> startIfNotStarted(DockerComposeRule rule, String service)
+            throws IOException, InterruptedException {
+        ServiceGraph serviceGraph = ServiceGraph.parseFromDockerComposeConfig(rule.dockerCompose().config());
+        Set<String> startable = rule.services().isEmpty()
+                ? serviceGraph.services()
+                : serviceGraph.subgraph(rule.services()).services();
+        if (!startable.contains(service)) {
+            return NOTHING_TO_START;
+        }
+
+        CompletableFuture<Void> start = new CompletableFuture<>();
+        Set<String> newServices = new LinkedHashSet<>();
+        List<CompletableFuture<Void>> earlierStarts = new ArrayList<>();
+        Set<String> needed = serviceGraph.subgraph(ImmutableSet.of(service)).services();
+        boolean first = reserve(needed, start, newServices, earlierStarts);
+        if (newServices.isEmpty()) {
+            return starts.getOrDefault(service, NOTHING_TO_START);
+        }
+
+        try {
+            for (CompletableFuture<Void> earlier : earlierStarts) {
+                earlier.get();
+            }
+            log.info("Starting services {} of docker-compose project '{}' on first use of '{}'",
+                    newServices, rule.projectName().asString(), service);
+            rule.upLazily(newServices, first);
+            if (first) {
+                finishSetUp();
+            }
+            rule.waitLazily(newServices, ImmutableSet.copyOf(starts.keySet()), first);
+            start.complete(null);
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable failure = e instanceof ExecutionException ? e.getCause() : e;
+            forget(start, newServices, first, failure);
+            start.completeExceptionally(failure);
+        }
+        return start;
+    }
+
+    /**
+     * Claims the services which nobody has started yet for this start, all at once so that two starts never wait on
+     * each other.
+     *
+     * @return whether this is the first start, which every later start waits on to set up the cluster
+     */
+    private synchronized boolean reserve(Set<String> services, CompletableFuture<Void> start,
+            Set<String> newServices, List<CompletableFuture<Void>> earlierStarts) {
+        for (String service : services) {
+            CompletableFuture<Void> earlier = starts.putIfAbsent(service, start);
+            if (earlier == null) {
+                newServices.add(service);
+            } else {
+                earlierStarts.add(earlier);
+            }
+        }
+        if (newServices.isEmpty()) {
+            return false;
+        }
+        if (setUp == null) {
+            setUp = new CompletableFuture<>();
+            return true;
+        }
+        earlierStarts.add(setUp);
+        return false;
+    }
+
+    private synchronized void finishSetUp() {
+        if (setUp != null) {
+            setUp.complete(null);
+        }
+    }
+
+    private synchronized void forget(CompletableFuture<Void> start, Set<String> services, boolean first,
+            Throwable failure) {
+        services.forEach(service -> starts.remove(service, start));
+        if (first && setUp != null && !setUp.isDone()) {
+            setUp.completeExceptionally(failure);
+            setUp = null;
+        }
+    }
+
+    synchronized void reset() {
+        starts.clear();
+        setUp = null;
+    }
+
+    /**
+     * A container cache which starts each service before handing out its container.
+     */
+    static final class StartingContainerCache extends ContainerCache {
+        private final DockerCompose dockerCompose;
+        private final DockerComposeRule rule;
+        private final LazyServices lazyServices;
+
+        StartingContainerCache(DockerCompose dockerCompose, DockerComposeRule rule, LazyServices lazyServices) {
+            super(dockerCompose);
+            this.dockerCompose = dockerCompose;
+            this.rule = rule;
+            this.lazyServices = lazyServices;
+        }
+
+        @Override
+        public Container container(String containerName) {
+            lazyServices.start(rule, containerName);
+            return super.container(containerName);
+        }
+
+        /**
+         * The same containers, handed out without starting anything, for the waits which run while their services
+         * are being started.
+         */
+        ContainerCache withoutStarting() {
+            return new ContainerCache(dockerCompose) {
+                @Override
+                public Container container(String containerName) {
+                    return StartingContainerCache.super.container(containerName);
+                }
+            };
+        }
+    }
+}
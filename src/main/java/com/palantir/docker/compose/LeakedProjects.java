@@ -0,0 +1,317 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.execution.Docker;
+import com.palantir.docker.compose.sidecar.SidecarProber;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.ReadableDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds and removes the docker-compose projects left behind by test JVMs which crashed or were killed before they
+ * could shut their clusters down.
+ *
+ * docker-compose has no way to add labels to the containers, networks and volumes it creates, so when a rule starts
+ * a cluster it also creates a small marker volume in the project, labelled with the PID, host and start time of the
+ * JVM which owns it and with when the project was started, and removes the marker once the cluster has been shut
+ * down. A project whose marker outlives its owner has leaked. Where <code>/proc</code> exists, a project owned by
+ * this host has leaked exactly when its owner's PID is no longer running, so the live clusters of long running JVMs
+ * are never removed. Any other project is treated as leaked once it is older than the time to live, unless it is
+ * owned by this JVM.
+ *
+ * Leaked projects are removed several at a time, finding their containers, networks and volumes through the project
+ * label which docker-compose puts on each of them, along with any {@link SidecarProber probe container} left attached
+ * to their networks. The marker is removed last, so a project which fails to be removed is tried again by the next
+ * run.
+ */
+final class LeakedProjects {
+    static final String OWNER_LABEL = "com.palantir.docker.compose.owner";
+    static final String STARTED_LABEL = "com.palantir.docker.compose.started";
+    static final int PARALLELISM = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(LeakedProjects.class);
+
+    private static final String PROJECT_LABEL = "com.docker.compose.project";
+    private static final String MARKER_FORMAT = "{{.Label \"" + PROJECT_LABEL + "\"}} "
+            + "{{.Label \"" + OWNER_LABEL + "\"}} "
+            + "{{.Label \"" + STARTED_LABEL + "\"}}";
+    private static final Set<String> reapedMachines = Sets.newConcurrentHashSet();
+
+    private final Docker docker;
+    private final ReadableDuration timeToLive;
+    private final Owner self;
+    private final ProcessCheck processes;
+
+    LeakedProjects(Docker docker, ReadableDuration timeToLive, Owner self, ProcessCheck processes) {
+        this.docker = docker;
+        this.timeToLive = timeToLive;
+        this.self = self;
+        this.processes = processes;
+    }
+
+    /**
+     * Removes the projects leaked on the rule's docker machine, unless this JVM has already done so.
+     */
+    static void reapOnce(DockerComposeRule rule, ReadableDuration timeToLive) throws InterruptedException {
+        if (reapedMachines.add(rule.machine().getIp())) {
+            new LeakedProjects(rule.docker(), timeToLive, Owner.current(), LeakedProjects::isRunning).reap();
+        }
+    }
+
+    /**
+     * Marks the rule's project as owned by this JVM.
+     */
+    static void stamp(DockerComposeRule rule) {
+        String project = rule.projectName().asString();
+        try {
+            rule.docker().createVolume(markerVolume(project), OWNER_LABEL + "=" + Owner.current(),
+                    STARTED_LABEL + "=" + System.currentTimeMillis(), PROJECT_LABEL + "=" + project);
+        } catch (IOException | InterruptedException e) {
+            log.warn("Could not mark docker-compose project '{}' as owned by this JVM, "
+                    + "so it cannot be reaped if leaked", project, e);
+        }
+    }
+
+    static void unstamp(DockerComposeRule rule) {
+        String project = rule.projectName().asString();
+        try {
+            rule.docker().removeVolumes(ImmutableList.of(markerVolume(project)));
+        } catch (IOException | InterruptedException e) {
+            log.warn("Could not remove the owner marker of docker-compose project '{}'", project, e);
+        }
+    }
+
+    static String markerVolume(String project) {
+        return project + "_docker_compose_rule_owner";
+    }
+
+    /**
+     * Removes each leaked project, logging rather than failing on any which cannot be removed.
+     *
+     * @return the names of the projects which were found to have leaked
+     */
+    List<String> reap() throws InterruptedException {
+        List<String> leaked;
+        try {
+            leaked = leakedProjects();
+        } catch (IOException e) {
+            log.warn("Could not list the docker-compose projects leaked by earlier runs", e);
+            return ImmutableList.of();
+        }
+        if (leaked.isEmpty()) {
+            return leaked;
+        }
+
+        log.info("Removing docker-compose projects {} leaked by earlier runs", leaked);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARALLELISM, leaked.size()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("docker-reap-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            CompletableFuture.allOf(leaked.stream()
+                    .map(project -> CompletableFuture.runAsync(() -> remove(project), executor))
+                    .toArray(CompletableFuture<?>[]::new))
+                    .join();
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Removed {} leaked docker-compose projects in {}ms", leaked.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return leaked;
+    }
+
+    private List<String> leakedProjects() throws IOException, InterruptedException {
+        List<String> leaked = new ArrayList<>();
+        for (String marker : docker.volumes(MARKER_FORMAT, "label=" + OWNER_LABEL)) {
+            List<String> fields = ImmutableList.copyOf(marker.split(" ", 3));
+            Optional<Owner> owner = fields.size() == 3 ? Owner.parse(fields.get(1)) : Optional.empty();
+            Optional<Long> startedAt = fields.size() == 3 ? parseMillis(fields.get(2)) : Optional.empty();
+            if (!owner.isPresent() || !startedAt.isPresent()) {
+                log.debug("Ignoring docker-compose project marker '{}' with no recognisable owner", marker);
+            } else if (isDead(owner.get(), startedAt.get())) {
+                leaked.add(fields.get(0));
+            }
+        }
+        return leaked;
+    }
+
+    private boolean isDead(Owner owner, long projectStartedAt) {
+        if (owner.equals(self)) {
+            return false;
+        }
+        if (owner.host().equals(self.host())) {
+            // another JVM with this JVM's PID must have died before this one started
+            Optional<Boolean> running = owner.pid() == self.pid()
+                    ? Optional.of(false)
+                    : processes.isRunning(owner.pid());
+            if (running.isPresent()) {
+                return !running.get();
+            }
+        }
+        return projectStartedAt + timeToLive.getMillis() < System.currentTimeMillis();
+    }
+
+    private static Optional<Long> parseMillis(String millis) {
+        try {
+            return Optional.of(Long.parseLong(millis.trim()));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void remove(String project) {
+        String filter = "label=" + PROJECT_LABEL + "=" + project;
+        try {
+            List<String> networks = docker.networks("{{.Name}}", filter);
+            List<String> containers = containers(filter, networks);
+            if (!containers.isEmpty()) {
+                docker.rm(containers);
+            }
+            if (!networks.isEmpty()) {
+                docker.removeNetworks(networks);
+            }
+            List<String> volumes = docker.volumes("{{.Name}}", filter).stream()
+                    .filter(volume -> !volume.equals(markerVolume(project)))
+                    .collect(toList());
+            if (!volumes.isEmpty()) {
+                docker.removeVolumes(volumes);
+            }
+            docker.removeVolumes(ImmutableList.of(markerVolume(project)));
+        } catch (IOException e) {
+            log.warn("Could not remove leaked docker-compose project '{}'", project, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The project's containers, and the probe containers on its networks, which would otherwise keep the networks from
+     * being removed.
+     */
+    private List<String> containers(String filter, List<String> networks) throws IOException, InterruptedException {
+        List<String> containers = new ArrayList<>(docker.ps("{{.ID}}", filter));
+        for (String network : networks) {
+            containers.addAll(docker.ps("{{.ID}}", "label=" + SidecarProber.PROBE_LABEL + "=" + network));
+        }
+        return containers;
+    }
+
+    private static Optional<Boolean> isRunning(int pid) {
+        File processes = new File("/proc");
+        if (!processes.isDirectory()) {
+            return Optional.empty();
+        }
+        return Optional.of(new File(processes, String.valueOf(pid)).isDirectory());
+    }
+
+    /**
+     * Whether a process on this host is running, or empty where processes cannot be checked.
+     */
+    @FunctionalInterface
+    interface ProcessCheck {
+        Optional<Boolean> isRunning(int pid);
+    }
+
+    /**
+     * The JVM which started a project, written as <code>pid@host@startedAt</code>.
+     */
+    static final class Owner {
+        private final int pid;
+        private final String host;
+        private final long startedAt;
+
+        Owner(int pid, String host, long startedAt) {
+            this.pid = pid;
+            this.host = host;
+            this.startedAt = startedAt;
+        }
+
+        static Owner current() {
+            RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+            String[] pidAndHost = runtime.getName().split("@", 2);
+            return new Owner(Integer.parseInt(pidAndHost[0]), pidAndHost.length == 2 ? pidAndHost[1] : "unknown",
+                    runtime.getStartTime());
+        }
+
+        static Optional<Owner> parse(String owner) {
+            int firstAt = owner.indexOf('@');
+            int lastAt = owner.lastIndexOf('@');
+            if (firstAt < 0 || lastAt == firstAt) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new Owner(
+                        Integer.parseInt(owner.substring(0, firstAt)),
+                        owner.substring(firstAt + 1, lastAt),
+                        Long.parseLong(owner.substring(lastAt + 1))));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+
+        int pid() {
+            return pid;
+        }
+
+        String host() {
+            return host;
+        }
+
+        long startedAt() {
+            return startedAt;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Owner)) {
+                return false;
+            }
+            Owner owner = (Owner) other;
+            return pid == owner.pid && host.equals(owner.host) && startedAt == owner.startedAt;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pid, host, startedAt);
+        }
+
+        @Override
+        public String toString() {
+            return pid + "@" + host + "@" + startedAt;
+        }
+    }
+}
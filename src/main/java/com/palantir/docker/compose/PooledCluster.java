@@ -0,0 +1,53 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import org.junit.rules.ExternalResource;
+
+/**
+ * Takes a started cluster from a {@link ClusterPool} before the tests, and hands it back to be shut down afterwards.
+ */
+public class PooledCluster extends ExternalResource {
+    private final ClusterPool pool;
+    private DockerComposeRule cluster;
+
+    PooledCluster(ClusterPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * The rule which started the cluster leased to the running tests, for access to its containers.
+     */
+    public DockerComposeRule cluster() {
+        Preconditions.checkState(cluster != null, "No cluster has been leased from the pool");
+        return cluster;
+    }
+
+    @Override
+    public void before() throws IOException, InterruptedException {
+        cluster = pool.take();
+    }
+
+    @Override
+    public void after() {
+        if (cluster != null) {
+            pool.release(cluster);
+            cluster = null;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.configuration.ProjectName;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lets several JVMs on the same machine, such as the forks of a parallel Gradle test task, use one shared cluster.
+ *
+ * The JVMs coordinate through files in a common directory: a lock file, which is held while a JVM starts, attaches to
+ * or shuts down the cluster; a metadata file, which records the project name of a running cluster; and one lease file
+ * per JVM using the cluster, which each JVM touches every few seconds. The cluster is started by the first JVM to
+ * join, and shut down by the last one to leave. Leases which have not been renewed for a while belong to JVMs which
+ * died without leaving, and are ignored. A JVM which cannot take the lock within {@link #LOCK_TIMEOUT_MILLIS} fails,
+ * rather than waiting forever on one which is stuck.
+ */
+final class SharedClusterLeases {
+    private static final Logger log = LoggerFactory.getLogger(SharedClusterLeases.class);
+
+    static final long HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    static final long LEASE_EXPIRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long LOCK_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final long LOCK_RETRY_MILLIS = 100;
+
+    private static final int PROJECT_NAME_LENGTH = 16;
+    private static final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("shared-cluster-heartbeat-%d")
+                    .setDaemon(true)
+                    .build());
+
+    private final String key;
+    private final File lockFile;
+    private final File metadataFile;
+    private final File leaseDirectory;
+    private final File lease;
+    private final long heartbeatMillis;
+    private final long leaseExpiryMillis;
+    private final long lockTimeoutMillis;
+    private ScheduledFuture<?> heartbeat;
+
+    SharedClusterLeases(File directory, String key) {
+        this(directory, key, HEARTBEAT_MILLIS, LEASE_EXPIRY_MILLIS, LOCK_TIMEOUT_MILLIS);
+    }
+
+    SharedClusterLeases(File directory, String key, long heartbeatMillis, long leaseExpiryMillis,
+            long lockTimeoutMillis) {
+        this.key = key;
+        this.lockFile = new File(directory, key + ".lock");
+        this.metadataFile = new File(directory, key + ".properties");
+        this.leaseDirectory = new File(directory, key + ".leases");
+        this.lease = new File(leaseDirectory, UUID.randomUUID().toString());
+        this.heartbeatMillis = heartbeatMillis;
+        this.leaseExpiryMillis = leaseExpiryMillis;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * The project name used by every JVM sharing the cluster with the given key through the given directory.
+     */
+    static ProjectName projectName(File directory, String key) {
+        String name = Hashing.sha256()
+                .hashString(directory.getAbsolutePath() + File.pathSeparator + key, UTF_8)
+                .toString()
+                .substring(0, PROJECT_NAME_LENGTH);
+        return ProjectName.fromString(name);
+    }
+
+    /**
+     * Attaches the rule to the cluster if another JVM has started it and it is still running, or starts it otherwise,
+     * then takes out a lease on it.
+     */
+    synchronized void join(DockerComposeRule rule) throws IOException, InterruptedException {
+        Files.createDirectories(leaseDirectory.toPath());
+        underLock(() -> {
+            if (metadataFile.exists() && rule.isClusterAlive()) {
+                log.info("Attaching to shared docker-compose cluster {}, which is in use by {} other JVMs",
+                        key, liveLeases().size());
+                rule.attachToCluster();
+            } else {
+                if (metadataFile.exists()) {
+                    log.warn("Shared docker-compose cluster {} is no longer running, so starting it again", key);
+                }
+                rule.startCluster();
+                writeMetadata(rule);
+            }
+            renew();
+        });
+        heartbeat = heartbeats.scheduleWithFixedDelay(
+                this::renew, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gives up this JVM's lease on the cluster, shutting the cluster down if no other JVM holds a live lease on it.
+     */
+    synchronized void leave(DockerComposeRule rule) {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+        try {
+            underLock(() -> {
+                Files.deleteIfExists(lease.toPath());
+                List<File> others = liveLeases();
+                if (others.isEmpty()) {
+                    rule.stopCluster();
+                    Files.deleteIfExists(metadataFile.toPath());
+                } else {
+                    log.info("Leaving shared docker-compose cluster {} running for {} other JVMs", key, others.size());
+                    rule.detachFromCluster();
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error leaving shared docker-compose cluster " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while leaving shared docker-compose cluster " + key, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface LockedAction {
+        void run() throws IOException, InterruptedException;
+    }
+
+    private void underLock(LockedAction action) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(
+                lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            runHoldingLock(channel, action);
+        }
+    }
+
+    /**
+     * Runs the action once the lock is free, failing rather than waiting forever if another JVM holds it for longer
+     * than it could take to start the cluster.
+     */
+    private void runHoldingLock(FileChannel channel, LockedAction action) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + lockTimeoutMillis;
+        FileLock lock = tryLock(channel);
+        while (lock == null) {
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException("Timed out after " + lockTimeoutMillis + "ms waiting for another JVM "
+                        + "to release " + lockFile + " for shared docker-compose cluster " + key);
+            }
+            Thread.sleep(LOCK_RETRY_MILLIS);
+            lock = tryLock(channel);
+        }
+        try {
+            action.run();
+        } finally {
+            lock.release();
+        }
+    }
+
+    private void renew() {
+        try {
+            if (!lease.exists()) {
+                Files.write(lease.toPath(), ManagementFactory.getRuntimeMXBean().getName().getBytes(UTF_8));
+            }
+            if (!lease.setLastModified(System.currentTimeMillis())) {
+                log.warn("Could not renew lease {} on shared docker-compose cluster {}", lease, key);
+            }
+        } catch (IOException e) {
+            log.warn("Could not renew lease {} on shared docker-compose cluster {}", lease, key, e);
+        }
+    }
+
+    /**
+     * The leases of the other JVMs which are still using the cluster, removing any which have expired.
+     */
+    private List<File> liveLeases() throws IOException {
+        File[] leases = leaseDirectory.listFiles();
+        if (leases == null) {
+            return Collections.emptyList();
+        }
+        long expiredBefore = System.currentTimeMillis() - leaseExpiryMillis;
+        List<File> expired = Arrays.stream(leases)
+                .filter(other -> other.lastModified() < expiredBefore)
+                .collect(toList());
+        for (File other : expired) {
+            log.info("Ignoring expired lease {} on shared docker-compose cluster {}", other, key);
+            Files.deleteIfExists(other.toPath());
+        }
+        return Arrays.stream(leases)
+                .filter(other -> !expired.contains(other))
+                .filter(other -> !other.equals(lease))
+                .collect(toList());
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another thread of this JVM
+            return null;
+        }
+    }
+
+    private void writeMetadata(DockerComposeRule rule) throws IOException {
+        Properties metadata = new Properties();
+        metadata.setProperty("projectName", rule.projectName().asString());
+        metadata.setProperty("startedBy", ManagementFactory.getRuntimeMXBean().getName());
+        metadata.setProperty("startedAt", String.valueOf(System.currentTimeMillis()));
+        File temporary = new File(metadataFile.getParentFile(), metadataFile.getName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary.toPath())) {
+            metadata.store(output, "Shared docker-compose cluster " + key);
+        }
+        Files.move(temporary.toPath(), metadataFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.connection.waiting.ClusterWait;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.ReadableDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the clusters started by {@link DockerComposeRule}s in shared mode, so that every rule in the JVM with
+ * the same docker-compose files, environment and waits uses one cluster rather than starting its own.
+ *
+ * The first rule to attach starts the cluster. Later rules check that its containers are all still up and attach to it
+ * without running any docker-compose commands, or start it again if they are not. The cluster is shut down once it
+ * has had no rules attached for the rule's {@link DockerComposeRule#sharedClusterIdleTimeout()}, or when the JVM
+ * exits if there is no idle timeout.
+ *
+ * Rules with a {@link DockerComposeRule#sharedClusterLockDirectory()} also share the cluster with other JVMs using
+ * the same directory, through {@link SharedClusterLeases}.
+ */
+final class SharedClusters {
+    private static final Logger log = LoggerFactory.getLogger(SharedClusters.class);
+
+    private static final int KEY_LENGTH = 16;
+
+    private final Map<String, SharedCluster> clusters = new ConcurrentHashMap<>();
+    private final Map<String, ProjectName> projectNames = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService idleShutdowns = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                    .setNameFormat("shared-cluster-shutdown-%d")
+                    .setDaemon(true)
+                    .build());
+
+    SharedClusters() {}
+
+    static SharedClusters instance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final SharedClusters INSTANCE = new SharedClusters();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread(INSTANCE::shutDownAll, "shared-cluster-jvm-shutdown"));
+        }
+    }
+
+    /**
+     * A hash of everything that must match for two rules to be able to use the same cluster.
+     */
+    static String key(DockerComposeRule rule) {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(rule.files().fingerprint(), UTF_8)
+                .putString(String.join(" ", rule.files().constructComposeFileCommand()), UTF_8)
+                .putString(rule.machine().getIp(), UTF_8);
+        new TreeMap<>(rule.machine().configuredDockerComposeProcess().environment())
+                .forEach((name, value) -> hasher
+                        .putString(name, UTF_8).putByte((byte) 0)
+                        .putString(value, UTF_8).putByte((byte) 0));
+        hasher.putString(new TreeSet<>(rule.services()).toString(), UTF_8).putBoolean(rule.lazyStart());
+        for (ClusterWait wait : rule.clusterWaits()) {
+            hasher.putString(new TreeSet<>(wait.services()).toString(), UTF_8);
+        }
+        return hasher.hash().toString().substring(0, KEY_LENGTH);
+    }
+
+    /**
+     * The project name of the shared cluster with the given key. This is random but the same for every rule in the
+     * JVM, unless the cluster is shared through a lock directory, in which case it is the same for every JVM.
+     */
+    ProjectName projectName(String key, Optional<String> lockDirectory) {
+        if (lockDirectory.isPresent()) {
+            return SharedClusterLeases.projectName(new File(lockDirectory.get()), key);
+        }
+        return projectNames.computeIfAbsent(key, ignored -> ProjectName.random());
+    }
+
+    void attach(String key, DockerComposeRule rule) throws IOException, InterruptedException {
+        Optional<SharedClusterLeases> leases = rule.sharedClusterLockDirectory()
+                .map(directory -> new SharedClusterLeases(new File(directory), key));
+        clusters.computeIfAbsent(key, ignored -> new SharedCluster(key, leases)).attach(rule);
+    }
+
+    void detach(String key, DockerComposeRule rule) {
+        SharedCluster cluster = clusters.get(key);
+        if (cluster != null) {
+            cluster.detach(rule);
+        }
+    }
+
+    void shutDownAll() {
+        clusters.values().forEach(SharedCluster::shutDown);
+    }
+
+    private final class SharedCluster {
+        private final String key;
+        private final Optional<SharedClusterLeases> leases;
+        private DockerComposeRule owner;
+        private int attached = 0;
+        private ScheduledFuture<?> idleShutdown;
+
+        SharedCluster(String key, Optional<SharedClusterLeases> leases) {
+            this.key = key;
+            this.leases = leases;
+        }
+
+        synchronized void attach(DockerComposeRule rule) throws IOException, InterruptedException {
+            if (idleShutdown != null) {
+                idleShutdown.cancel(false);
+                idleShutdown = null;
+            }
+
+            if (owner != null && !owner.isClusterAlive()) {
+                log.warn("Shared docker-compose cluster {} is no longer running, so starting it again", key);
+                shutDown();
+            }
+
+            if (owner == null && leases.isPresent()) {
+                leases.get().join(rule);
+                owner = rule;
+            } else if (owner == null) {
+                log.info("Starting shared docker-compose cluster {}", key);
+                rule.startCluster();
+                owner = rule;
+            } else {
+                log.info("Attaching to running shared docker-compose cluster {}", key);
+                rule.attachToCluster();
+            }
+            attached++;
+        }
+
+        synchronized void detach(DockerComposeRule rule) {
+            attached--;
+            if (rule != owner) {
+                rule.detachFromCluster();
+            }
+            if (attached > 0 || owner == null) {
+                return;
+            }
+
+            Optional<ReadableDuration> idleTimeout = owner.sharedClusterIdleTimeout();
+            if (!idleTimeout.isPresent()) {
+                log.debug("Keeping shared docker-compose cluster {} running until the JVM exits", key);
+            } else if (idleTimeout.get().getMillis() <= 0) {
+                shutDown();
+            } else {
+                idleShutdown = idleShutdowns.schedule(
+                        this::shutDownIfIdle, idleTimeout.get().getMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void shutDownIfIdle() {
+            if (attached == 0) {
+                shutDown();
+            }
+        }
+
+        synchronized void shutDown() {
+            if (owner == null) {
+                return;
+            }
+            try {
+                if (leases.isPresent()) {
+                    leases.get().leave(owner);
+                } else {
+                    log.info("Shutting down shared docker-compose cluster {}", key);
+                    owner.stopCluster();
+                }
+            } catch (RuntimeException e) {
+                log.error("Error shutting down shared docker-compose cluster {}", key, e);
+            } finally {
+                owner = null;
+            }
+        }
+    }
+}
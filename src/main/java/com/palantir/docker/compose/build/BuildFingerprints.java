@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.palantir.docker.compose.configuration.BuildDefinition;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Hashes everything which goes into building a service's image: the contents of every file in its build context,
+ * its Dockerfile, build args and target. Two builds with the same fingerprint produce equivalent images, unless the
+ * Dockerfile pulls in something from outside the context, such as a base image tag which has since moved.
+ *
+ * Files excluded by a <code>.dockerignore</code> are still hashed, so changing one causes an unnecessary rebuild
+ * rather than a missed one.
+ */
+class BuildFingerprints {
+    private static final int FINGERPRINT_LENGTH = 32;
+
+    private final FileHashIndex fileHashes;
+
+    BuildFingerprints(FileHashIndex fileHashes) {
+        this.fileHashes = fileHashes;
+    }
+
+    String fingerprint(BuildDefinition build) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher()
+                .putString(build.dockerfile(), UTF_8).putByte((byte) 0)
+                .putString(build.target().orElse(""), UTF_8).putByte((byte) 0);
+        new TreeMap<>(build.args())
+                .forEach((name, value) -> hasher
+                        .putString(name, UTF_8).putByte((byte) 0)
+                        .putString(value, UTF_8).putByte((byte) 0));
+
+        Path dockerfile = dockerfile(build);
+        if (Files.isRegularFile(dockerfile)) {
+            hasher.putBytes(fileHashes.hash(dockerfile).asBytes());
+        }
+
+        Path context = Paths.get(build.context());
+        for (Path file : filesIn(context)) {
+            hasher.putString(context.relativize(file).toString().replace(File.separatorChar, '/'), UTF_8)
+                    .putByte((byte) 0)
+                    .putBytes(fileHashes.hash(file).asBytes());
+        }
+        return hasher.hash().toString().substring(0, FINGERPRINT_LENGTH);
+    }
+
+    static Path dockerfile(BuildDefinition build) {
+        return Paths.get(build.context()).resolve(build.dockerfile());
+    }
+
+    private static List<Path> filesIn(Path context) throws IOException {
+        try (Stream<Path> files = Files.walk(context)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(toList());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import org.immutables.value.Value;
+
+/**
+ * An image which an {@link ImageCache} can save and load.
+ */
+@Value.Immutable
+public abstract class CachedImage {
+
+    /**
+     * Identifies the contents of the image: its build fingerprint if it is built, or its reference if it is pulled.
+     */
+    public abstract String key();
+
+    /**
+     * The name to save the image under.
+     */
+    public abstract String image();
+
+    /**
+     * A filter for <code>docker images</code> which matches the image if it is already present.
+     */
+    public abstract String presenceFilter();
+
+    public static CachedImage built(String fingerprint, String image) {
+        return ImmutableCachedImage.builder()
+                .key("build:" + fingerprint)
+                .image(image)
+                .presenceFilter("label=" + IncrementalBuild.FINGERPRINT_LABEL + "=" + fingerprint)
+                .build();
+    }
+
+    public static CachedImage pulled(String reference) {
+        return ImmutableCachedImage.builder()
+                .key("image:" + reference)
+                .image(reference)
+                .presenceFilter("reference=" + reference)
+                .build();
+    }
+}
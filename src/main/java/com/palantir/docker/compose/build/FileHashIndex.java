@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the hash of each file along with its size and modification time, so that files which have not changed
+ * since they were last hashed do not have to be read again.
+ *
+ * Files modified in the last couple of seconds are hashed but not remembered, as another change within the resolution
+ * of the file system's timestamps would leave both their size and modification time the same.
+ *
+ * Files are hashed concurrently, so that parallel builds do not wait on each other to hash their build contexts.
+ */
+class FileHashIndex {
+    private static final Logger log = LoggerFactory.getLogger(FileHashIndex.class);
+
+    private static final long RECENTLY_MODIFIED_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    private final File file;
+    private final Map<String, String> hashes = new ConcurrentHashMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean(false);
+
+    FileHashIndex(File file) {
+        this.file = file;
+        load();
+    }
+
+    HashCode hash(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long modifiedMillis = attributes.lastModifiedTime().toMillis();
+        String key = path.toAbsolutePath().toString();
+        String prefix = attributes.size() + "," + modifiedMillis + ",";
+
+        String entry = hashes.get(key);
+        if (entry != null && entry.startsWith(prefix)) {
+            return HashCode.fromString(entry.substring(prefix.length()));
+        }
+
+        HashCode hash = com.google.common.io.Files.hash(path.toFile(), Hashing.sha256());
+        if (modifiedMillis < System.currentTimeMillis() - RECENTLY_MODIFIED_MILLIS) {
+            hashes.put(key, prefix + hash);
+            changed.set(true);
+        }
+        return hash;
+    }
+
+    synchronized void save() {
+        if (!changed.getAndSet(false)) {
+            return;
+        }
+        Properties snapshot = new Properties();
+        snapshot.putAll(hashes);
+        try {
+            Path directory = Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+            Path temporary = Files.createTempFile(directory, file.getName(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                snapshot.store(output, "Size, modification time and SHA-256 hash of files in docker build contexts");
+            }
+            Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            changed.set(true);
+            log.warn("Could not save file hashes to {}", file, e);
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        Properties saved = new Properties();
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            saved.load(input);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not read file hashes from {}, hashing every file again", file, e);
+            return;
+        }
+        saved.stringPropertyNames().forEach(key -> hashes.put(key, saved.getProperty(key)));
+    }
+}
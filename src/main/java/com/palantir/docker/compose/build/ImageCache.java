@@ -0,0 +1,213 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.configuration.ServiceDefinition;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A directory of <code>docker save</code> tarballs, for agents which start each run with no images.
+ *
+ * Before building anything, images in the cache which are not already present are loaded, several at once. Once the
+ * cluster is up, images which were not in the cache are saved to it in the background, and the least recently loaded
+ * tarballs are deleted to keep the cache within its size budget.
+ *
+ * Built images are cached by their {@link BuildFingerprints fingerprint}, so only rules which
+ * {@link com.palantir.docker.compose.DockerComposeRule.Builder#skippingUnchangedBuilds() skip unchanged builds} cache
+ * them. Pulled images are cached by their reference, so images referred to by a tag are not pulled again when the tag
+ * moves, unless the reference pins a digest.
+ */
+public class ImageCache {
+    public static final long DEFAULT_MAX_BYTES = 20L * 1024 * 1024 * 1024;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(ImageCache.class);
+
+    private static final String TARBALL_SUFFIX = ".tar";
+    private static final int FILE_NAME_LENGTH = 32;
+
+    private final File directory;
+    private final long maxBytes;
+    private final ExecutorService executor;
+    private final List<CompletableFuture<Void>> saves = new ArrayList<>();
+
+    public ImageCache(File directory, long maxBytes, int parallelism) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("image-cache-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public static ImageCache fromPath(String path) {
+        return new ImageCache(new File(path), DEFAULT_MAX_BYTES, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * The images of the given services which can be cached.
+     */
+    public static List<CachedImage> imagesOf(ServiceGraph services, Optional<IncrementalBuild> incrementalBuild)
+            throws IOException {
+        List<CachedImage> images = new ArrayList<>();
+        for (String name : services.services()) {
+            ServiceDefinition service = services.service(name);
+            if (service.buildDefinition().isPresent()) {
+                if (incrementalBuild.isPresent()) {
+                    images.add(CachedImage.built(
+                            incrementalBuild.get().fingerprint(service), incrementalBuild.get().imageName(service)));
+                }
+            } else if (service.image().isPresent()) {
+                images.add(CachedImage.pulled(service.image().get()));
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Loads every cached image which is not already present, returning once they have all been loaded.
+     */
+    public void load(Docker docker, List<CachedImage> images) {
+        List<CompletableFuture<Void>> loads = images.stream()
+                .filter(image -> tarball(image).exists())
+                .map(image -> CompletableFuture.runAsync(() -> load(docker, image), executor))
+                .collect(toList());
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[loads.size()])).join();
+    }
+
+    /**
+     * Starts saving every image which is not already in the cache.
+     */
+    public synchronized void saveInBackground(Docker docker, List<CachedImage> images) {
+        images.stream()
+                .filter(image -> !tarball(image).exists())
+                .map(image -> CompletableFuture.runAsync(() -> save(docker, image), executor))
+                .forEach(saves::add);
+    }
+
+    /**
+     * Waits for the images being saved to be written to the cache, and trims the cache to its size budget.
+     */
+    public void awaitSaves() {
+        List<CompletableFuture<Void>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(saves);
+            saves.clear();
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[pending.size()])).join();
+        if (!pending.isEmpty()) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private void load(Docker docker, CachedImage image) {
+        File tarball = tarball(image);
+        try {
+            if (!docker.imageIds(image.presenceFilter()).isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            docker.load(tarball);
+            log.info("Loaded image {} ({} MB) from the image cache in {}ms", image.image(),
+                    tarball.length() / (1024 * 1024), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (!tarball.setLastModified(System.currentTimeMillis())) {
+                log.debug("Could not mark {} as recently used", tarball);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load image {} from {}", image.image(), tarball, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save(Docker docker, CachedImage image) {
+        File tarball = tarball(image);
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            temporary = Files.createTempFile(directory.toPath(), tarball.getName(), ".tmp");
+            docker.save(temporary.toFile(), image.image());
+            Files.move(temporary, tarball.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Saved image {} ({} MB) to the image cache", image.image(), tarball.length() / (1024 * 1024));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save image {} to {}", image.image(), tarball, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deleteIfLeftBehind(temporary);
+        }
+    }
+
+    private static void deleteIfLeftBehind(Path temporary) {
+        if (temporary == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            log.debug("Could not delete {}", temporary, e);
+        }
+    }
+
+    private synchronized void evictLeastRecentlyUsed() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(TARBALL_SUFFIX));
+        if (files == null) {
+            return;
+        }
+        List<File> tarballs = Arrays.stream(files)
+                .sorted(Comparator.comparingLong(File::lastModified))
+                .collect(toList());
+        long total = tarballs.stream().mapToLong(File::length).sum();
+        for (File tarball : tarballs) {
+            if (total <= maxBytes) {
+                return;
+            }
+            long size = tarball.length();
+            if (tarball.delete()) {
+                log.info("Evicted {} ({} MB) from the image cache", tarball.getName(), size / (1024 * 1024));
+                total -= size;
+            }
+        }
+    }
+
+    private File tarball(CachedImage image) {
+        String name = Hashing.sha256().hashString(image.key(), UTF_8).toString().substring(0, FILE_NAME_LENGTH);
+        return new File(directory, name + TARBALL_SUFFIX);
+    }
+}
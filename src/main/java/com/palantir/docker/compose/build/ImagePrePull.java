@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pulls images several at a time before the cluster starts, rather than leaving <code>docker-compose up</code> to pull
+ * them one after another, and to pull them again from scratch each time a failed <code>up</code> is retried.
+ *
+ * Images which are already present are not pulled. An image referred to by digest is only present if that exact
+ * digest is, while one referred to by tag is present if any image has that tag, so a moved tag is not pulled again.
+ * An image which fails to pull is left for docker-compose to pull.
+ */
+public class ImagePrePull {
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(ImagePrePull.class);
+
+    private final Docker docker;
+    private final int parallelism;
+
+    public ImagePrePull(Docker docker, int parallelism) {
+        Preconditions.checkArgument(parallelism >= 1, "Pull parallelism must be at least 1, but was %s", parallelism);
+        this.docker = docker;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Starts pulling each of the images which is not already present.
+     *
+     * @return a future which completes once every image has either been pulled or failed to pull
+     */
+    public CompletableFuture<Void> pullMissing(Collection<String> images) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("docker-pull-%d")
+                .setDaemon(true)
+                .build());
+        List<CompletableFuture<Void>> pulls = images.stream()
+                .map(image -> CompletableFuture.runAsync(() -> pullIfMissing(image), executor))
+                .collect(toList());
+        CompletableFuture<Void> allPulled =
+                CompletableFuture.allOf(pulls.toArray(new CompletableFuture<?>[pulls.size()]));
+        allPulled.whenComplete((ignored, failure) -> executor.shutdown());
+        return allPulled;
+    }
+
+    private void pullIfMissing(String image) {
+        String reference = withTag(image);
+        try {
+            if (!docker.imageIds("reference=" + reference).isEmpty()) {
+                log.debug("Image {} is already present, so not pulling it", reference);
+                return;
+            }
+            long start = System.nanoTime();
+            docker.pull(reference);
+            logPulled(reference, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not pull image {}, so leaving docker-compose to pull it", reference, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void logPulled(String reference, long millis) throws InterruptedException {
+        try {
+            log.info("Pulled image {} ({} MB) in {}ms", reference, docker.imageSize(reference) / (1024 * 1024), millis);
+        } catch (IOException | RuntimeException e) {
+            log.info("Pulled image {} in {}ms", reference, millis);
+            log.debug("Could not find the size of image {}", reference, e);
+        }
+    }
+
+    /**
+     * The image with the <code>latest</code> tag if it has neither a tag nor a digest, as a reference filter without
+     * a tag would match every tag of the image.
+     */
+    static String withTag(String image) {
+        String name = image.substring(image.lastIndexOf('/') + 1);
+        if (name.contains(":") || name.contains("@")) {
+            return image;
+        }
+        return image + ":latest";
+    }
+}
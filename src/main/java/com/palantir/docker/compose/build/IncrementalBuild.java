@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.configuration.BuildDefinition;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ServiceDefinition;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the images of the services with a <code>build</code> section, skipping any whose build context, Dockerfile
+ * and build args have not changed since an image was last built from them.
+ *
+ * Each image is built with <code>docker build</code> and labelled with its {@link BuildFingerprints fingerprint}.
+ * When an image with the same fingerprint already exists, it is tagged with the name docker-compose expects instead,
+ * so <code>docker-compose up</code> finds it without building anything.
+ */
+public class IncrementalBuild {
+    public static final String FINGERPRINT_LABEL = "com.palantir.docker.compose.build-fingerprint";
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalBuild.class);
+
+    private final Docker docker;
+    private final ProjectName projectName;
+    private final FileHashIndex fileHashes;
+    private final BuildFingerprints fingerprints;
+    private final ParallelBuild parallelBuild;
+
+    public IncrementalBuild(Docker docker, ProjectName projectName, File cacheDirectory) {
+        this(docker, projectName, cacheDirectory, ParallelBuild.DEFAULT_PARALLELISM);
+    }
+
+    public IncrementalBuild(Docker docker, ProjectName projectName, File cacheDirectory, int parallelism) {
+        this.docker = docker;
+        this.projectName = projectName;
+        this.fileHashes = new FileHashIndex(new File(cacheDirectory, "file-hashes.properties"));
+        this.fingerprints = new BuildFingerprints(fileHashes);
+        this.parallelBuild = new ParallelBuild(parallelism);
+    }
+
+    public void build(ServiceGraph services) throws IOException, InterruptedException {
+        try {
+            parallelBuild.build(services.servicesWithBuilds(), service -> build(services.service(service)));
+        } finally {
+            fileHashes.save();
+        }
+    }
+
+    /**
+     * The fingerprint of everything that goes into building the service's image.
+     */
+    public String fingerprint(ServiceDefinition service) throws IOException {
+        return fingerprints.fingerprint(service.buildDefinition().get());
+    }
+
+    private void build(ServiceDefinition service) throws IOException, InterruptedException {
+        BuildDefinition build = service.buildDefinition().get();
+        String fingerprint = fingerprint(service);
+        String image = imageName(service);
+
+        List<String> existing = docker.imageIds("label=" + FINGERPRINT_LABEL + "=" + fingerprint);
+        if (!existing.isEmpty()) {
+            log.info("Build context of service '{}' is unchanged, so reusing image {}",
+                    service.name(), existing.get(0));
+            docker.tag(existing.get(0), image);
+            return;
+        }
+
+        log.info("Building image {} for service '{}'", image, service.name());
+        docker.build(buildOptions(build, fingerprint, image), build.context());
+    }
+
+    /**
+     * The name docker-compose gives the service's image: the one in its <code>image</code> section, or else one
+     * derived from the project and service names.
+     */
+    public String imageName(ServiceDefinition service) {
+        return service.image().orElse(projectName.asString() + "_" + service.name());
+    }
+
+    private static List<String> buildOptions(BuildDefinition build, String fingerprint, String image) {
+        ImmutableList.Builder<String> options = ImmutableList.<String>builder()
+                .add("--tag", image)
+                .add("--label", FINGERPRINT_LABEL + "=" + fingerprint)
+                .add("--file", BuildFingerprints.dockerfile(build).toString());
+        build.args().forEach((name, value) -> options.add("--build-arg", name + "=" + value));
+        build.target().ifPresent(target -> options.add("--target", target));
+        return options.build();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the images of several services at once, so that building them takes about as long as the slowest one rather
+ * than the sum of them all.
+ *
+ * The first build to fail is reported as soon as it fails. The others are interrupted, which stops their
+ * <code>docker build</code> or <code>docker-compose build</code> processes, rather than left running to completion.
+ * Each build's output is captured separately, so a failure carries the output of the failing build only.
+ *
+ * Services are built independently of each other, so a service whose Dockerfile starts <code>FROM</code> the image of
+ * another service cannot be built this way.
+ */
+public class ParallelBuild {
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    private static final long STOP_TIMEOUT_SECONDS = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelBuild.class);
+
+    private final int parallelism;
+
+    public ParallelBuild(int parallelism) {
+        Preconditions.checkArgument(parallelism >= 1, "Build parallelism must be at least 1, but was %s", parallelism);
+        this.parallelism = parallelism;
+    }
+
+    @FunctionalInterface
+    public interface ServiceBuild {
+        void build(String service) throws IOException, InterruptedException;
+    }
+
+    public void build(Collection<String> services, ServiceBuild serviceBuild) throws IOException, InterruptedException {
+        if (parallelism <= 1 || services.size() <= 1) {
+            for (String service : services) {
+                serviceBuild.build(service);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, services.size()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("docker-build-%d")
+                        .setDaemon(true)
+                        .build());
+        CompletionService<String> builds = new ExecutorCompletionService<>(executor);
+        try {
+            for (String service : services) {
+                builds.submit(() -> {
+                    long start = System.nanoTime();
+                    serviceBuild.build(service);
+                    log.info("Built service '{}' in {}ms",
+                            service, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return service;
+                });
+            }
+            for (int i = 0; i < services.size(); i++) {
+                awaitNext(builds);
+            }
+        } finally {
+            executor.shutdownNow();
+            awaitStopped(executor);
+        }
+    }
+
+    private static void awaitStopped(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Builds still running {}s after being interrupted", STOP_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitNext(CompletionService<String> builds) throws IOException, InterruptedException {
+        try {
+            builds.take().get();
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class, InterruptedException.class);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
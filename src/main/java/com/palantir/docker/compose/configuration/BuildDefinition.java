@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.configuration;
+
+import java.util.Map;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * The <code>build</code> section of a service, as resolved by <code>docker-compose config</code>.
+ */
+@Value.Immutable
+@PackageVisible
+public abstract class BuildDefinition {
+
+    /**
+     * The absolute path of the build context.
+     */
+    public abstract String context();
+
+    /**
+     * The path of the Dockerfile, relative to the build context.
+     */
+    @Value.Default
+    public String dockerfile() {
+        return "Dockerfile";
+    }
+
+    public abstract Map<String, String> args();
+
+    public abstract Optional<String> target();
+
+    static ImmutableBuildDefinition.Builder builder() {
+        return ImmutableBuildDefinition.builder();
+    }
+}
@@ -21,11 +21,17 @@ import static com.google.common.collect.Lists.newArrayList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 
 public class DockerComposeFiles {
+    private static final int FINGERPRINT_LENGTH = 16;
 
     private final List<File> dockerComposeFiles;
 
@@ -50,6 +56,21 @@ public class DockerComposeFiles {
                 .collect(toList());
     }
 
+    /**
+     * A hash of the contents of the docker-compose files, which changes whenever any of them does.
+     */
+    public String fingerprint() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (File file : dockerComposeFiles) {
+            try {
+                hasher.putBytes(Files.toByteArray(file)).putByte((byte) 0);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        return hasher.hash().toString().substring(0, FINGERPRINT_LENGTH);
+    }
+
     private static void validateAtLeastOneComposeFileSpecified(List<File> dockerComposeFiles) {
         checkArgument(!dockerComposeFiles.isEmpty(), "A docker compose file must be specified.");
     }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.configuration;
+
+import java.util.Optional;
+import java.util.Set;
+import org.immutables.value.Value;
+
+/**
+ * A single service as resolved by <code>docker-compose config</code>.
+ */
+@Value.Immutable
+@PackageVisible
+public abstract class ServiceDefinition {
+
+    public abstract String name();
+
+    /**
+     * The services this service declares it needs, either through <code>depends_on</code>
+     * or through <code>links</code>.
+     */
+    public abstract Set<String> dependencies();
+
+    /**
+     * How the service's image is built, if it is built from a Dockerfile rather than pulled.
+     */
+    public abstract Optional<BuildDefinition> buildDefinition();
+
+    public abstract Optional<String> image();
+
+    static ImmutableServiceDefinition.Builder builder() {
+        return ImmutableServiceDefinition.builder();
+    }
+}
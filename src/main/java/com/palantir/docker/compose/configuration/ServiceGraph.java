@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.configuration;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * The services declared in a set of docker-compose files, along with the dependencies between them.
+ */
+public class ServiceGraph {
+
+    private final Map<String, ServiceDefinition> services;
+
+    public ServiceGraph(Map<String, ServiceDefinition> services) {
+        this.services = ImmutableMap.copyOf(services);
+    }
+
+    public static ServiceGraph parseFromDockerComposeConfig(String configOutput) {
+        checkArgument(!Strings.isNullOrEmpty(configOutput), "No docker-compose configuration found");
+        Map<String, Object> config = asMap(new Yaml().load(configOutput));
+        Map<String, Object> serviceConfigs = config.containsKey("services") ? asMap(config.get("services")) : config;
+
+        Map<String, ServiceDefinition> services = new LinkedHashMap<>();
+        serviceConfigs.forEach((name, serviceConfig) -> services.put(name, parseService(name, asMap(serviceConfig))));
+        return new ServiceGraph(services);
+    }
+
+    public Set<String> services() {
+        return services.keySet();
+    }
+
+    public ServiceDefinition service(String name) {
+        checkArgument(services.containsKey(name), "No service with name '%s' found", name);
+        return services.get(name);
+    }
+
+    public Set<String> dependenciesOf(String service) {
+        return services.containsKey(service) ? services.get(service).dependencies() : Collections.emptySet();
+    }
+
+    /**
+     * Every service reachable by following dependencies from the given services, excluding the given services
+     * themselves unless they are also depended on by another of the given services.
+     */
+    public Set<String> transitiveDependenciesOf(Collection<String> startingServices) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        startingServices.forEach(service -> toVisit.addAll(dependenciesOf(service)));
+        while (!toVisit.isEmpty()) {
+            String service = toVisit.pop();
+            if (visited.add(service)) {
+                toVisit.addAll(dependenciesOf(service));
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * The graph of just the given services and every service they depend on, directly or through other services.
+     */
+    public ServiceGraph subgraph(Collection<String> startingServices) {
+        Set<String> included = new HashSet<>(startingServices);
+        included.addAll(transitiveDependenciesOf(startingServices));
+        Map<String, ServiceDefinition> subgraph = new LinkedHashMap<>();
+        for (String name : services.keySet()) {
+            if (included.remove(name)) {
+                subgraph.put(name, services.get(name));
+            }
+        }
+        checkArgument(included.isEmpty(), "No services with names %s found", included);
+        return new ServiceGraph(subgraph);
+    }
+
+    /**
+     * Every service which depends, directly or through other services, on any of the given services.
+     */
+    public Set<String> transitiveDependentsOf(Collection<String> startingServices) {
+        Set<String> dependents = new HashSet<>(startingServices);
+        boolean added = true;
+        while (added) {
+            added = false;
+            for (String service : services.keySet()) {
+                if (!dependents.contains(service) && dependenciesOf(service).stream().anyMatch(dependents::contains)) {
+                    added |= dependents.add(service);
+                }
+            }
+        }
+        dependents.removeAll(startingServices);
+        return dependents;
+    }
+
+    /**
+     * The services whose images are built from a Dockerfile.
+     */
+    public Set<String> servicesWithBuilds() {
+        return services.values().stream()
+                .filter(service -> service.buildDefinition().isPresent())
+                .map(ServiceDefinition::name)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * The images of the services which are pulled rather than built.
+     */
+    public Set<String> pulledImages() {
+        return services.values().stream()
+                .filter(service -> !service.buildDefinition().isPresent())
+                .map(ServiceDefinition::image)
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    private static ServiceDefinition parseService(String name, Map<String, Object> serviceConfig) {
+        return ServiceDefinition.builder()
+                .name(name)
+                .addAllDependencies(parseDependsOn(serviceConfig.get("depends_on")))
+                .addAllDependencies(parseLinks(serviceConfig.get("links")))
+                .buildDefinition(parseBuild(serviceConfig.get("build")))
+                .image(Optional.ofNullable(serviceConfig.get("image")).map(String::valueOf))
+                .build();
+    }
+
+    // build is either the path of the context or, with a Dockerfile or args, a map including the context
+    private static Optional<BuildDefinition> parseBuild(Object build) {
+        if (build == null) {
+            return Optional.empty();
+        }
+        if (!(build instanceof Map)) {
+            return Optional.of(BuildDefinition.builder().context(String.valueOf(build)).build());
+        }
+
+        Map<String, Object> buildConfig = asMap(build);
+        ImmutableBuildDefinition.Builder definition = BuildDefinition.builder()
+                .context(String.valueOf(buildConfig.getOrDefault("context", ".")))
+                .args(parseArgs(buildConfig.get("args")))
+                .target(Optional.ofNullable(buildConfig.get("target")).map(String::valueOf));
+        if (buildConfig.containsKey("dockerfile")) {
+            definition.dockerfile(String.valueOf(buildConfig.get("dockerfile")));
+        }
+        return Optional.of(definition.build());
+    }
+
+    // args is either a map or, as written in some files, a list of NAME=value strings
+    private static Map<String, String> parseArgs(Object args) {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        if (args instanceof Map) {
+            asMap(args).forEach((name, value) -> parsed.put(name, String.valueOf(value)));
+        } else {
+            asList(args).forEach(arg -> {
+                String[] nameAndValue = arg.split("=", 2);
+                parsed.put(nameAndValue[0], nameAndValue.length > 1 ? nameAndValue[1] : "");
+            });
+        }
+        return parsed;
+    }
+
+    // depends_on is either a list of service names or, from file format 2.1, a map of service name to condition
+    private static Set<String> parseDependsOn(Object dependsOn) {
+        if (dependsOn instanceof Map) {
+            return ImmutableSet.copyOf(asMap(dependsOn).keySet());
+        }
+        return ImmutableSet.copyOf(asList(dependsOn));
+    }
+
+    private static List<String> parseLinks(Object links) {
+        return asList(links).stream()
+                .map(link -> link.split(":")[0])
+                .collect(toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object yaml) {
+        if (yaml == null) {
+            return Collections.emptyMap();
+        }
+        checkArgument(yaml instanceof Map, "Could not parse docker-compose configuration: %s", yaml);
+        return (Map<String, Object>) yaml;
+    }
+
+    private static List<String> asList(Object yaml) {
+        if (yaml == null) {
+            return Collections.emptyList();
+        }
+        checkArgument(yaml instanceof List, "Could not parse docker-compose configuration: %s", yaml);
+        return ((List<?>) yaml).stream()
+                .map(String::valueOf)
+                .collect(toList());
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceGraph{services=" + services.values() + "}";
+    }
+}
@@ -6,7 +6,9 @@ package com.palantir.docker.compose.configuration;
 
 import com.palantir.docker.compose.DockerComposeRule;
 import com.palantir.docker.compose.execution.AggressiveShutdownStrategy;
+import com.palantir.docker.compose.execution.BackgroundShutdownStrategy;
 import com.palantir.docker.compose.execution.GracefulShutdownStrategy;
+import com.palantir.docker.compose.execution.KeepAliveShutdownStrategy;
 import com.palantir.docker.compose.execution.SkipShutdownStrategy;
 import java.io.IOException;
 
@@ -19,7 +21,24 @@ public interface ShutdownStrategy {
     ShutdownStrategy AGGRESSIVE = new AggressiveShutdownStrategy();
     ShutdownStrategy GRACEFUL = new GracefulShutdownStrategy();
     ShutdownStrategy SKIP = new SkipShutdownStrategy();
+    ShutdownStrategy KEEP_ALIVE = new KeepAliveShutdownStrategy();
+    ShutdownStrategy BACKGROUND = new BackgroundShutdownStrategy(GRACEFUL);
 
     void shutdown(DockerComposeRule rule) throws IOException, InterruptedException;
 
+    /**
+     * Shuts down the cluster, then runs whatever has to wait until its containers have stopped, such as collecting the
+     * last of their logs.
+     */
+    default void shutdown(DockerComposeRule rule, AfterShutdown afterShutdown)
+            throws IOException, InterruptedException {
+        shutdown(rule);
+        afterShutdown.run();
+    }
+
+    @FunctionalInterface
+    interface AfterShutdown {
+        void run() throws IOException, InterruptedException;
+    }
+
 }
@@ -97,6 +97,14 @@ public class Container {
         return dockerComposeProcess.state(containerName);
     }
 
+    public int exitCode() throws IOException, InterruptedException {
+        return dockerComposeProcess.exitCode(containerName);
+    }
+
+    public String logs(int tailLines) throws IOException, InterruptedException {
+        return dockerComposeProcess.logs(containerName, tailLines);
+    }
+
     public void up() throws IOException, InterruptedException {
         dockerComposeProcess.up(this);
     }
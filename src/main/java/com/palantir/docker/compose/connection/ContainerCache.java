@@ -16,12 +16,12 @@
 package com.palantir.docker.compose.connection;
 
 import com.palantir.docker.compose.execution.DockerCompose;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ContainerCache {
 
-    private final Map<String, Container> containers = new HashMap<>();
+    private final Map<String, Container> containers = new ConcurrentHashMap<>();
     private final DockerCompose dockerCompose;
 
     public ContainerCache(DockerCompose dockerCompose) {
@@ -29,8 +29,7 @@ public class ContainerCache {
     }
 
     public Container container(String containerName) {
-        containers.putIfAbsent(containerName, dockerCompose.container(containerName));
-        return containers.get(containerName);
+        return containers.computeIfAbsent(containerName, dockerCompose::container);
     }
 
 }
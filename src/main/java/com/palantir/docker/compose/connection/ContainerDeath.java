@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection;
+
+import org.immutables.value.Value;
+
+/**
+ * A record of a container exiting, with enough context to explain why without going and looking at the logs.
+ */
+@Value.Immutable
+public abstract class ContainerDeath {
+
+    public abstract String containerName();
+
+    public abstract int exitCode();
+
+    @Value.Default
+    public boolean oomKilled() {
+        return false;
+    }
+
+    @Value.Default
+    public String logTail() {
+        return "";
+    }
+
+    public String describe() {
+        return "Container '" + containerName() + "' exited with code " + exitCode()
+                + (oomKilled() ? " after running out of memory" : "")
+                + (logTail().isEmpty() ? "" : ". The last lines of its log were:\n" + logTail());
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+
+    public static ImmutableContainerDeath.Builder builder() {
+        return ImmutableContainerDeath.builder();
+    }
+}
@@ -17,8 +17,10 @@ package com.palantir.docker.compose.connection.waiting;
 
 import com.palantir.docker.compose.connection.Cluster;
 import com.palantir.docker.compose.connection.Container;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Function;
+import org.joda.time.ReadableDuration;
 
 @FunctionalInterface
 public interface ClusterHealthCheck {
@@ -37,5 +39,34 @@ public interface ClusterHealthCheck {
         };
     }
 
+    /**
+     * Runs all the checks in parallel, passing if they all pass and otherwise failing with every failure message.
+     */
+    static ClusterHealthCheck allOf(ClusterHealthCheck... checks) {
+        return allOf(Arrays.asList(checks));
+    }
+
+    static ClusterHealthCheck allOf(List<ClusterHealthCheck> checks) {
+        return HealthCheckCombinators.allOf(HealthCheckCombinators.asHealthChecks(checks))::isHealthy;
+    }
+
+    /**
+     * Runs all the checks in parallel, passing as soon as one passes and interrupting the rest.
+     */
+    static ClusterHealthCheck anyOf(ClusterHealthCheck... checks) {
+        return anyOf(Arrays.asList(checks));
+    }
+
+    static ClusterHealthCheck anyOf(List<ClusterHealthCheck> checks) {
+        return HealthCheckCombinators.anyOf(HealthCheckCombinators.asHealthChecks(checks))::isHealthy;
+    }
+
+    /**
+     * Fails any attempt of the check that takes longer than the timeout, interrupting it.
+     */
+    static ClusterHealthCheck withTimeout(ClusterHealthCheck check, ReadableDuration timeout) {
+        return HealthCheckCombinators.withTimeout(check::isClusterHealthy, timeout)::isHealthy;
+    }
+
     SuccessOrFailure isClusterHealthy(Cluster cluster);
 }
@@ -15,54 +15,272 @@
  */
 package com.palantir.docker.compose.connection.waiting;
 
-import com.jayway.awaitility.Awaitility;
-import com.jayway.awaitility.core.ConditionTimeoutException;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
 import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.Container;
+import com.palantir.docker.compose.connection.ContainerDeath;
+import com.palantir.docker.compose.connection.State;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.Optional;
-import java.util.concurrent.Callable;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
 import org.joda.time.ReadableDuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ClusterWait {
     private static final Logger log = LoggerFactory.getLogger(ClusterWait.class);
+    private static final long POLL_INTERVAL_MILLIS = 50;
+    private static final long STATE_CHECK_INTERVAL_MILLIS = 500;
+    private static final int LOG_TAIL_LINES = 50;
+    private static final int UNKNOWN_EXIT_CODE = -1;
+    private static final long TIMEOUT_GRACE_MILLIS = 5000;
+
     private final ClusterHealthCheck clusterHealthCheck;
     private final ReadableDuration timeout;
+    private final Set<String> services;
+    private final Optional<ReadinessHistory> readinessHistory;
 
     public ClusterWait(ClusterHealthCheck clusterHealthCheck, ReadableDuration timeout) {
+        this(clusterHealthCheck, timeout, ImmutableSet.of());
+    }
+
+    public ClusterWait(ClusterHealthCheck clusterHealthCheck, ReadableDuration timeout, Collection<String> services) {
+        this(clusterHealthCheck, timeout, services, Optional.empty());
+    }
+
+    private ClusterWait(ClusterHealthCheck clusterHealthCheck, ReadableDuration timeout, Collection<String> services,
+            Optional<ReadinessHistory> readinessHistory) {
         this.clusterHealthCheck = clusterHealthCheck;
         this.timeout = timeout;
+        this.services = ImmutableSet.copyOf(services);
+        this.readinessHistory = readinessHistory;
+    }
+
+    /**
+     * A copy of this wait which records how long it takes to pass in the given history, and uses the history of
+     * previous runs to hold off polling until shortly before the services are expected to be ready, and to flag
+     * unusually slow startups. Only waits on particular {@link #services()} have a history.
+     */
+    public ClusterWait withReadinessHistory(ReadinessHistory history) {
+        return new ClusterWait(clusterHealthCheck, timeout, services, Optional.of(history));
+    }
+
+    /**
+     * The services whose health this wait checks, or an empty set if it is not tied to any particular service.
+     */
+    public Set<String> services() {
+        return services;
     }
 
+    /**
+     * Polls the health check until it succeeds or the timeout expires. While the check is failing, the state of the
+     * containers for {@link #services()} is also checked, and the wait fails as soon as any of them has exited,
+     * as they will never become healthy.
+     */
     public void waitUntilReady(Cluster cluster) {
-        final AtomicReference<Optional<SuccessOrFailure>> lastSuccessOrFailure = new AtomicReference<>(
-                Optional.empty());
+        CompletableFuture<Void> ready = waitUntilReadyAsync(cluster);
+        try {
+            ready.get(timeout.getMillis() + TIMEOUT_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            ready.cancel(true);
+            throw new IllegalStateException("The cluster wait did not finish within " + timeout.getMillis() + "ms", e);
+        } catch (InterruptedException e) {
+            ready.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the cluster to be healthy", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
 
+    /**
+     * Starts polling the health check as in {@link #waitUntilReady}, without blocking. Polls are scheduled by a
+     * scheduler shared by every wait in the JVM, and run on a pool which grows with the number of checks running at
+     * once, so a check which hangs cannot stop the wait from timing out. The returned future completes once the check
+     * passes, or exceptionally with an {@link IllegalStateException} if it times out or a container exits. Cancelling
+     * it stops the polling.
+     */
+    public CompletableFuture<Void> waitUntilReadyAsync(Cluster cluster) {
         log.info("Waiting for cluster to be healthy");
+        Poll poll = new Poll(cluster);
+        poll.start();
+        return poll.ready;
+    }
+
+    private final class Poll implements Runnable {
+        private final ScheduledExecutorService scheduler = ReadinessScheduler.instance();
+        private final ExecutorService checks = ReadinessScheduler.checks();
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final Cluster cluster;
+        private final long startMillis = System.currentTimeMillis();
+        private final Optional<ReadinessProfile> profile =
+                historyKey().flatMap(key -> readinessHistory.get().profile(key));
+        private volatile Optional<SuccessOrFailure> lastSuccessOrFailure = Optional.empty();
+        private long nextStateCheck = 0;
+        private volatile Future<?> runningCheck = null;
+
+        private Poll(Cluster cluster) {
+            this.cluster = cluster;
+        }
+
+        private void start() {
+            ScheduledFuture<?> timeoutTask =
+                    scheduler.schedule(this::timeOut, timeout.getMillis(), TimeUnit.MILLISECONDS);
+            ready.whenComplete((ignored, failure) -> {
+                timeoutTask.cancel(false);
+                Future<?> check = runningCheck;
+                if (check != null) {
+                    check.cancel(true);
+                }
+            });
+
+            long firstPollDelay = profile.map(ReadinessProfile::firstPollDelayMillis).orElse(0L);
+            if (firstPollDelay > 0) {
+                log.info("{} usually take {}ms to become healthy, so not checking for the first {}ms",
+                        services, Math.round(profile.get().meanMillis()), firstPollDelay);
+            }
+            scheduler.schedule(this, firstPollDelay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (!ready.isDone()) {
+                runningCheck = checks.submit(this::check);
+            }
+        }
+
+        private void check() {
+            if (ready.isDone()) {
+                return;
+            }
+
+            try {
+                SuccessOrFailure successOrFailure = clusterHealthCheck.isClusterHealthy(cluster);
+                lastSuccessOrFailure = Optional.of(successOrFailure);
+                if (successOrFailure.succeeded()) {
+                    passed();
+                    return;
+                }
+
+                if (System.currentTimeMillis() >= nextStateCheck) {
+                    nextStateCheck = System.currentTimeMillis() + STATE_CHECK_INTERVAL_MILLIS;
+                    Optional<ContainerDeath> exitedContainer = firstExitedContainer(cluster);
+                    if (exitedContainer.isPresent()) {
+                        ready.completeExceptionally(new IllegalStateException(
+                                "The cluster failed to pass a startup check: " + exitedContainer.get().describe()));
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                ready.completeExceptionally(e);
+                return;
+            }
+
+            if (!ready.isDone()) {
+                scheduler.schedule(this, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void passed() {
+            if (!historyKey().isPresent()) {
+                ready.complete(null);
+                return;
+            }
+
+            long elapsedMillis = System.currentTimeMillis() - startMillis;
+            readinessHistory.get().record(historyKey().get(), elapsedMillis);
+            if (profile.isPresent() && profile.get().isAnomalous(elapsedMillis)) {
+                String message = String.format("%s took %dms to become healthy, which is unusually slow compared to"
+                                + " the %dms (standard deviation %dms) they took over the previous %d runs",
+                        services, elapsedMillis, Math.round(profile.get().meanMillis()),
+                        Math.round(profile.get().standardDeviationMillis()), profile.get().samplesMillis().size());
+                if (readinessHistory.get().failOnSlowStartup()) {
+                    ready.completeExceptionally(new IllegalStateException(message));
+                    return;
+                }
+                log.warn(message);
+            }
+            ready.complete(null);
+        }
+
+        private void timeOut() {
+            ready.completeExceptionally(
+                    new IllegalStateException(serviceDidNotStartupExceptionMessage(lastSuccessOrFailure)));
+        }
+    }
+
+    private Optional<String> historyKey() {
+        if (!readinessHistory.isPresent() || services.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(String.join(",", new TreeSet<>(services)));
+    }
+
+    private Optional<ContainerDeath> firstExitedContainer(Cluster cluster) {
+        return services.stream()
+                .map(cluster::container)
+                .filter(ClusterWait::hasExited)
+                .findFirst()
+                .map(ClusterWait::deathOf);
+    }
+
+    private static boolean hasExited(Container container) {
         try {
-            Awaitility.await()
-                    .pollInterval(50, TimeUnit.MILLISECONDS)
-                    .atMost(timeout.getMillis(), TimeUnit.MILLISECONDS)
-                    .until(weHaveSuccess(cluster, lastSuccessOrFailure));
-        } catch (ConditionTimeoutException e) {
-            throw new IllegalStateException(serviceDidNotStartupExceptionMessage(lastSuccessOrFailure));
+            return container.state() == State.Exit;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not get the state of container '{}'", container.getContainerName(), e);
+            return false;
         }
     }
 
-    private Callable<Boolean> weHaveSuccess(Cluster cluster,
-            AtomicReference<Optional<SuccessOrFailure>> lastSuccessOrFailure) {
-        return () -> {
-            SuccessOrFailure successOrFailure = clusterHealthCheck.isClusterHealthy(cluster);
-            lastSuccessOrFailure.set(Optional.of(successOrFailure));
-            return successOrFailure.succeeded();
-        };
+    private static ContainerDeath deathOf(Container container) {
+        return ContainerDeath.builder()
+                .containerName(container.getContainerName())
+                .exitCode(exitCodeOf(container))
+                .logTail(logTailOf(container))
+                .build();
+    }
+
+    private static int exitCodeOf(Container container) {
+        try {
+            return container.exitCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return UNKNOWN_EXIT_CODE;
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not get the exit code of container '{}'", container.getContainerName(), e);
+            return UNKNOWN_EXIT_CODE;
+        }
+    }
+
+    private static String logTailOf(Container container) {
+        try {
+            return container.logs(LOG_TAIL_LINES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not get the logs of container '{}'", container.getContainerName(), e);
+            return "";
+        }
     }
 
-    private String serviceDidNotStartupExceptionMessage(
-            AtomicReference<Optional<SuccessOrFailure>> lastSuccessOrFailure) {
-        String healthcheckFailureMessage = lastSuccessOrFailure.get()
+    private static String serviceDidNotStartupExceptionMessage(Optional<SuccessOrFailure> lastSuccessOrFailure) {
+        String healthcheckFailureMessage = lastSuccessOrFailure
                 .flatMap(SuccessOrFailure::toOptionalFailureMessage)
                 .orElse("The healthcheck did not finish before the timeout");
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Sets;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.connection.Cluster;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs {@link ClusterWait}s in the order implied by the <code>depends_on</code> relationships between the services
+ * they check. A wait starts as soon as every wait on the services it (transitively) depends on has passed, so waits
+ * on independent services run in parallel and the total time taken is that of the slowest chain of dependencies.
+ *
+ * Waits that are not tied to any service have no dependencies and start immediately.
+ */
+public class DependencyOrderedWaits {
+    private static final Logger log = LoggerFactory.getLogger(DependencyOrderedWaits.class);
+
+    private final ServiceGraph serviceGraph;
+    private final List<ClusterWait> clusterWaits;
+
+    public DependencyOrderedWaits(ServiceGraph serviceGraph, List<ClusterWait> clusterWaits) {
+        this.serviceGraph = serviceGraph;
+        this.clusterWaits = clusterWaits;
+    }
+
+    public void waitUntilReady(Cluster cluster) {
+        List<Set<Integer>> prerequisites = prerequisites();
+        List<List<Integer>> waves = waves(prerequisites);
+        log.info("Waiting for cluster to be healthy in {} waves: {}", waves.size(), describe(waves));
+
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        List<CompletableFuture<Void>> waits = new ArrayList<>(Collections.nCopies(clusterWaits.size(), null));
+        List<CompletableFuture<Void>> started = new CopyOnWriteArrayList<>();
+        for (List<Integer> wave : waves) {
+            for (int index : wave) {
+                CompletableFuture<Void> wait = CompletableFuture
+                        .allOf(prerequisites.get(index).stream().map(waits::get).toArray(CompletableFuture[]::new))
+                        .thenCompose(ignored -> {
+                            CompletableFuture<Void> ready = clusterWaits.get(index).waitUntilReadyAsync(cluster);
+                            started.add(ready);
+                            return ready;
+                        });
+                wait.whenComplete((ignored, failure) -> {
+                    if (failure != null) {
+                        firstFailure.completeExceptionally(failure);
+                    }
+                });
+                waits.set(index, wait);
+            }
+        }
+
+        try {
+            CompletableFuture<Void> allReady =
+                    CompletableFuture.allOf(waits.toArray(new CompletableFuture<?>[waits.size()]));
+            CompletableFuture.anyOf(allReady, firstFailure).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the cluster to be healthy", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(unwrap(e.getCause()));
+        } finally {
+            waits.forEach(wait -> wait.cancel(true));
+            started.forEach(wait -> wait.cancel(true));
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * For each wait, the indices of the other waits which must pass before it can start.
+     */
+    private List<Set<Integer>> prerequisites() {
+        return clusterWaits.stream()
+                .map(wait -> {
+                    Set<String> dependencies = Sets.difference(
+                            serviceGraph.transitiveDependenciesOf(wait.services()),
+                            wait.services());
+                    return IntStream.range(0, clusterWaits.size())
+                            .filter(other -> clusterWaits.get(other) != wait)
+                            .filter(other -> !Collections.disjoint(clusterWaits.get(other).services(), dependencies))
+                            .boxed()
+                            .collect(toSet());
+                })
+                .collect(toList());
+    }
+
+    private List<List<Integer>> waves(List<Set<Integer>> prerequisites) {
+        List<List<Integer>> waves = new ArrayList<>();
+        Set<Integer> scheduled = Sets.newHashSet();
+        while (scheduled.size() < clusterWaits.size()) {
+            List<Integer> wave = IntStream.range(0, clusterWaits.size())
+                    .filter(index -> !scheduled.contains(index))
+                    .filter(index -> scheduled.containsAll(prerequisites.get(index)))
+                    .boxed()
+                    .collect(toList());
+            if (wave.isEmpty()) {
+                throw new IllegalStateException("Could not order waits by service dependencies, as the waits on "
+                        + describeWave(unscheduled(scheduled)) + " depend on each other");
+            }
+            scheduled.addAll(wave);
+            waves.add(wave);
+        }
+        return waves;
+    }
+
+    private List<Integer> unscheduled(Set<Integer> scheduled) {
+        return IntStream.range(0, clusterWaits.size())
+                .filter(index -> !scheduled.contains(index))
+                .boxed()
+                .collect(toList());
+    }
+
+    private List<List<Set<String>>> describe(List<List<Integer>> waves) {
+        return waves.stream()
+                .map(this::describeWave)
+                .collect(toList());
+    }
+
+    private List<Set<String>> describeWave(List<Integer> wave) {
+        return wave.stream()
+                .map(index -> clusterWaits.get(index).services())
+                .collect(toList());
+    }
+}
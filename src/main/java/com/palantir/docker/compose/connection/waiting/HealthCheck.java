@@ -15,7 +15,50 @@
  */
 package com.palantir.docker.compose.connection.waiting;
 
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.joda.time.ReadableDuration;
+
 @FunctionalInterface
 public interface HealthCheck<T> {
     SuccessOrFailure isHealthy(T target);
+
+    /**
+     * Runs all the checks in parallel, passing if they all pass and otherwise failing with every failure message.
+     */
+    @SafeVarargs
+    static <T> HealthCheck<T> allOf(HealthCheck<T>... checks) {
+        ImmutableList.Builder<HealthCheck<T>> allChecks = ImmutableList.builder();
+        for (HealthCheck<T> check : checks) {
+            allChecks.add(check);
+        }
+        return allOf(allChecks.build());
+    }
+
+    static <T> HealthCheck<T> allOf(List<HealthCheck<T>> checks) {
+        return HealthCheckCombinators.allOf(checks);
+    }
+
+    /**
+     * Runs all the checks in parallel, passing as soon as one passes and interrupting the rest.
+     */
+    @SafeVarargs
+    static <T> HealthCheck<T> anyOf(HealthCheck<T>... checks) {
+        ImmutableList.Builder<HealthCheck<T>> allChecks = ImmutableList.builder();
+        for (HealthCheck<T> check : checks) {
+            allChecks.add(check);
+        }
+        return anyOf(allChecks.build());
+    }
+
+    static <T> HealthCheck<T> anyOf(List<HealthCheck<T>> checks) {
+        return HealthCheckCombinators.anyOf(checks);
+    }
+
+    /**
+     * Fails any attempt of the check that takes longer than the timeout, interrupting it.
+     */
+    static <T> HealthCheck<T> withTimeout(HealthCheck<T> check, ReadableDuration timeout) {
+        return HealthCheckCombinators.withTimeout(check, timeout);
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.connection.Cluster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.joda.time.ReadableDuration;
+
+/**
+ * The implementation of the {@link HealthCheck} and {@link ClusterHealthCheck} combinators. Sub-checks run in
+ * parallel on a pool shared by every combinator in the JVM. It is separate from the pool of the
+ * {@link ReadinessScheduler} which runs the checks themselves, as combinators block those threads while their
+ * sub-checks run.
+ */
+final class HealthCheckCombinators {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("health-check-%d")
+            .setDaemon(true)
+            .build());
+
+    private HealthCheckCombinators() {}
+
+    static <T> HealthCheck<T> allOf(List<HealthCheck<T>> checks) {
+        List<HealthCheck<T>> allChecks = new ArrayList<>(checks);
+        return target -> {
+            List<Future<SuccessOrFailure>> results = submitAll(allChecks, target);
+            try {
+                List<String> failures = new ArrayList<>();
+                for (Future<SuccessOrFailure> result : results) {
+                    result.get().toOptionalFailureMessage().ifPresent(failures::add);
+                }
+                return SuccessOrFailure.fromBoolean(failures.isEmpty(), describeFailures(
+                        failures.size() + " of " + allChecks.size() + " health checks failed", failures));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return SuccessOrFailure.failure("Interrupted while running health checks");
+            } catch (ExecutionException e) {
+                return SuccessOrFailure.fromException(e);
+            } finally {
+                results.forEach(result -> result.cancel(true));
+            }
+        };
+    }
+
+    static <T> HealthCheck<T> anyOf(List<HealthCheck<T>> checks) {
+        Preconditions.checkArgument(!checks.isEmpty(), "anyOf needs at least one health check");
+        List<HealthCheck<T>> anyChecks = new ArrayList<>(checks);
+        return target -> {
+            CompletionService<SuccessOrFailure> completionService = new ExecutorCompletionService<>(EXECUTOR);
+            List<Future<SuccessOrFailure>> results = anyChecks.stream()
+                    .map(check -> completionService.submit(() -> isHealthy(check, target)))
+                    .collect(toList());
+            try {
+                List<String> failures = new ArrayList<>();
+                for (int i = 0; i < anyChecks.size(); i++) {
+                    SuccessOrFailure result = completionService.take().get();
+                    if (result.succeeded()) {
+                        return result;
+                    }
+                    failures.add(result.failureMessage());
+                }
+                return SuccessOrFailure.failure(describeFailures(
+                        "None of the " + anyChecks.size() + " health checks passed", failures));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return SuccessOrFailure.failure("Interrupted while running health checks");
+            } catch (ExecutionException e) {
+                return SuccessOrFailure.fromException(e);
+            } finally {
+                results.forEach(result -> result.cancel(true));
+            }
+        };
+    }
+
+    static <T> HealthCheck<T> withTimeout(HealthCheck<T> check, ReadableDuration timeout) {
+        return target -> {
+            Future<SuccessOrFailure> result = EXECUTOR.submit(() -> isHealthy(check, target));
+            try {
+                return result.get(timeout.getMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                return SuccessOrFailure.failure("Health check did not finish within " + timeout.getMillis() + "ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return SuccessOrFailure.failure("Interrupted while running health check");
+            } catch (ExecutionException e) {
+                return SuccessOrFailure.fromException(e);
+            } finally {
+                result.cancel(true);
+            }
+        };
+    }
+
+    static List<HealthCheck<Cluster>> asHealthChecks(List<ClusterHealthCheck> checks) {
+        return checks.stream()
+                .map(check -> (HealthCheck<Cluster>) check::isClusterHealthy)
+                .collect(toList());
+    }
+
+    private static <T> List<Future<SuccessOrFailure>> submitAll(List<HealthCheck<T>> checks, T target) {
+        return checks.stream()
+                .map(check -> EXECUTOR.submit(() -> isHealthy(check, target)))
+                .collect(toList());
+    }
+
+    private static <T> SuccessOrFailure isHealthy(HealthCheck<T> check, T target) {
+        try {
+            return check.isHealthy(target);
+        } catch (RuntimeException e) {
+            return SuccessOrFailure.fromException(e);
+        }
+    }
+
+    private static String describeFailures(String summary, List<String> failures) {
+        return failures.stream().collect(joining("\n - ", summary + ":\n - ", ""));
+    }
+}
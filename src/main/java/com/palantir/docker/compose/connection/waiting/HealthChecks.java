@@ -19,8 +19,10 @@ package com.palantir.docker.compose.connection.waiting;
 import com.palantir.docker.compose.connection.Container;
 import com.palantir.docker.compose.connection.DockerPort;
 import java.util.function.Function;
+import org.joda.time.ReadableDuration;
 
 public final class HealthChecks {
+    private static final int DEFAULT_LATENCY_WINDOW_SIZE = 20;
 
     private HealthChecks() {}
 
@@ -31,4 +33,48 @@ public final class HealthChecks {
     public static HealthCheck<Container> toHaveAllPortsOpen() {
         return Container::areAllPortsOpen;
     }
+
+    public static HealthCheck<Container> toAcceptPostgresConnections(int internalPort) {
+        return toPassProbe(internalPort, WireProtocolProbe.postgres());
+    }
+
+    public static HealthCheck<Container> toRespondToRedisPing(int internalPort) {
+        return toPassProbe(internalPort, WireProtocolProbe.redis());
+    }
+
+    public static HealthCheck<Container> toRespondToKafkaApiVersions(int internalPort) {
+        return toPassProbe(internalPort, WireProtocolProbe.kafka());
+    }
+
+    public static HealthCheck<Container> toRespondToCassandraOptions(int internalPort) {
+        return toPassProbe(internalPort, WireProtocolProbe.cassandra());
+    }
+
+    public static HealthCheck<Container> toHaveHealthyElasticsearchCluster(int internalPort) {
+        return toPassProbe(internalPort, WireProtocolProbe.elasticsearch());
+    }
+
+    /**
+     * Passes once the given check has succeeded within the target latency at the given percentile over the last
+     * {@code windowSize} probes. The returned check keeps track of latencies, so use a new one for each wait.
+     */
+    public static <T> HealthCheck<T> toMeetLatencyTarget(HealthCheck<T> probe, double percentile,
+            ReadableDuration target, int windowSize) {
+        return new LatencyTargetHealthCheck<>(probe, percentile, target, windowSize);
+    }
+
+    public static <T> HealthCheck<T> toMeetLatencyTarget(HealthCheck<T> probe, double percentile,
+            ReadableDuration target) {
+        return toMeetLatencyTarget(probe, percentile, target, DEFAULT_LATENCY_WINDOW_SIZE);
+    }
+
+    private static HealthCheck<Container> toPassProbe(int internalPort, WireProtocolProbe probe) {
+        return container -> {
+            try {
+                return probe.probe(container.port(internalPort));
+            } catch (RuntimeException e) {
+                return SuccessOrFailure.fromException(e);
+            }
+        };
+    }
 }
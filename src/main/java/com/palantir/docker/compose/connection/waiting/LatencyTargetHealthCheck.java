@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.ReadableDuration;
+
+/**
+ * Wraps a health check so that it only passes once the check's own latency meets a percentile target over a sliding
+ * window of consecutive successful probes, e.g. "p95 under 50ms over the last 20 probes". A failed probe empties the
+ * window.
+ * <p>
+ * The window lives in the health check, so use a separate instance for each wait.
+ */
+public class LatencyTargetHealthCheck<T> implements HealthCheck<T> {
+
+    private final HealthCheck<T> probe;
+    private final double percentile;
+    private final long targetNanos;
+    private final LatencyWindow window;
+    private final Ticker ticker;
+
+    public LatencyTargetHealthCheck(HealthCheck<T> probe, double percentile, ReadableDuration target, int windowSize) {
+        this(probe, percentile, target, windowSize, Ticker.systemTicker());
+    }
+
+    LatencyTargetHealthCheck(HealthCheck<T> probe, double percentile, ReadableDuration target, int windowSize,
+            Ticker ticker) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100,
+                "Percentile must be in (0, 100], not %s", percentile);
+        this.probe = probe;
+        this.percentile = percentile;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(target.getMillis());
+        this.window = new LatencyWindow(windowSize);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public SuccessOrFailure isHealthy(T target) {
+        long start = ticker.read();
+        SuccessOrFailure result = probe.isHealthy(target);
+        long latency = ticker.read() - start;
+
+        synchronized (window) {
+            if (result.failed()) {
+                window.clear();
+                return result;
+            }
+
+            window.record(latency);
+            if (!window.isFull()) {
+                return SuccessOrFailure.failure(String.format(
+                        "Waiting for more successful probes before checking the %s latency target of %s. "
+                                + "Latencies so far: %s",
+                        LatencyWindow.formatPercentile(percentile),
+                        LatencyWindow.formatMillis(targetNanos),
+                        window.describe()));
+            }
+
+            long observed = window.percentile(percentile);
+            return SuccessOrFailure.fromBoolean(observed <= targetNanos, String.format(
+                    "%s latency of %s is above the target of %s. Latencies: %s",
+                    LatencyWindow.formatPercentile(percentile),
+                    LatencyWindow.formatMillis(observed),
+                    LatencyWindow.formatMillis(targetNanos),
+                    window.describe()));
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+
+/**
+ * The most recent latencies seen from a service, kept in a fixed-size ring so that old samples fall out of the
+ * window as new ones are recorded.
+ */
+public final class LatencyWindow {
+
+    private final long[] samples;
+    private int next = 0;
+    private int size = 0;
+
+    public LatencyWindow(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "A latency window must hold at least one sample, not %s", capacity);
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isFull() {
+        return size == samples.length;
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Gives the nearest-rank percentile of the latencies in the window.
+     *
+     * @param percentile between 0 and 100
+     * @return the latency in nanoseconds
+     */
+    public synchronized long percentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100,
+                "Percentile must be in (0, 100], not %s", percentile);
+        Preconditions.checkState(size > 0, "No latencies have been recorded");
+        return percentileOf(sorted(), percentile);
+    }
+
+    /**
+     * Summarises the distribution of latencies in the window, e.g.
+     * <code>min 1.2ms, p50 3.0ms, p95 9.8ms, p99 12.1ms, max 12.1ms over 20 samples</code>
+     */
+    public synchronized String describe() {
+        if (size == 0) {
+            return "no samples";
+        }
+        long[] sorted = sorted();
+        return String.format("min %s, p50 %s, p95 %s, p99 %s, max %s over %d samples",
+                formatMillis(sorted[0]),
+                formatMillis(percentileOf(sorted, 50)),
+                formatMillis(percentileOf(sorted, 95)),
+                formatMillis(percentileOf(sorted, 99)),
+                formatMillis(sorted[size - 1]),
+                size);
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+
+    public static String formatMillis(long nanos) {
+        return String.format("%.1fms", nanos / 1_000_000.0);
+    }
+
+    public static String formatPercentile(double percentile) {
+        return "p" + (percentile == Math.rint(percentile)
+                ? String.valueOf((long) percentile)
+                : String.valueOf(percentile));
+    }
+
+    private long[] sorted() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static long percentileOf(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Splitter;
+import com.palantir.docker.compose.configuration.DockerComposeFiles;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small on-disk record of how long each wait took to pass on recent runs of the same docker-compose files, kept in
+ * one properties file per {@link DockerComposeFiles#fingerprint()} so that changing the files starts a new history.
+ * <p>
+ * Several JVMs, such as the forks of a parallel test task, may record to the same file at once. Each sample is merged
+ * into the file under a lock on a sibling <code>.lock</code> file, by reading the file again, appending the sample and
+ * atomically replacing the file with a temporary file unique to the writer.
+ */
+public class ReadinessHistory {
+    private static final Logger log = LoggerFactory.getLogger(ReadinessHistory.class);
+
+    static final int MAX_SAMPLES = 20;
+    private static final long LOCK_TIMEOUT_MILLIS = 10_000;
+    private static final long LOCK_RETRY_MILLIS = 20;
+
+    private final File file;
+    private final boolean failOnSlowStartup;
+    private final Properties samples = new Properties();
+
+    public ReadinessHistory(File file, boolean failOnSlowStartup) {
+        this.file = file;
+        this.failOnSlowStartup = failOnSlowStartup;
+        load();
+    }
+
+    public static ReadinessHistory forFiles(File directory, DockerComposeFiles files, boolean failOnSlowStartup) {
+        return new ReadinessHistory(new File(directory, files.fingerprint() + ".properties"), failOnSlowStartup);
+    }
+
+    /**
+     * Whether a startup that is much slower than usual should fail the wait, rather than just logging a warning.
+     */
+    public boolean failOnSlowStartup() {
+        return failOnSlowStartup;
+    }
+
+    public synchronized Optional<ReadinessProfile> profile(String key) {
+        List<Long> history = samplesFor(key);
+        return history.isEmpty() ? Optional.empty() : Optional.of(ReadinessProfile.of(history));
+    }
+
+    public synchronized void record(String key, long elapsedMillis) {
+        // only one thread in the JVM may hold the lock on a file at once, whichever history it belongs to
+        synchronized (ReadinessHistory.class) {
+            try {
+                Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+                File lockFile = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".lock");
+                try (FileChannel channel = FileChannel.open(
+                        lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    recordUnderLock(channel, key, elapsedMillis);
+                }
+            } catch (IOException e) {
+                log.warn("Could not save readiness history to {}", file, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void recordUnderLock(FileChannel channel, String key, long elapsedMillis)
+            throws IOException, InterruptedException {
+        Optional<FileLock> lock = lock(channel);
+        if (!lock.isPresent()) {
+            log.warn("Timed out waiting for the lock on readiness history {}, so not recording {}ms for {}",
+                    file, elapsedMillis, key);
+            return;
+        }
+        try {
+            load();
+            append(key, elapsedMillis);
+            save();
+        } finally {
+            lock.get().release();
+        }
+    }
+
+    private void append(String key, long elapsedMillis) {
+        List<Long> history = new ArrayList<>(samplesFor(key));
+        history.add(elapsedMillis);
+        List<Long> recent = history.subList(Math.max(0, history.size() - MAX_SAMPLES), history.size());
+        samples.setProperty(key, recent.stream().map(String::valueOf).collect(joining(",")));
+    }
+
+    private static Optional<FileLock> lock(FileChannel channel) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + LOCK_TIMEOUT_MILLIS;
+        while (true) {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return Optional.of(lock);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return Optional.empty();
+            }
+            Thread.sleep(LOCK_RETRY_MILLIS);
+        }
+    }
+
+    private List<Long> samplesFor(String key) {
+        String value = samples.getProperty(key, "");
+        try {
+            return Splitter.on(',').omitEmptyStrings().trimResults().splitToList(value).stream()
+                    .map(Long::valueOf)
+                    .collect(toList());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring unreadable readiness history '{}' for {} in {}", value, key, file);
+            return new ArrayList<>();
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            samples.clear();
+            samples.load(input);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Could not read readiness history from {}, starting a new one", file, e);
+            samples.clear();
+        }
+    }
+
+    private void save() throws IOException {
+        Path temporary = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), file.getName(), ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                samples.store(output, "Milliseconds taken for each wait to pass, most recent last");
+            }
+            Files.move(temporary, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
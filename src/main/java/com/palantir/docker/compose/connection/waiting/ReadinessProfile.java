@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import java.util.List;
+import org.immutables.value.Value;
+
+/**
+ * How long a wait has taken to pass on previous runs, used to decide when to start polling and whether a run was
+ * unusually slow.
+ */
+@Value.Immutable
+public abstract class ReadinessProfile {
+    static final int MIN_SAMPLES_FOR_ANOMALIES = 5;
+    private static final double ANOMALY_STANDARD_DEVIATIONS = 3;
+    private static final double MIN_RELATIVE_DEVIATION = 0.1;
+    private static final double FIRST_POLL_FRACTION_OF_FASTEST = 0.8;
+
+    @Value.Parameter
+    public abstract List<Long> samplesMillis();
+
+    @Value.Check
+    protected void check() {
+        if (samplesMillis().isEmpty()) {
+            throw new IllegalStateException("A readiness profile needs at least one sample");
+        }
+    }
+
+    @Value.Derived
+    public double meanMillis() {
+        return samplesMillis().stream().mapToLong(Long::longValue).average().getAsDouble();
+    }
+
+    @Value.Derived
+    public double standardDeviationMillis() {
+        double mean = meanMillis();
+        double variance = samplesMillis().stream()
+                .mapToDouble(sample -> (sample - mean) * (sample - mean))
+                .average()
+                .getAsDouble();
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * How long to wait before the first poll: comfortably before the fastest previous run, and before anything within
+     * three standard deviations of the mean.
+     */
+    public long firstPollDelayMillis() {
+        long fastest = samplesMillis().stream().mapToLong(Long::longValue).min().getAsLong();
+        double delay = Math.min(
+                fastest * FIRST_POLL_FRACTION_OF_FASTEST,
+                meanMillis() - ANOMALY_STANDARD_DEVIATIONS * standardDeviationMillis());
+        return Math.max(0, (long) delay);
+    }
+
+    /**
+     * Whether a run taking the given time is more than three standard deviations slower than the mean. Deviations are
+     * taken to be at least a tenth of the mean, so that services which always start in almost exactly the same time
+     * aren't flagged for ordinary jitter, and nothing is flagged until there are a few samples to go on.
+     */
+    public boolean isAnomalous(long elapsedMillis) {
+        if (samplesMillis().size() < MIN_SAMPLES_FOR_ANOMALIES) {
+            return false;
+        }
+        double deviation = Math.max(standardDeviationMillis(), MIN_RELATIVE_DEVIATION * meanMillis());
+        return elapsedMillis > meanMillis() + ANOMALY_STANDARD_DEVIATIONS * deviation;
+    }
+
+    public static ReadinessProfile of(List<Long> samplesMillis) {
+        return ImmutableReadinessProfile.of(samplesMillis);
+    }
+}
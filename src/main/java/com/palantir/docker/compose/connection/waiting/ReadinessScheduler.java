@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * The one scheduler that times the polls and timeouts of every pending {@link ClusterWait} in the JVM, however many
+ * rules and waits there are. Its tasks only hand each poll over to a separate pool which runs the health checks, so a
+ * check blocked on a slow connection can never hold up another wait's polls or stop a wait from timing out.
+ */
+final class ReadinessScheduler {
+
+    private static final ScheduledExecutorService SCHEDULER = createScheduler();
+    private static final ExecutorService CHECKS = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("cluster-wait-check-%d")
+            .setDaemon(true)
+            .build());
+
+    private ReadinessScheduler() {}
+
+    static ScheduledExecutorService instance() {
+        return SCHEDULER;
+    }
+
+    /**
+     * The pool on which health checks run, which grows with the number of checks running at once.
+     */
+    static ExecutorService checks() {
+        return CHECKS;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                .setNameFormat("cluster-wait-%d")
+                .setDaemon(true)
+                .build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.function.Predicate;
+
+/**
+ * Sends a single request over a non-blocking socket and reads the response, failing if the whole
+ * exchange (connecting, writing and reading) takes longer than the given timeout.
+ */
+final class SocketExchange {
+
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private SocketExchange() {}
+
+    /**
+     * @param responseComplete is given the response read so far, and returns true once there is enough to interpret it.
+     *                         Reading also stops if the other end closes the connection.
+     * @return the response, ready to be read from
+     */
+    static ByteBuffer exchange(String host, int port, ByteBuffer request, Predicate<ByteBuffer> responseComplete,
+            long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+        try (Selector selector = Selector.open(); SocketChannel channel = SocketChannel.open()) {
+            channel.configureBlocking(false);
+            if (!channel.connect(new InetSocketAddress(host, port))) {
+                while (!channel.finishConnect()) {
+                    await(selector, channel, SelectionKey.OP_CONNECT, deadline, host, port);
+                }
+            }
+
+            while (request.hasRemaining()) {
+                if (channel.write(request) == 0) {
+                    await(selector, channel, SelectionKey.OP_WRITE, deadline, host, port);
+                }
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            while (!responseComplete.test(readable(response))) {
+                if (!response.hasRemaining()) {
+                    response = grow(response);
+                }
+                int read = channel.read(response);
+                if (read < 0) {
+                    break;
+                }
+                if (read == 0) {
+                    await(selector, channel, SelectionKey.OP_READ, deadline, host, port);
+                }
+            }
+            return readable(response);
+        }
+    }
+
+    private static void await(Selector selector, SocketChannel channel, int operation, long deadline, String host,
+            int port) throws IOException {
+        SelectionKey key = channel.keyFor(selector);
+        if (key == null) {
+            channel.register(selector, operation);
+        } else {
+            key.interestOps(operation);
+        }
+
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) {
+            throw new SocketTimeoutException("Timed out talking to " + host + ":" + port);
+        }
+        selector.select(Math.max(1, NANOSECONDS.toMillis(remainingNanos)));
+        selector.selectedKeys().clear();
+    }
+
+    private static ByteBuffer readable(ByteBuffer buffer) {
+        ByteBuffer readable = buffer.duplicate();
+        readable.flip();
+        return readable;
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.palantir.docker.compose.connection.DockerPort;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks whether a service is ready by speaking just enough of its wire protocol to get a meaningful answer back,
+ * rather than only checking that something is listening on the port.
+ */
+final class WireProtocolProbe {
+
+    static final long PROBE_TIMEOUT_MILLIS = 500;
+
+    private static final int POSTGRES_PROTOCOL_VERSION = 3 << 16;
+    private static final String POSTGRES_CANNOT_CONNECT_NOW = "57P03";
+
+    private static final short KAFKA_API_VERSIONS_KEY = 18;
+    private static final int KAFKA_CORRELATION_ID = 0x0dc0;
+    private static final String KAFKA_CLIENT_ID = "docker-compose-rule";
+
+    private static final byte CASSANDRA_PROTOCOL_VERSION = 3;
+    private static final byte CASSANDRA_OPTIONS = 0x05;
+    private static final byte CASSANDRA_ERROR = 0x00;
+    private static final byte CASSANDRA_SUPPORTED = 0x06;
+    private static final int CASSANDRA_HEADER_LENGTH = 9;
+
+    private static final Pattern HTTP_STATUS_LINE = Pattern.compile("^HTTP/\\d\\.\\d (\\d{3})");
+    private static final Pattern ELASTICSEARCH_STATUS = Pattern.compile("\"status\"\\s*:\\s*\"(\\w+)\"");
+
+    private final String protocol;
+    private final Function<DockerPort, ByteBuffer> request;
+    private final Predicate<ByteBuffer> responseComplete;
+    private final Function<ByteBuffer, SuccessOrFailure> interpretation;
+
+    private WireProtocolProbe(String protocol, Function<DockerPort, ByteBuffer> request,
+            Predicate<ByteBuffer> responseComplete, Function<ByteBuffer, SuccessOrFailure> interpretation) {
+        this.protocol = protocol;
+        this.request = request;
+        this.responseComplete = responseComplete;
+        this.interpretation = interpretation;
+    }
+
+    SuccessOrFailure probe(DockerPort port) {
+        String address = port.getIp() + ":" + port.getExternalPort();
+        ByteBuffer response;
+        try {
+            response = SocketExchange.exchange(port.getIp(), port.getExternalPort(), request.apply(port),
+                    responseComplete, PROBE_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            return SuccessOrFailure.failure(protocol + " on " + address + " did not respond: " + e);
+        }
+
+        if (!response.hasRemaining()) {
+            return SuccessOrFailure.failure(protocol + " on " + address + " closed the connection without responding");
+        }
+        try {
+            return interpretation.apply(response);
+        } catch (BufferUnderflowException e) {
+            return SuccessOrFailure.failure(protocol + " on " + address + " sent a truncated response");
+        }
+    }
+
+    /**
+     * Sends a startup message and expects an authentication request back. An error response only counts as a failure
+     * if it says the database is still starting up, shutting down or recovering.
+     */
+    static WireProtocolProbe postgres() {
+        return new WireProtocolProbe("Postgres", port -> {
+            byte[] parameters = "user\0postgres\0database\0postgres\0\0".getBytes(US_ASCII);
+            ByteBuffer message = ByteBuffer.allocate(8 + parameters.length);
+            message.putInt(message.capacity()).putInt(POSTGRES_PROTOCOL_VERSION).put(parameters);
+            message.flip();
+            return message;
+        }, response -> response.remaining() >= 5 && response.remaining() >= 1 + response.getInt(1), response -> {
+            byte type = response.get();
+            if (type == 'R') {
+                return SuccessOrFailure.success();
+            }
+            if (type != 'E') {
+                return SuccessOrFailure.failure("Postgres sent an unexpected '" + (char) type + "' message on startup");
+            }
+
+            response.getInt();
+            String code = "";
+            String message = "";
+            for (byte field = response.get(); field != 0; field = response.get()) {
+                String value = cString(response);
+                if (field == 'C') {
+                    code = value;
+                } else if (field == 'M') {
+                    message = value;
+                }
+            }
+            return SuccessOrFailure.fromBoolean(!POSTGRES_CANNOT_CONNECT_NOW.equals(code),
+                    "Postgres is not accepting connections yet: " + message);
+        });
+    }
+
+    /**
+     * Sends a PING. A server that wants a password is up, but one that is still loading its dataset is not.
+     */
+    static WireProtocolProbe redis() {
+        return new WireProtocolProbe("Redis",
+                port -> ByteBuffer.wrap("*1\r\n$4\r\nPING\r\n".getBytes(US_ASCII)),
+                response -> US_ASCII.decode(response).toString().contains("\r\n"),
+                response -> {
+                    String reply = US_ASCII.decode(response).toString().trim();
+                    return SuccessOrFailure.fromBoolean(reply.startsWith("+PONG") || reply.startsWith("-NOAUTH"),
+                            "Redis replied to PING with '" + reply + "'");
+                });
+    }
+
+    /**
+     * Sends a version 0 ApiVersions request, which every broker since 0.10 answers without needing any topics.
+     */
+    static WireProtocolProbe kafka() {
+        return new WireProtocolProbe("Kafka", port -> {
+            byte[] clientId = KAFKA_CLIENT_ID.getBytes(UTF_8);
+            ByteBuffer message = ByteBuffer.allocate(4 + 2 + 2 + 4 + 2 + clientId.length);
+            message.putInt(message.capacity() - 4)
+                    .putShort(KAFKA_API_VERSIONS_KEY)
+                    .putShort((short) 0)
+                    .putInt(KAFKA_CORRELATION_ID)
+                    .putShort((short) clientId.length)
+                    .put(clientId);
+            message.flip();
+            return message;
+        }, response -> response.remaining() >= 4 && response.remaining() >= 4 + response.getInt(0), response -> {
+            response.getInt();
+            int correlationId = response.getInt();
+            if (correlationId != KAFKA_CORRELATION_ID) {
+                return SuccessOrFailure.failure("Kafka answered ApiVersions with correlation id " + correlationId
+                        + " rather than " + KAFKA_CORRELATION_ID);
+            }
+            short errorCode = response.getShort();
+            return SuccessOrFailure.fromBoolean(errorCode == 0,
+                    "Kafka answered ApiVersions with error code " + errorCode);
+        });
+    }
+
+    /**
+     * Sends an OPTIONS frame using native protocol version 3, which Cassandra 2.1 and later understand.
+     */
+    static WireProtocolProbe cassandra() {
+        return new WireProtocolProbe("Cassandra", port -> {
+            ByteBuffer frame = ByteBuffer.allocate(CASSANDRA_HEADER_LENGTH);
+            frame.put(CASSANDRA_PROTOCOL_VERSION)
+                    .put((byte) 0)
+                    .putShort((short) 0)
+                    .put(CASSANDRA_OPTIONS)
+                    .putInt(0);
+            frame.flip();
+            return frame;
+        }, response -> response.remaining() >= CASSANDRA_HEADER_LENGTH
+                && response.remaining() >= CASSANDRA_HEADER_LENGTH + response.getInt(5),
+                WireProtocolProbe::interpretCassandraResponse);
+    }
+
+    private static SuccessOrFailure interpretCassandraResponse(ByteBuffer response) {
+        byte opcode = response.get(4);
+        if (opcode == CASSANDRA_SUPPORTED) {
+            return SuccessOrFailure.success();
+        }
+        if (opcode == CASSANDRA_ERROR) {
+            response.position(CASSANDRA_HEADER_LENGTH);
+            int errorCode = response.getInt();
+            byte[] message = new byte[response.getShort()];
+            response.get(message);
+            return SuccessOrFailure.failure(String.format("Cassandra answered OPTIONS with error 0x%04x: %s",
+                    errorCode, new String(message, UTF_8)));
+        }
+        return SuccessOrFailure.failure("Cassandra answered OPTIONS with opcode " + opcode);
+    }
+
+    /**
+     * Asks for the cluster health, which is only ready once it is green or yellow. Uses HTTP/1.0 so that the server
+     * closes the connection once it has sent the whole response.
+     */
+    static WireProtocolProbe elasticsearch() {
+        return new WireProtocolProbe("Elasticsearch",
+                port -> ByteBuffer.wrap(("GET /_cluster/health HTTP/1.0\r\nHost: " + port.getIp() + "\r\n\r\n")
+                        .getBytes(US_ASCII)),
+                response -> false,
+                response -> {
+                    String reply = UTF_8.decode(response).toString();
+                    Matcher statusLine = HTTP_STATUS_LINE.matcher(reply);
+                    if (!statusLine.find() || !statusLine.group(1).equals("200")) {
+                        return SuccessOrFailure.failure("Elasticsearch cluster health request failed: "
+                                + reply.split("\r\n", 2)[0]);
+                    }
+                    Matcher status = ELASTICSEARCH_STATUS.matcher(reply);
+                    if (!status.find()) {
+                        return SuccessOrFailure.failure("Elasticsearch did not report a cluster status");
+                    }
+                    return SuccessOrFailure.fromBoolean(!status.group(1).equals("red"),
+                            "Elasticsearch cluster status is " + status.group(1));
+                });
+    }
+
+    @Override
+    public String toString() {
+        return protocol + " probe";
+    }
+
+    private static String cString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // read up to and including the terminator
+        }
+        byte[] value = new byte[buffer.position() - start - 1];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(start);
+        slice.get(value);
+        return new String(value, UTF_8);
+    }
+}
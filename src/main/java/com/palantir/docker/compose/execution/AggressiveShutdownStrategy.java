@@ -6,56 +6,150 @@ package com.palantir.docker.compose.execution;
 
 import static java.util.stream.Collectors.toList;
 
+import com.google.common.base.Throwables;
+import com.google.common.math.IntMath;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.palantir.docker.compose.DockerComposeRule;
 import com.palantir.docker.compose.configuration.ShutdownStrategy;
 import com.palantir.docker.compose.connection.ContainerName;
 import java.io.IOException;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Shuts down containers as fast as possible, without giving them time to finish
  * IO or clean up any resources.
+ *
+ * Containers are removed in chunks, several chunks at once, as the docker daemon removes the containers given to a
+ * single <code>docker rm</code> one after another. Only the containers which failed to be removed are retried.
  */
 public class AggressiveShutdownStrategy implements ShutdownStrategy {
 
     private static final Logger log = LoggerFactory.getLogger(AggressiveShutdownStrategy.class);
 
+    private static final int PARALLELISM = 8;
+    // Well under the smallest ARG_MAX of the platforms docker runs on, leaving room for the environment
+    private static final int MAX_ARGUMENT_CHARS = 64 * 1024;
+    private static final Pattern FAILED_CONTAINER_PATTERN = Pattern.compile("Failed to remove container \\(([^)]+)\\)");
+
     @Override
     public void shutdown(DockerComposeRule rule) throws IOException, InterruptedException {
+        long start = System.nanoTime();
         List<ContainerName> runningContainers = rule.dockerCompose().ps();
 
         log.info("Shutting down {}", runningContainers.stream().map(ContainerName::semanticName).collect(toList()));
-        if (removeContainersCatchingErrors(rule, runningContainers)) {
-            return;
+        List<String> rawContainerNames = runningContainers.stream()
+                .map(ContainerName::rawName)
+                .collect(toList());
+        List<String> failed = removeContainers(rule, rawContainerNames);
+
+        if (!failed.isEmpty()) {
+            log.debug("First shutdown attempted failed for {} due to btrfs volume error... retrying", failed);
+            failed = removeContainers(rule, failed);
         }
 
-        log.debug("First shutdown attempted failed due to btrfs volume error... retrying");
-        if (removeContainersCatchingErrors(rule, runningContainers)) {
-            return;
+        if (!failed.isEmpty()) {
+            log.warn("Couldn't shut down containers {} due to btrfs volume error, "
+                    + "see https://circleci.com/docs/docker-btrfs-error/ for more info.", failed);
+        }
+        log.info("Removed {} containers in {}ms", rawContainerNames.size() - failed.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Removes the containers a chunk at a time, several chunks at once.
+     *
+     * @return the containers which could not be removed
+     */
+    private static List<String> removeContainers(DockerComposeRule rule, List<String> containers)
+            throws IOException, InterruptedException {
+        List<List<String>> chunks = chunks(containers);
+        if (chunks.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        log.warn("Couldn't shut down containers due to btrfs volume error, "
-                + "see https://circleci.com/docs/docker-btrfs-error/ for more info.");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(PARALLELISM, chunks.size()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("docker-rm-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            List<Future<List<String>>> removals = chunks.stream()
+                    .map(chunk -> executor.submit(() -> removeChunk(rule, chunk)))
+                    .collect(toList());
+            List<String> failed = new ArrayList<>();
+            for (Future<List<String>> removal : removals) {
+                failed.addAll(removal.get());
+            }
+            log.debug("Finished shutdown");
+            return failed;
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), IOException.class, InterruptedException.class);
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
-    private boolean removeContainersCatchingErrors(DockerComposeRule rule, List<ContainerName> runningContainers) throws IOException, InterruptedException {
+    private static List<String> removeChunk(DockerComposeRule rule, List<String> chunk)
+            throws IOException, InterruptedException {
         try {
-            removeContainers(rule, runningContainers);
-            return true;
+            rule.docker().rm(chunk);
+            return Collections.emptyList();
         } catch (DockerExecutionException exception) {
-            return false;
+            return failedContainers(exception.getMessage(), chunk);
         }
     }
 
-    private void removeContainers(DockerComposeRule rule, List<ContainerName> running) throws IOException, InterruptedException {
-        List<String> rawContainerNames = running.stream()
-                .map(ContainerName::rawName)
-                .collect(toList());
+    /**
+     * The containers docker reported it failed to remove, or the whole chunk if it did not say which.
+     */
+    private static List<String> failedContainers(String message, List<String> chunk) {
+        List<String> failed = new ArrayList<>();
+        Matcher matcher = FAILED_CONTAINER_PATTERN.matcher(message);
+        while (matcher.find()) {
+            if (chunk.contains(matcher.group(1))) {
+                failed.add(matcher.group(1));
+            }
+        }
+        return failed.isEmpty() ? chunk : failed;
+    }
 
-        rule.docker().rm(rawContainerNames);
-        log.debug("Finished shutdown");
+    /**
+     * Splits the containers into at most {@link #PARALLELISM} chunks of about the same size, splitting further any
+     * chunk whose names would not fit in a single command line.
+     */
+    private static List<List<String>> chunks(List<String> containers) {
+        if (containers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int chunkSize = IntMath.divide(containers.size(), PARALLELISM, RoundingMode.CEILING);
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        int chunkChars = 0;
+        for (String container : containers) {
+            boolean chunkFull = chunk.size() >= chunkSize || chunkChars + container.length() + 1 > MAX_ARGUMENT_CHARS;
+            if (!chunk.isEmpty() && chunkFull) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                chunkChars = 0;
+            }
+            chunk.add(container);
+            chunkChars += container.length() + 1;
+        }
+        chunks.add(chunk);
+        return chunks;
     }
 
 }
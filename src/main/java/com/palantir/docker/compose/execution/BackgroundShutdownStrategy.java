@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ */
+
+package com.palantir.docker.compose.execution;
+
+import com.palantir.docker.compose.DockerComposeRule;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ShutdownStrategy;
+
+/**
+ * Shuts the cluster down in the background with another strategy, so that the rule's <code>after</code> returns
+ * straight away and the next test class can start while the containers, volumes and networks are being removed.
+ *
+ * When the JVM exits, it waits up to two minutes for any teardowns which are still running, and then logs any
+ * teardowns which failed, so that failures are not lost.
+ */
+public class BackgroundShutdownStrategy implements ShutdownStrategy {
+
+    private final ShutdownStrategy teardownStrategy;
+    private final BackgroundTeardowns teardowns;
+
+    public BackgroundShutdownStrategy(ShutdownStrategy teardownStrategy) {
+        this(teardownStrategy, BackgroundTeardowns.instance());
+    }
+
+    BackgroundShutdownStrategy(ShutdownStrategy teardownStrategy, BackgroundTeardowns teardowns) {
+        this.teardownStrategy = teardownStrategy;
+        this.teardowns = teardowns;
+    }
+
+    /**
+     * Waits for any background teardown of the project to finish, before it is started again.
+     */
+    public static void awaitTeardown(ProjectName projectName) throws InterruptedException {
+        BackgroundTeardowns.instance().await(projectName.asString(), BackgroundTeardowns.EXIT_DEADLINE);
+    }
+
+    @Override
+    public void shutdown(DockerComposeRule rule) {
+        teardowns.start(rule.projectName().asString(), () -> teardownStrategy.shutdown(rule));
+    }
+
+    @Override
+    public void shutdown(DockerComposeRule rule, AfterShutdown afterShutdown) {
+        teardowns.start(rule.projectName().asString(), () -> {
+            teardownStrategy.shutdown(rule);
+            afterShutdown.run();
+        });
+    }
+
+}
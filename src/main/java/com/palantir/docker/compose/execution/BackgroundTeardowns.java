@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ */
+
+package com.palantir.docker.compose.execution;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.joda.time.Duration;
+import org.joda.time.ReadableDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The teardowns started by {@link BackgroundShutdownStrategy}, which are waited for when the JVM exits.
+ *
+ * Teardowns started while the JVM is exiting, such as by the shutdown hooks of shared clusters, are waited for too,
+ * up until the deadline. Once the deadline has passed, any further teardowns are run straight away instead.
+ *
+ * A project torn down more than once, such as by rules with the same project name, is torn down one teardown after
+ * another, and a rule starting a project first waits for any teardown of it to finish.
+ */
+final class BackgroundTeardowns {
+    static final Duration EXIT_DEADLINE = Duration.standardMinutes(2);
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundTeardowns.class);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("docker-compose-teardown-%d")
+            .setDaemon(true)
+            .build());
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    private final List<String> failures = new ArrayList<>();
+    private final Object starting = new Object();
+    private volatile boolean finished = false;
+
+    static BackgroundTeardowns instance() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final BackgroundTeardowns INSTANCE = new BackgroundTeardowns();
+
+        static {
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(() -> INSTANCE.awaitAll(EXIT_DEADLINE), "docker-compose-teardown-jvm-shutdown"));
+        }
+    }
+
+    @FunctionalInterface
+    interface Teardown {
+        void run() throws Exception;
+    }
+
+    void start(String project, Teardown teardown) {
+        synchronized (starting) {
+            if (!finished) {
+                CompletableFuture<Void> earlier =
+                        pending.getOrDefault(project, CompletableFuture.completedFuture(null));
+                CompletableFuture<Void> future = earlier.thenRunAsync(() -> run(project, teardown), executor);
+                pending.put(project, future);
+                future.whenComplete((ignored, failure) -> pending.remove(project, future));
+                return;
+            }
+        }
+        run(project, teardown);
+    }
+
+    /**
+     * Waits for any teardown of the project which is still running, so that it is not started again while its
+     * containers, networks and volumes are being removed.
+     */
+    void await(String project, ReadableDuration timeout) throws InterruptedException {
+        CompletableFuture<Void> teardown = pending.get(project);
+        if (teardown == null) {
+            return;
+        }
+        log.info("Waiting for docker-compose project '{}' to finish being torn down in the background", project);
+        try {
+            teardown.get(timeout.getMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // failures are recorded by the teardown itself
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("docker-compose project '" + project + "' was still being torn down after "
+                    + timeout.getMillis() + "ms", e);
+        }
+    }
+
+    private void run(String project, Teardown teardown) {
+        long start = System.nanoTime();
+        try {
+            teardown.run();
+            log.debug("Tore down docker-compose project '{}' in the background in {}ms", project,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            if (finished) {
+                log.error("Tearing down docker-compose project '{}' failed", project, e);
+                return;
+            }
+            log.debug("Tearing down docker-compose project '{}' in the background failed", project, e);
+            synchronized (failures) {
+                failures.add(project + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the teardowns which are still running, including any started while waiting, then reports the ones
+     * which failed or did not finish in time.
+     *
+     * @return how many teardowns failed or did not finish in time
+     */
+    int awaitAll(ReadableDuration deadline) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline.getMillis());
+        List<String> unfinished = new ArrayList<>();
+        Map<String, CompletableFuture<Void>> running = stillRunning(unfinished);
+        while (!running.isEmpty()) {
+            for (Map.Entry<String, CompletableFuture<Void>> teardown : running.entrySet()) {
+                try {
+                    teardown.getValue().get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    unfinished.add(teardown.getKey());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    unfinished.add(teardown.getKey());
+                } catch (ExecutionException e) {
+                    // failures are recorded by the teardown itself
+                }
+            }
+            running = stillRunning(unfinished);
+        }
+
+        if (!unfinished.isEmpty()) {
+            log.warn("Docker-compose projects {} were still being torn down after {}ms, "
+                    + "so they may have been left behind", unfinished, deadline.getMillis());
+        }
+        synchronized (failures) {
+            failures.forEach(failure ->
+                    log.error("Tearing down a docker-compose project in the background failed - {}", failure));
+            return unfinished.size() + failures.size();
+        }
+    }
+
+    /**
+     * The teardowns to wait for next, or none once finished, in which case no more are started in the background.
+     */
+    private Map<String, CompletableFuture<Void>> stillRunning(List<String> unfinished) {
+        synchronized (starting) {
+            if (pending.isEmpty() || !unfinished.isEmpty()) {
+                finished = true;
+                return ImmutableMap.of();
+            }
+            return ImmutableMap.copyOf(pending);
+        }
+    }
+}
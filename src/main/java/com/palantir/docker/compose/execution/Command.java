@@ -70,15 +70,21 @@ public class Command {
         Process process = executable.execute(commands);
 
         ExecutorService exec = newSingleThreadExecutor();
-        Future<String> outputProcessing = exec
-                .submit(() -> processOutputFrom(process));
+        try {
+            Future<String> outputProcessing = exec
+                    .submit(() -> processOutputFrom(process));
 
-        String output = waitForResultFrom(outputProcessing);
+            String output = waitForResultFrom(outputProcessing);
 
-        process.waitFor(MINUTES_TO_WAIT_AFTER_STD_OUT_CLOSES, TimeUnit.MINUTES);
-        exec.shutdown();
+            process.waitFor(MINUTES_TO_WAIT_AFTER_STD_OUT_CLOSES, TimeUnit.MINUTES);
 
-        return new ProcessResult(process.exitValue(), output);
+            return new ProcessResult(process.exitValue(), output);
+        } catch (InterruptedException | RuntimeException e) {
+            process.destroy();
+            throw e;
+        } finally {
+            exec.shutdown();
+        }
     }
 
     private String processOutputFrom(Process process) {
@@ -87,10 +93,10 @@ public class Command {
                 .collect(joining(System.lineSeparator()));
     }
 
-    private String waitForResultFrom(Future<String> outputProcessing) {
+    private String waitForResultFrom(Future<String> outputProcessing) throws InterruptedException {
         try {
             return outputProcessing.get(HOURS_TO_WAIT_FOR_STD_OUT_TO_CLOSE, TimeUnit.HOURS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
+        } catch (ExecutionException | TimeoutException e) {
             throw propagate(e);
         }
     }
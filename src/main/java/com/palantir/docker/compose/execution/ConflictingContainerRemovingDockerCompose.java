@@ -46,9 +46,18 @@ public class ConflictingContainerRemovingDockerCompose extends DelegatingDockerC
 
     @Override
     public void up() throws IOException, InterruptedException {
+        upRemovingConflictingContainers(() -> getDockerCompose().up());
+    }
+
+    @Override
+    public void up(Collection<String> services) throws IOException, InterruptedException {
+        upRemovingConflictingContainers(() -> getDockerCompose().up(services));
+    }
+
+    private void upRemovingConflictingContainers(Up up) throws IOException, InterruptedException {
         for (int currRetryAttempt = 0; currRetryAttempt <= retryAttempts; currRetryAttempt++) {
             try {
-                getDockerCompose().up();
+                up.run();
                 return;
             } catch (DockerExecutionException e) {
                 Set<String> conflictingContainerNames = getConflictingContainerNames(e.getMessage());
@@ -87,4 +96,8 @@ public class ConflictingContainerRemovingDockerCompose extends DelegatingDockerC
         return builder.build();
     }
 
+    @FunctionalInterface
+    private interface Up {
+        void run() throws IOException, InterruptedException;
+    }
 }
@@ -32,9 +32,13 @@ import com.palantir.docker.compose.connection.Ports;
 import com.palantir.docker.compose.connection.State;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
 import org.joda.time.Duration;
+import org.joda.time.ReadableDuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +47,7 @@ public class DefaultDockerCompose implements DockerCompose {
     public static final Version VERSION_1_7_0 = Version.valueOf("1.7.0");
     private static final Duration COMMAND_TIMEOUT = standardMinutes(2);
     private static final Logger log = LoggerFactory.getLogger(DefaultDockerCompose.class);
+    private static final Pattern EXIT_CODE_PATTERN = Pattern.compile("Exit (-?\\d+)");
 
     private final Command command;
     private final DockerMachine dockerMachine;
@@ -67,16 +72,41 @@ public class DefaultDockerCompose implements DockerCompose {
         command.execute(Command.throwingOnError(), "build");
     }
 
+    @Override
+    public void build(String service) throws IOException, InterruptedException {
+        command.execute(Command.throwingOnError(), "build", service);
+    }
+
     @Override
     public void up() throws IOException, InterruptedException {
         command.execute(Command.throwingOnError(), "up", "-d");
     }
 
+    @Override
+    public void up(Collection<String> services) throws IOException, InterruptedException {
+        List<String> args = ImmutableList.<String>builder().add("up", "-d").addAll(services).build();
+        command.execute(Command.throwingOnError(), args.toArray(new String[args.size()]));
+    }
+
     @Override
     public void down() throws IOException, InterruptedException {
         command.execute(swallowingDownCommandDoesNotExist(), "down", "--volumes");
     }
 
+    @Override
+    public void down(ReadableDuration stopTimeout) throws IOException, InterruptedException {
+        command.execute(swallowingDownCommandDoesNotExist(), "down", "--volumes", "--timeout",
+                String.valueOf(wholeSecondsOf(stopTimeout)));
+    }
+
+    /**
+     * docker-compose only takes whole seconds, so anything in between is rounded up rather than down, which would
+     * turn a sub-second timeout into killing the containers straight away. A zero timeout stays zero.
+     */
+    private static long wholeSecondsOf(ReadableDuration duration) {
+        return (duration.getMillis() + 999) / 1000;
+    }
+
     @Override
     public void kill() throws IOException, InterruptedException {
         command.execute(Command.throwingOnError(), "kill");
@@ -196,6 +226,23 @@ public class DefaultDockerCompose implements DockerCompose {
         return State.parseFromDockerComposePs(psOutput(service));
     }
 
+    @Override
+    public int exitCode(String service) throws IOException, InterruptedException {
+        Matcher matcher = EXIT_CODE_PATTERN.matcher(psOutput(service));
+        validState(matcher.find(), "Container '" + service + "' has not exited");
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Override
+    public String logs(String service, int tailLines) throws IOException, InterruptedException {
+        return command.execute(Command.throwingOnError(), "logs", "--no-color", "--tail=" + tailLines, service);
+    }
+
+    @Override
+    public String config() throws IOException, InterruptedException {
+        return command.execute(Command.throwingOnError(), "config");
+    }
+
     private ErrorHandler swallowingDownCommandDoesNotExist() {
         return (exitCode, output, commandName, commands) -> {
             if (downCommandWasPresent(output)) {
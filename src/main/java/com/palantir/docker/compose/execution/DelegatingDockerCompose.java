@@ -21,7 +21,9 @@ import com.palantir.docker.compose.connection.Ports;
 import com.palantir.docker.compose.connection.State;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import org.joda.time.ReadableDuration;
 
 abstract class DelegatingDockerCompose implements DockerCompose {
     private final DockerCompose dockerCompose;
@@ -35,16 +37,31 @@ abstract class DelegatingDockerCompose implements DockerCompose {
         dockerCompose.build();
     }
 
+    @Override
+    public void build(String service) throws IOException, InterruptedException {
+        dockerCompose.build(service);
+    }
+
     @Override
     public void up() throws IOException, InterruptedException {
         dockerCompose.up();
     }
 
+    @Override
+    public void up(Collection<String> services) throws IOException, InterruptedException {
+        dockerCompose.up(services);
+    }
+
     @Override
     public void down() throws IOException, InterruptedException {
         dockerCompose.down();
     }
 
+    @Override
+    public void down(ReadableDuration stopTimeout) throws IOException, InterruptedException {
+        dockerCompose.down(stopTimeout);
+    }
+
     @Override
     public void kill() throws IOException, InterruptedException {
         dockerCompose.kill();
@@ -112,6 +129,21 @@ abstract class DelegatingDockerCompose implements DockerCompose {
         return dockerCompose.state(service);
     }
 
+    @Override
+    public int exitCode(String service) throws IOException, InterruptedException {
+        return dockerCompose.exitCode(service);
+    }
+
+    @Override
+    public String logs(String service, int tailLines) throws IOException, InterruptedException {
+        return dockerCompose.logs(service, tailLines);
+    }
+
+    @Override
+    public String config() throws IOException, InterruptedException {
+        return dockerCompose.config();
+    }
+
     protected final DockerCompose getDockerCompose() {
         return dockerCompose;
     }
@@ -15,9 +15,13 @@
  */
 package com.palantir.docker.compose.execution;
 
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ObjectArrays;
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,9 +29,11 @@ public class Docker {
 
     private static final Logger log = LoggerFactory.getLogger(Docker.class);
 
+    private final DockerExecutable rawExecutable;
     private final Command command;
 
     public Docker(DockerExecutable rawExecutable) {
+        this.rawExecutable = rawExecutable;
         this.command = new Command(rawExecutable, log::debug);
     }
 
@@ -40,4 +46,162 @@ public class Docker {
                 ObjectArrays.concat(new String[] {"rm", "-f"}, containerNames, String.class));
     }
 
+    public String logs(String containerName, int tailLines) throws IOException, InterruptedException {
+        return command.execute(Command.throwingOnError(), "logs", "--tail", String.valueOf(tailLines), containerName);
+    }
+
+    /**
+     * Starts a container in the background.
+     *
+     * @param options options for <code>docker run</code>, e.g. <code>--network</code>
+     * @return the id of the new container
+     */
+    public String runDetached(List<String> options, String image, String... commandAndArguments)
+            throws IOException, InterruptedException {
+        List<String> arguments = ImmutableList.<String>builder()
+                .add("run", "-d")
+                .addAll(options)
+                .add(image)
+                .add(commandAndArguments)
+                .build();
+        return execute(arguments).trim();
+    }
+
+    public String exec(String containerName, String... commandAndArguments) throws IOException, InterruptedException {
+        return execute(ImmutableList.<String>builder().add("exec", containerName).add(commandAndArguments).build());
+    }
+
+    /**
+     * Builds an image from a Dockerfile.
+     *
+     * @param options options for <code>docker build</code>, e.g. <code>--tag</code> or <code>--label</code>
+     * @param context the path of the build context
+     */
+    public void build(List<String> options, String context) throws IOException, InterruptedException {
+        execute(ImmutableList.<String>builder().add("build").addAll(options).add(context).build());
+    }
+
+    public void save(File tarball, String image) throws IOException, InterruptedException {
+        execute(ImmutableList.of("save", "--output", tarball.getPath(), image));
+    }
+
+    public void load(File tarball) throws IOException, InterruptedException {
+        execute(ImmutableList.of("load", "--input", tarball.getPath()));
+    }
+
+    public void pull(String image) throws IOException, InterruptedException {
+        execute(ImmutableList.of("pull", image));
+    }
+
+    /**
+     * The size of a local image in bytes.
+     */
+    public long imageSize(String image) throws IOException, InterruptedException {
+        return Long.parseLong(execute(ImmutableList.of("image", "inspect", "--format", "{{.Size}}", image)).trim());
+    }
+
+    public void tag(String sourceImage, String targetImage) throws IOException, InterruptedException {
+        execute(ImmutableList.of("tag", sourceImage, targetImage));
+    }
+
+    /**
+     * The ids of the images matching the given filters, most recently created first.
+     *
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker images --filter</code>
+     */
+    public List<String> imageIds(String... filters) throws IOException, InterruptedException {
+        ImmutableList.Builder<String> args = ImmutableList.<String>builder().add("images", "--quiet", "--no-trunc");
+        for (String filter : filters) {
+            args.add("--filter", filter);
+        }
+        return Splitter.on('\n').trimResults().omitEmptyStrings().splitToList(execute(args.build()));
+    }
+
+    /**
+     * The statuses of all the containers matching the given filters, running or not, such as
+     * <code>Up 2 minutes</code> or <code>Exited (1) 5 seconds ago</code>.
+     *
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker ps --filter</code>
+     */
+    public List<String> statuses(String... filters) throws IOException, InterruptedException {
+        return ps("{{.Status}}", filters);
+    }
+
+    /**
+     * Lists all the containers matching the given filters, running or not, one line per container.
+     *
+     * @param format a Go template for each line, as accepted by <code>docker ps --format</code>
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker ps --filter</code>
+     */
+    public List<String> ps(String format, String... filters) throws IOException, InterruptedException {
+        return list(ImmutableList.of("ps", "--all", "--format", format), filters);
+    }
+
+    /**
+     * Lists all the networks matching the given filters, one line per network.
+     *
+     * @param format a Go template for each line, as accepted by <code>docker network ls --format</code>
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker network ls --filter</code>
+     */
+    public List<String> networks(String format, String... filters) throws IOException, InterruptedException {
+        return list(ImmutableList.of("network", "ls", "--format", format), filters);
+    }
+
+    public void removeNetworks(Collection<String> networks) throws IOException, InterruptedException {
+        execute(ImmutableList.<String>builder().add("network", "rm").addAll(networks).build());
+    }
+
+    /**
+     * Creates a named volume.
+     *
+     * @param labels labels in the <code>key=value</code> form accepted by <code>docker volume create --label</code>
+     */
+    public void createVolume(String name, String... labels) throws IOException, InterruptedException {
+        ImmutableList.Builder<String> args = ImmutableList.<String>builder().add("volume", "create");
+        for (String label : labels) {
+            args.add("--label", label);
+        }
+        execute(args.add(name).build());
+    }
+
+    /**
+     * Lists all the volumes matching the given filters, one line per volume.
+     *
+     * @param format a Go template for each line, as accepted by <code>docker volume ls --format</code>
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker volume ls --filter</code>
+     */
+    public List<String> volumes(String format, String... filters) throws IOException, InterruptedException {
+        return list(ImmutableList.of("volume", "ls", "--format", format), filters);
+    }
+
+    public void removeVolumes(Collection<String> volumes) throws IOException, InterruptedException {
+        execute(ImmutableList.<String>builder().add("volume", "rm", "--force").addAll(volumes).build());
+    }
+
+    /**
+     * Starts following the docker event stream, one event per line, until the returned process is destroyed.
+     *
+     * @param filters filters in the <code>key=value</code> form accepted by <code>docker events --filter</code>
+     */
+    public Process events(String... filters) throws IOException {
+        ImmutableList.Builder<String> args = ImmutableList.<String>builder().add("events");
+        for (String filter : filters) {
+            args.add("--filter", filter);
+        }
+        List<String> arguments = args.build();
+        return rawExecutable.execute(arguments.toArray(new String[arguments.size()]));
+    }
+
+    private List<String> list(List<String> subcommand, String... filters) throws IOException, InterruptedException {
+        ImmutableList.Builder<String> args = ImmutableList.<String>builder().addAll(subcommand);
+        for (String filter : filters) {
+            args.add("--filter", filter);
+        }
+        return Splitter.on('\n').trimResults().omitEmptyStrings().splitToList(execute(args.build()));
+    }
+
+    private String execute(List<String> arguments) throws IOException, InterruptedException {
+        return command.execute(Command.throwingOnError(), arguments.toArray(new String[arguments.size()]));
+    }
+
 }
@@ -21,12 +21,46 @@ import com.palantir.docker.compose.connection.Ports;
 import com.palantir.docker.compose.connection.State;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
+import org.joda.time.ReadableDuration;
 
+/**
+ * The docker-compose commands used by the rule.
+ *
+ * Commands added since the first release have default implementations, so that implementations written against
+ * earlier releases keep compiling. They fall back to the nearest older command where there is one, and otherwise
+ * throw {@link UnsupportedOperationException}.
+ */
 public interface DockerCompose {
     void build() throws IOException, InterruptedException;
+
+    /**
+     * Builds one service, or every service in implementations which cannot build them one at a time.
+     */
+    default void build(String service) throws IOException, InterruptedException {
+        build();
+    }
+
     void up() throws IOException, InterruptedException;
+
+    /**
+     * Starts the services and their dependencies, or every service in implementations which cannot start only some.
+     */
+    default void up(Collection<String> services) throws IOException, InterruptedException {
+        up();
+    }
+
     void down() throws IOException, InterruptedException;
+
+    /**
+     * Shuts the cluster down, giving containers the stop timeout to exit, or docker-compose's default timeout in
+     * implementations which cannot choose it.
+     */
+    default void down(ReadableDuration stopTimeout) throws IOException, InterruptedException {
+        down();
+    }
+
     void kill() throws IOException, InterruptedException;
     void rm() throws IOException, InterruptedException;
     void up(Container container) throws IOException, InterruptedException;
@@ -40,4 +74,16 @@ public interface DockerCompose {
     boolean writeLogs(String container, OutputStream output) throws IOException;
     Ports ports(String service) throws IOException, InterruptedException;
     State state(String service) throws IOException, InterruptedException;
+
+    default int exitCode(String service) throws IOException, InterruptedException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement exitCode()");
+    }
+
+    default String logs(String service, int tailLines) throws IOException, InterruptedException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement logs()");
+    }
+
+    default String config() throws IOException, InterruptedException {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement config()");
+    }
 }
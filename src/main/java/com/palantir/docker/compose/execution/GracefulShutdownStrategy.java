@@ -4,15 +4,22 @@
 
 package com.palantir.docker.compose.execution;
 
+import static java.util.stream.Collectors.toList;
+
 import com.palantir.docker.compose.DockerComposeRule;
 import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import com.palantir.docker.compose.connection.ContainerName;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Send SIGTERM to containers first, allowing them up to 10 seconds to
- * terminate before killing and rm-ing them.
+ * Send SIGTERM to containers first, allowing them up to the rule's {@link DockerComposeRule#stopTimeout()} to
+ * terminate before killing them, and remove them along with their networks and volumes in a single
+ * <code>docker-compose down</code>. Any containers still left afterwards are removed as by the
+ * {@link AggressiveShutdownStrategy}.
  */
 public class GracefulShutdownStrategy implements ShutdownStrategy {
 
@@ -21,9 +28,16 @@ public class GracefulShutdownStrategy implements ShutdownStrategy {
     @Override
     public void shutdown(DockerComposeRule rule) throws IOException, InterruptedException {
         log.debug("Killing docker-compose cluster");
-        rule.dockerCompose().down();
-        rule.dockerCompose().kill();
-        rule.dockerCompose().rm();
+        long start = System.nanoTime();
+        rule.dockerCompose().down(rule.stopTimeout());
+
+        List<ContainerName> remaining = rule.dockerCompose().ps();
+        if (!remaining.isEmpty()) {
+            log.debug("Containers {} were left after docker-compose down, so removing them",
+                    remaining.stream().map(ContainerName::semanticName).collect(toList()));
+            ShutdownStrategy.AGGRESSIVE.shutdown(rule);
+        }
+        log.debug("Shut down docker-compose cluster in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
     }
 
 }
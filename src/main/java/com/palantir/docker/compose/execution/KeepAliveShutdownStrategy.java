@@ -0,0 +1,28 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ */
+
+package com.palantir.docker.compose.execution;
+
+import com.palantir.docker.compose.DockerComposeRule;
+import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Leaves the cluster running so that the next run of the tests can use it, for rules built with
+ * {@link DockerComposeRule.Builder#keepingClusterAlive()}.
+ */
+public class KeepAliveShutdownStrategy implements ShutdownStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(KeepAliveShutdownStrategy.class);
+
+    @Override
+    public void shutdown(DockerComposeRule rule) throws IOException, InterruptedException {
+        log.info("Leaving docker-compose project '{}' running for the next run. "
+                + "Remove it with 'docker-compose --project-name {} down' when you are finished with it.",
+                rule.projectName().asString(), rule.projectName().asString());
+    }
+
+}
@@ -17,6 +17,7 @@ package com.palantir.docker.compose.execution;
 
 import com.palantir.docker.compose.connection.ContainerName;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 public class RetryingDockerCompose extends DelegatingDockerCompose {
@@ -39,6 +40,14 @@ public class RetryingDockerCompose extends DelegatingDockerCompose {
         });
     }
 
+    @Override
+    public void up(Collection<String> services) throws IOException, InterruptedException {
+        retryer.<Void>runWithRetries(() -> {
+            super.up(services);
+            return null;
+        });
+    }
+
     @Override
     public List<ContainerName> ps() throws IOException, InterruptedException {
         return retryer.runWithRetries(super::ps);
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.execution;
+
+import com.palantir.docker.compose.connection.Container;
+import com.palantir.docker.compose.sidecar.SidecarProbedContainer;
+import com.palantir.docker.compose.sidecar.SidecarProber;
+
+/**
+ * Hands out containers whose port and HTTP checks run from a {@link SidecarProber}.
+ */
+public class SidecarProbingDockerCompose extends DelegatingDockerCompose {
+
+    private final SidecarProber prober;
+
+    public SidecarProbingDockerCompose(DockerCompose dockerCompose, SidecarProber prober) {
+        super(dockerCompose);
+        this.prober = prober;
+    }
+
+    @Override
+    public Container container(String containerName) {
+        return new SidecarProbedContainer(containerName, this, prober);
+    }
+}
@@ -22,7 +22,9 @@ import com.palantir.docker.compose.execution.DockerCompose;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -38,6 +40,8 @@ public class FileLogCollector implements LogCollector {
 
     private final File logDirectory;
 
+    private final Set<String> collected = new HashSet<>();
+
     private ExecutorService executor = null;
 
     public FileLogCollector(File logDirectory) {
@@ -61,13 +65,27 @@ public class FileLogCollector implements LogCollector {
         if (containerNames.size() == 0) {
             return;
         }
-        executor = Executors.newFixedThreadPool(containerNames.size());
+        executor = Executors.newCachedThreadPool();
         containerNames.stream()
                       .map(ContainerName::semanticName)
                       .forEachOrdered(container -> this.collectLogs(container, dockerCompose));
     }
 
+    @Override
+    public synchronized void startCollectingNewContainers(DockerCompose dockerCompose)
+            throws IOException, InterruptedException {
+        if (executor == null) {
+            startCollecting(dockerCompose);
+            return;
+        }
+        dockerCompose.ps().stream()
+                .map(ContainerName::semanticName)
+                .filter(container -> !collected.contains(container))
+                .forEachOrdered(container -> this.collectLogs(container, dockerCompose));
+    }
+
     private void collectLogs(String container, DockerCompose dockerCompose)  {
+        collected.add(container);
         executor.submit(() -> {
             File outputFile = new File(logDirectory, container + ".log");
             log.info("Writing logs for container '{}' to '{}'", container, outputFile.getAbsolutePath());
@@ -84,6 +102,7 @@ public class FileLogCollector implements LogCollector {
         if (executor == null) {
             return;
         }
+        executor.shutdown();
         if (!executor.awaitTermination(STOP_TIMEOUT_IN_MILLIS, TimeUnit.MILLISECONDS)) {
             log.warn("docker containers were still running when log collection stopped");
             executor.shutdownNow();
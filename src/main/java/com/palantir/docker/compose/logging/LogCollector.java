@@ -22,6 +22,13 @@ public interface LogCollector {
 
     void startCollecting(DockerCompose dockerCompose) throws IOException, InterruptedException;
 
+    /**
+     * Starts collecting the logs of any containers started since collection started, such as services started on
+     * first use.
+     */
+    default void startCollectingNewContainers(DockerCompose dockerCompose) throws IOException, InterruptedException {
+    }
+
     void stopCollecting() throws InterruptedException;
 
 }
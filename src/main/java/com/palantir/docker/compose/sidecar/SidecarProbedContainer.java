@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.sidecar;
+
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.connection.Container;
+import com.palantir.docker.compose.connection.DockerPort;
+import com.palantir.docker.compose.connection.waiting.SuccessOrFailure;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A container whose port and HTTP checks run from a {@link SidecarProber} against the container's DNS name and
+ * internal ports. URLs are formatted from a {@link DockerPort} whose host is the container name and whose external
+ * port is the internal port, which is how the container is reached from inside the network.
+ * <p>
+ * The container's ports are looked up once they are first known, and then reused for every later poll, so that
+ * polling makes no <code>docker-compose</code> calls from the JVM.
+ */
+public class SidecarProbedContainer extends Container {
+
+    private final DockerCompose dockerCompose;
+    private final SidecarProber prober;
+    private volatile List<Integer> internalPorts = ImmutableList.of();
+
+    public SidecarProbedContainer(String containerName, DockerCompose dockerCompose, SidecarProber prober) {
+        super(containerName, dockerCompose);
+        this.dockerCompose = dockerCompose;
+        this.prober = prober;
+    }
+
+    @Override
+    public SuccessOrFailure portIsListeningOnHttp(int internalPort, Function<DockerPort, String> urlFunction) {
+        DockerPort portInsideNetwork = new DockerPort(getContainerName(), internalPort, internalPort);
+        return prober.respondsOverHttp(urlFunction.apply(portInsideNetwork));
+    }
+
+    @Override
+    public SuccessOrFailure areAllPortsOpen() {
+        try {
+            return prober.portsAreOpen(getContainerName(), internalPorts());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return SuccessOrFailure.fromException(e);
+        } catch (Exception e) {
+            return SuccessOrFailure.fromException(e);
+        }
+    }
+
+    private List<Integer> internalPorts() throws IOException, InterruptedException {
+        if (internalPorts.isEmpty()) {
+            internalPorts = dockerCompose.ports(getContainerName()).stream()
+                    .map(DockerPort::getInternalPort)
+                    .collect(collectingAndThen(toList(), ImmutableList::copyOf));
+        }
+        return internalPorts;
+    }
+}
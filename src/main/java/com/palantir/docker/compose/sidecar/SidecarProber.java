@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.sidecar;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.connection.waiting.SuccessOrFailure;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks ports and HTTP endpoints from a small container attached to the project's network, rather than from the
+ * JVM, so that probes address containers by their DNS names and never leave the docker host. This matters most with
+ * a remote docker daemon, where every probe from the JVM is a round trip across the network.
+ * <p>
+ * Probes requested at the same time, e.g. by waits polling in parallel, are batched into a single
+ * <code>docker exec</code> that runs them all concurrently and reports every result on its standard output.
+ */
+public class SidecarProber {
+    private static final Logger log = LoggerFactory.getLogger(SidecarProber.class);
+
+    /**
+     * The probes use <code>sh</code>, <code>nc -z</code> and <code>wget -S</code> from busybox. Pinning a release
+     * keeps their flags and output from changing under the probes, and means the image is only pulled once rather
+     * than whenever <code>latest</code> moves. Any image with the same busybox tools can be used instead.
+     */
+    public static final String DEFAULT_IMAGE = "alpine:3.18";
+    /**
+     * Labels the probe container with the network it probes.
+     */
+    public static final String PROBE_LABEL = "com.palantir.docker.compose.probe";
+    private static final int PROBE_TIMEOUT_SECONDS = 1;
+    private static final Pattern RESULT_LINE = Pattern.compile("^(\\d+) (OK|FAIL)$", Pattern.MULTILINE);
+
+    private final Docker docker;
+    private final String network;
+    private final String image;
+    private final Queue<PendingProbe> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean cycleRunning = new AtomicBoolean(false);
+    private volatile Optional<String> containerId = Optional.empty();
+
+    public SidecarProber(Docker docker, String network) {
+        this(docker, network, DEFAULT_IMAGE);
+    }
+
+    public SidecarProber(Docker docker, String network, String image) {
+        this.docker = docker;
+        this.network = network;
+        this.image = image;
+    }
+
+    public synchronized void start() throws IOException, InterruptedException {
+        Preconditions.checkState(!containerId.isPresent(), "The probe container has already been started");
+        String id = docker.runDetached(
+                ImmutableList.of("--rm", "--network", network, "--label", PROBE_LABEL + "=" + network),
+                image, "sleep", String.valueOf(Integer.MAX_VALUE));
+        log.debug("Started probe container {} on network {}", id, network);
+        containerId = Optional.of(id);
+    }
+
+    public synchronized void stop() throws IOException, InterruptedException {
+        if (containerId.isPresent()) {
+            docker.rm(containerId.get());
+            containerId = Optional.empty();
+        }
+    }
+
+    public SuccessOrFailure portsAreOpen(String host, Collection<Integer> ports) {
+        List<Integer> portList = ImmutableList.copyOf(ports);
+        List<String> commands = portList.stream()
+                .map(port -> String.format(
+                        "nc -z -w %d %s %d >/dev/null 2>&1", PROBE_TIMEOUT_SECONDS, quote(host), port))
+                .collect(toList());
+        try {
+            List<Boolean> results = probe(commands);
+            List<Integer> closedPorts = new ArrayList<>();
+            for (int i = 0; i < portList.size(); i++) {
+                if (!results.get(i)) {
+                    closedPorts.add(portList.get(i));
+                }
+            }
+            return SuccessOrFailure.fromBoolean(closedPorts.isEmpty(),
+                    "The following ports failed to open: " + closedPorts);
+        } catch (RuntimeException e) {
+            return SuccessOrFailure.fromException(e);
+        }
+    }
+
+    /**
+     * Passes if the URL gives any HTTP response, including an error status, as with
+     * {@link com.palantir.docker.compose.connection.DockerPort#isHttpResponding}.
+     */
+    public SuccessOrFailure respondsOverHttp(String url) {
+        String command = String.format(
+                "wget -S -q -T %d -O /dev/null %s 2>&1 | grep -q 'HTTP/'", PROBE_TIMEOUT_SECONDS, quote(url));
+        try {
+            return SuccessOrFailure.fromBoolean(probe(ImmutableList.of(command)).get(0),
+                    url + " did not give a http response");
+        } catch (RuntimeException e) {
+            return SuccessOrFailure.fromException(e);
+        }
+    }
+
+    private List<Boolean> probe(List<String> commands) {
+        List<PendingProbe> probes = commands.stream().map(PendingProbe::new).collect(toList());
+        pending.addAll(probes);
+        runCycles();
+        return probes.stream().map(probe -> probe.passed.join()).collect(toList());
+    }
+
+    /**
+     * Whichever thread finds no cycle running runs one for everything pending, while the others wait for its results.
+     * The running thread checks for more pending probes after finishing, so none are left behind.
+     */
+    private void runCycles() {
+        while (!pending.isEmpty() && cycleRunning.compareAndSet(false, true)) {
+            try {
+                List<PendingProbe> batch = new ArrayList<>();
+                for (PendingProbe probe = pending.poll(); probe != null; probe = pending.poll()) {
+                    batch.add(probe);
+                }
+                runCycle(batch);
+            } finally {
+                cycleRunning.set(false);
+            }
+        }
+    }
+
+    private void runCycle(List<PendingProbe> batch) {
+        Map<String, List<PendingProbe>> probesByCommand = new LinkedHashMap<>();
+        batch.forEach(probe -> probesByCommand.computeIfAbsent(probe.command, command -> new ArrayList<>()).add(probe));
+        List<String> commands = ImmutableList.copyOf(probesByCommand.keySet());
+
+        try {
+            String id = containerId.orElseThrow(
+                    () -> new IllegalStateException("The probe container has not been started"));
+            String output = docker.exec(id, "sh", "-c", script(commands));
+            boolean[] passed = new boolean[commands.size()];
+            Matcher result = RESULT_LINE.matcher(output);
+            while (result.find()) {
+                passed[Integer.parseInt(result.group(1))] = result.group(2).equals("OK");
+            }
+            for (int i = 0; i < commands.size(); i++) {
+                boolean commandPassed = passed[i];
+                probesByCommand.get(commands.get(i)).forEach(probe -> probe.passed.complete(commandPassed));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.forEach(probe -> probe.passed.completeExceptionally(new CompletionException(e)));
+        } catch (IOException | RuntimeException e) {
+            batch.forEach(probe -> probe.passed.completeExceptionally(new CompletionException(e)));
+        }
+    }
+
+    static String script(List<String> commands) {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < commands.size(); i++) {
+            script.append(String.format(
+                    "(if %s; then echo '%d OK'; else echo '%d FAIL'; fi) &%n", commands.get(i), i, i));
+        }
+        return script.append("wait").toString();
+    }
+
+    private static String quote(String argument) {
+        return "'" + argument.replace("'", "'\\''") + "'";
+    }
+
+    private static final class PendingProbe {
+        private final String command;
+        private final CompletableFuture<Boolean> passed = new CompletableFuture<>();
+
+        private PendingProbe(String command) {
+            this.command = command;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.warmup;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.DockerPort;
+import com.palantir.docker.compose.connection.waiting.Attempt;
+import com.palantir.docker.compose.connection.waiting.LatencyWindow;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.immutables.value.Value;
+import org.joda.time.Duration;
+import org.joda.time.ReadableDuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends requests to a service until its latency settles down, so that tests don't pay for the JIT compilation and
+ * cache filling that make the first requests to a freshly started service much slower than the rest.
+ * <p>
+ * Requests are sent one at a time and grouped into windows of {@link #windowSize()} requests. The warm-up is
+ * complete once the {@link #percentile()} latency of a window with no failed requests is within
+ * {@link #tolerance()} of the window before it, or when the {@link #budget()} runs out, whichever comes first.
+ */
+@Value.Immutable
+public abstract class WarmUp {
+    private static final Logger log = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final int HTTP_TIMEOUT_MILLIS = 10_000;
+
+    public abstract String name();
+
+    protected abstract Function<Cluster, Attempt> request();
+
+    @Value.Default
+    public int windowSize() {
+        return 20;
+    }
+
+    @Value.Default
+    public double percentile() {
+        return 95;
+    }
+
+    /**
+     * The largest relative change between the percentile latencies of consecutive windows that still counts as
+     * having settled down.
+     */
+    @Value.Default
+    public double tolerance() {
+        return 0.1;
+    }
+
+    @Value.Default
+    public ReadableDuration budget() {
+        return Duration.standardMinutes(1);
+    }
+
+    @Value.Check
+    protected void check() {
+        Preconditions.checkState(windowSize() > 0, "Warm-up window size must be positive, not %s", windowSize());
+        Preconditions.checkState(percentile() > 0 && percentile() <= 100,
+                "Warm-up percentile must be in (0, 100], not %s", percentile());
+        Preconditions.checkState(tolerance() >= 0, "Warm-up tolerance must not be negative, not %s", tolerance());
+    }
+
+    public WarmUpReport run(Cluster cluster) {
+        return run(cluster, Ticker.systemTicker());
+    }
+
+    WarmUpReport run(Cluster cluster, Ticker ticker) {
+        Attempt attempt = request().apply(cluster);
+        LatencyWindow window = new LatencyWindow(windowSize());
+        List<Long> windowLatencies = new ArrayList<>();
+        int requests = 0;
+        int failures = 0;
+        boolean windowFailed = false;
+        boolean converged = false;
+
+        long start = ticker.read();
+        long deadline = start + budget().getMillis() * 1_000_000;
+        while (!converged && ticker.read() < deadline) {
+            long requestStart = ticker.read();
+            boolean succeeded = attemptQuietly(attempt);
+            window.record(ticker.read() - requestStart);
+            requests++;
+            if (!succeeded) {
+                failures++;
+                windowFailed = true;
+            }
+
+            if (window.isFull()) {
+                long latency = window.percentile(percentile());
+                converged = !windowFailed && !windowLatencies.isEmpty()
+                        && isWithinTolerance(windowLatencies.get(windowLatencies.size() - 1), latency);
+                windowLatencies.add(latency);
+                window.clear();
+                windowFailed = false;
+            }
+        }
+
+        WarmUpReport report = WarmUpReport.builder()
+                .name(name())
+                .converged(converged)
+                .requests(requests)
+                .failures(failures)
+                .elapsed(Duration.millis((ticker.read() - start) / 1_000_000))
+                .percentile(percentile())
+                .windowSize(windowSize())
+                .windowLatencies(windowLatencies)
+                .build();
+        if (converged) {
+            log.info("{}", report);
+        } else {
+            log.warn("{}", report);
+        }
+        return report;
+    }
+
+    private boolean isWithinTolerance(long previous, long current) {
+        return Math.abs(current - previous) <= tolerance() * previous;
+    }
+
+    private boolean attemptQuietly(Attempt attempt) {
+        try {
+            return attempt.attempt();
+        } catch (Exception e) {
+            log.trace("Warm-up request to {} failed", name(), e);
+            return false;
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder extends ImmutableWarmUp.Builder {
+
+        /**
+         * Warm up a service by sending it HTTP GET requests, counting any response below 500 as a success.
+         */
+        public Builder httpRequestsTo(String serviceName, int internalPort, Function<DockerPort, String> urlFunction) {
+            return name(serviceName + ":" + internalPort)
+                    .request(cluster -> {
+                        String url = urlFunction.apply(cluster.container(serviceName).port(internalPort));
+                        return () -> respondsWithoutServerError(url);
+                    });
+        }
+
+        /**
+         * Warm up with a custom request, for services that don't speak HTTP or need a more representative request.
+         */
+        public Builder attempts(String warmUpName, Attempt attempt) {
+            return name(warmUpName).request(cluster -> attempt);
+        }
+
+        private static boolean respondsWithoutServerError(String url) throws Exception {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(HTTP_TIMEOUT_MILLIS);
+            connection.setReadTimeout(HTTP_TIMEOUT_MILLIS);
+            try {
+                int responseCode = connection.getResponseCode();
+                InputStream body = responseCode < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (body != null) {
+                    try (InputStream stream = body) {
+                        while (stream.read() >= 0) {
+                            // drain the body so that reading it counts towards the latency
+                        }
+                    }
+                }
+                return responseCode < 500;
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+}
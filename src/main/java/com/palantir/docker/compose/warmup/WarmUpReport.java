@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.warmup;
+
+import static java.util.stream.Collectors.joining;
+
+import com.palantir.docker.compose.connection.waiting.LatencyWindow;
+import java.util.List;
+import org.immutables.value.Value;
+import org.joda.time.ReadableDuration;
+
+/**
+ * How a {@link WarmUp} went, including the percentile latency of each window of requests, i.e. the warm-up curve.
+ */
+@Value.Immutable
+public abstract class WarmUpReport {
+
+    public abstract String name();
+
+    public abstract boolean converged();
+
+    public abstract int requests();
+
+    public abstract int failures();
+
+    public abstract ReadableDuration elapsed();
+
+    public abstract double percentile();
+
+    public abstract int windowSize();
+
+    /**
+     * The {@link #percentile()} latency in nanoseconds of each complete window of {@link #windowSize()} requests.
+     */
+    public abstract List<Long> windowLatencies();
+
+    public String describe() {
+        String curve = windowLatencies().isEmpty()
+                ? "no complete windows"
+                : windowLatencies().stream().map(LatencyWindow::formatMillis).collect(joining(", "));
+        return String.format(
+                "Warm-up of %s %s after %d requests (%d failed) in %.1fs. %s latency of each %d requests: %s",
+                name(),
+                converged() ? "converged" : "ran out of time without converging",
+                requests(),
+                failures(),
+                elapsed().getMillis() / 1000.0,
+                LatencyWindow.formatPercentile(percentile()),
+                windowSize(),
+                curve);
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+
+    public static ImmutableWarmUpReport.Builder builder() {
+        return ImmutableWarmUpReport.builder();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.watchdog;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.palantir.docker.compose.DockerComposeRule;
+import com.palantir.docker.compose.connection.ContainerDeath;
+import com.palantir.docker.compose.connection.ContainerName;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the <code>die</code> and <code>oom</code> docker events of the containers in a docker-compose project,
+ * and fails the running tests as soon as one of them exits with a non-zero exit code.
+ *
+ * Containers which exit cleanly, such as one-off setup containers, are ignored.
+ * Tests which deliberately stop or kill containers should not use this watchdog.
+ */
+public class DockerEventsWatchdog implements Watchdog {
+
+    private static final Logger log = LoggerFactory.getLogger(DockerEventsWatchdog.class);
+
+    private static final int LOG_TAIL_LINES = 50;
+    private static final Pattern EVENT_PATTERN = Pattern.compile("container (die|oom) [0-9a-f]+ \\((.*)\\)");
+    private static final Pattern NAME_PATTERN = Pattern.compile("(?:^|, )name=([^,]+)");
+    private static final Pattern EXIT_CODE_PATTERN = Pattern.compile("(?:^|, )exitCode=(-?\\d+)");
+    private static final int UNKNOWN_EXIT_CODE = -1;
+
+    private final List<ContainerDeath> deaths = new CopyOnWriteArrayList<>();
+    private final Set<String> outOfMemory = ConcurrentHashMap.newKeySet();
+    private final List<Thread> guardedThreads = new ArrayList<>();
+
+    private int reportedDeaths = 0;
+    private Process events = null;
+    private ExecutorService executor = null;
+
+    @Override
+    public synchronized void startWatching(DockerComposeRule rule) throws IOException {
+        if (events != null) {
+            throw new IllegalStateException("Cannot start watching the same cluster twice");
+        }
+        Docker docker = rule.docker();
+        Process process = docker.events(
+                "type=container",
+                "event=die",
+                "event=oom",
+                "label=com.docker.compose.project=" + rule.projectName().asString());
+        log.debug("Watching docker-compose project '{}' for containers dying", rule.projectName().asString());
+
+        events = process;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("docker-compose-watchdog-%d")
+                .setDaemon(true)
+                .build());
+        executor.submit(() -> followEvents(process, docker));
+    }
+
+    @Override
+    public synchronized void stopWatching() {
+        if (events == null) {
+            return;
+        }
+        events.destroy();
+        executor.shutdownNow();
+        events = null;
+        executor = null;
+    }
+
+    public List<ContainerDeath> deaths() {
+        return deaths;
+    }
+
+    /**
+     * Runs the tests on the calling thread and fails them with the first container death while they ran. A single
+     * test is also interrupted as soon as the container dies, while a whole class of tests is left to finish, so that
+     * the interrupt cannot leak into the tests which run after it. A death is only reported by the innermost guard
+     * running when it happened, so when the cluster is a class rule, guarding each test as well reports the death
+     * against the test which was running.
+     */
+    @Override
+    public Statement guard(Statement tests, Description description) {
+        return new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                Thread testThread = Thread.currentThread();
+                int deathsBefore;
+                synchronized (guardedThreads) {
+                    deathsBefore = deaths.size();
+                    if (description.isTest()) {
+                        guardedThreads.add(testThread);
+                    }
+                }
+
+                Throwable failure = null;
+                try {
+                    tests.evaluate();
+                } catch (Throwable e) {
+                    failure = e;
+                }
+
+                Optional<ContainerDeath> death = unreportedDeathSince(deathsBefore, testThread);
+                if (death.isPresent()) {
+                    ContainerDiedException died = new ContainerDiedException(death.get());
+                    if (failure != null) {
+                        died.addSuppressed(failure);
+                    }
+                    throw died;
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        };
+    }
+
+    private Optional<ContainerDeath> unreportedDeathSince(int deathsBefore, Thread testThread) {
+        synchronized (guardedThreads) {
+            boolean interruptible = guardedThreads.remove(testThread);
+            int firstUnreported = Math.max(deathsBefore, reportedDeaths);
+            if (deaths.size() <= firstUnreported) {
+                return Optional.empty();
+            }
+            reportedDeaths = deaths.size();
+            if (interruptible) {
+                // clear the interrupt sent when the container died, so it does not leak into what runs next
+                Thread.interrupted();
+            }
+            return Optional.of(deaths.get(firstUnreported));
+        }
+    }
+
+    private void followEvents(Process process, Docker docker) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))) {
+            reader.lines().forEach(event -> handleEvent(event, docker));
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("Stopped following docker events", e);
+        }
+    }
+
+    void handleEvent(String event, Docker docker) {
+        Matcher matcher = EVENT_PATTERN.matcher(event);
+        if (!matcher.find()) {
+            return;
+        }
+        String attributes = matcher.group(2);
+        Optional<String> rawName = attribute(NAME_PATTERN, attributes);
+        if (!rawName.isPresent()) {
+            return;
+        }
+
+        if (matcher.group(1).equals("oom")) {
+            outOfMemory.add(rawName.get());
+            return;
+        }
+
+        int exitCode = attribute(EXIT_CODE_PATTERN, attributes).map(Integer::parseInt).orElse(UNKNOWN_EXIT_CODE);
+        boolean oomKilled = outOfMemory.remove(rawName.get());
+        if (exitCode == 0 && !oomKilled) {
+            log.debug("Container '{}' exited cleanly", rawName.get());
+            return;
+        }
+
+        ContainerDeath death = ContainerDeath.builder()
+                .containerName(ContainerName.fromPsLine(rawName.get()).semanticName())
+                .exitCode(exitCode)
+                .oomKilled(oomKilled)
+                .logTail(logTail(docker, rawName.get()))
+                .build();
+        log.error("{}", death.describe());
+        synchronized (guardedThreads) {
+            deaths.add(death);
+            guardedThreads.forEach(Thread::interrupt);
+        }
+    }
+
+    private static Optional<String> attribute(Pattern pattern, String attributes) {
+        Matcher matcher = pattern.matcher(attributes);
+        return matcher.find() ? Optional.of(matcher.group(1)) : Optional.empty();
+    }
+
+    private static String logTail(Docker docker, String rawName) {
+        try {
+            return docker.logs(rawName, LOG_TAIL_LINES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not read the logs of container '{}'", rawName, e);
+            return "";
+        }
+    }
+}
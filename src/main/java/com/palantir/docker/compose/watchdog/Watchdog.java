@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.watchdog;
+
+import com.palantir.docker.compose.DockerComposeRule;
+import java.io.IOException;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+/**
+ * Watches a running cluster for containers that die once {@link DockerComposeRule#before()} has returned.
+ */
+public interface Watchdog {
+
+    void startWatching(DockerComposeRule rule) throws IOException, InterruptedException;
+
+    void stopWatching();
+
+    /**
+     * Wraps the tests run against the cluster so that they fail as soon as a container dies,
+     * rather than when they next time out talking to it.
+     *
+     * @param description the description of the tests, which is a single test when guarding each test
+     */
+    Statement guard(Statement tests, Description description);
+
+}
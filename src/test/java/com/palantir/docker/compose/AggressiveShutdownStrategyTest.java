@@ -4,21 +4,34 @@
 
 package com.palantir.docker.compose;
 
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import com.palantir.docker.compose.connection.ContainerName;
+import com.palantir.docker.compose.connection.ImmutableContainerName;
 import com.palantir.docker.compose.execution.Docker;
 import com.palantir.docker.compose.execution.DockerCompose;
 import com.palantir.docker.compose.execution.DockerExecutionException;
+import java.util.List;
+import java.util.stream.IntStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.ArgumentCaptor;
 
 public class AggressiveShutdownStrategyTest {
 
@@ -26,16 +39,18 @@ public class AggressiveShutdownStrategyTest {
     public final ExpectedException exception = ExpectedException.none();
 
     private final DockerComposeRule rule = mock(DockerComposeRule.class);
+    private final DockerCompose mockDockerCompose = mock(DockerCompose.class);
     private final Docker mockDocker = mock(Docker.class);
 
-    private static final String btrfs_message = "'docker rm -f test-1.container.name test-2.container.name' "
+    private static final String btrfs_message = "'docker rm -f test-1.container.name' "
             + "returned exit code 1\nThe output was:\nFailed to remove container (test-1.container.name): "
             + "Error response from daemon: Driver btrfs failed to remove root filesystem ";
 
     @Before
-    public void before() {
-        when(rule.dockerCompose()).thenReturn(mock(DockerCompose.class));
+    public void before() throws Exception {
+        when(rule.dockerCompose()).thenReturn(mockDockerCompose);
         when(rule.docker()).thenReturn(mockDocker);
+        when(mockDockerCompose.ps()).thenReturn(containers("test-1.container.name", "test-2.container.name"));
     }
 
     @Test
@@ -43,11 +58,11 @@ public class AggressiveShutdownStrategyTest {
         doThrow(new DockerExecutionException(btrfs_message))
                 .doNothing()
                 .when(mockDocker)
-                .rm(anyListOf(String.class));
+                .rm(ImmutableList.of("test-1.container.name"));
 
         ShutdownStrategy.AGGRESSIVE.shutdown(rule);
 
-        verify(mockDocker, times(2)).rm(anyListOf(String.class));
+        verify(mockDocker, times(2)).rm(ImmutableList.of("test-1.container.name"));
     }
 
     @Test
@@ -55,11 +70,57 @@ public class AggressiveShutdownStrategyTest {
         doThrow(new DockerExecutionException(btrfs_message))
                 .doThrow(new DockerExecutionException(btrfs_message))
                 .when(mockDocker)
-                .rm(anyListOf(String.class));
+                .rm(ImmutableList.of("test-1.container.name"));
 
         ShutdownStrategy.AGGRESSIVE.shutdown(rule);
 
-        verify(mockDocker, times(2)).rm(anyListOf(String.class));
+        verify(mockDocker, times(2)).rm(ImmutableList.of("test-1.container.name"));
+    }
+
+    @Test
+    public void only_retry_the_containers_which_failed_to_be_removed() throws Exception {
+        doThrow(new DockerExecutionException(btrfs_message))
+                .doNothing()
+                .when(mockDocker)
+                .rm(ImmutableList.of("test-1.container.name"));
+
+        ShutdownStrategy.AGGRESSIVE.shutdown(rule);
+
+        verify(mockDocker, times(1)).rm(ImmutableList.of("test-2.container.name"));
+    }
+
+    @Test
+    public void not_call_rm_when_there_are_no_containers() throws Exception {
+        when(mockDockerCompose.ps()).thenReturn(ImmutableList.of());
+
+        ShutdownStrategy.AGGRESSIVE.shutdown(rule);
+
+        verify(mockDocker, never()).rm(anyListOf(String.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void split_the_containers_into_chunks_which_fit_on_a_command_line() throws Exception {
+        String longName = Strings.repeat("x", 10_000);
+        when(mockDockerCompose.ps()).thenReturn(containers(IntStream.range(0, 100)
+                .mapToObj(i -> longName + i)
+                .toArray(String[]::new)));
+
+        ShutdownStrategy.AGGRESSIVE.shutdown(rule);
+
+        ArgumentCaptor<List> chunks = ArgumentCaptor.forClass(List.class);
+        verify(mockDocker, times(17)).rm(chunks.capture());
+        List<Integer> chunkChars = chunks.getAllValues().stream()
+                .map(chunk -> ((List<String>) chunk).stream().mapToInt(String::length).sum())
+                .collect(toList());
+        assertThat(chunkChars, everyItem(is(lessThan(64 * 1024))));
+        assertThat(chunks.getAllValues().stream().mapToInt(List::size).sum(), is(100));
+    }
+
+    private static List<ContainerName> containers(String... rawNames) {
+        return ImmutableList.copyOf(rawNames).stream()
+                .map(rawName -> ImmutableContainerName.builder().rawName(rawName).semanticName(rawName).build())
+                .collect(toList());
     }
 
 }
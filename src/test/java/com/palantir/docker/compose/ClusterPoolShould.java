@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import com.palantir.docker.compose.configuration.ProjectName;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ClusterPoolShould {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final List<DockerComposeRule> created = new CopyOnWriteArrayList<>();
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = new Ticker() {
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    };
+    private final Supplier<DockerComposeRule> clusterFactory = () -> {
+        DockerComposeRule cluster = mock(DockerComposeRule.class);
+        when(cluster.projectName()).thenReturn(ProjectName.random());
+        created.add(cluster);
+        return cluster;
+    };
+
+    private ClusterPool pool;
+
+    @After
+    public void closePool() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void start_the_minimum_number_of_clusters_in_the_background() throws IOException, InterruptedException {
+        pool = new ClusterPool(clusterFactory, 2, 4, ticker);
+
+        waitForClusters(2);
+        verify(created.get(0), timeout(1000)).before();
+        verify(created.get(1), timeout(1000)).before();
+    }
+
+    @Test(timeout = 5000L)
+    public void hand_out_a_started_cluster_and_replace_it_once_it_is_released() throws IOException, InterruptedException {
+        pool = new ClusterPool(clusterFactory, 1, 4, ticker);
+        waitForClusters(1);
+        PooledCluster lease = pool.lease();
+
+        lease.before();
+        DockerComposeRule leased = lease.cluster();
+        verify(leased).before();
+        assertThat(leased, is(sameInstance(created.get(0))));
+
+        lease.after();
+        verify(leased, timeout(1000)).after();
+        waitForClusters(2);
+    }
+
+    @Test(timeout = 5000L)
+    public void fail_the_lease_when_its_cluster_fails_to_start() throws IOException, InterruptedException {
+        Supplier<DockerComposeRule> failingFactory = () -> {
+            DockerComposeRule cluster = clusterFactory.get();
+            try {
+                doThrow(new IOException("up failed")).when(cluster).before();
+            } catch (IOException | InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return cluster;
+        };
+        pool = new ClusterPool(failingFactory, 1, 4, ticker);
+
+        exception.expect(IOException.class);
+        exception.expectMessage("up failed");
+        pool.lease().before();
+    }
+
+    @Test
+    public void keep_enough_clusters_to_cover_the_leases_expected_while_one_starts() {
+        pool = new ClusterPool(clusterFactory, 0, 4, ticker);
+        assertThat(pool.targetSize(), is(0));
+
+        pool.recordStartup(TimeUnit.SECONDS.toMillis(30));
+        pool.recordLease();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        pool.recordLease();
+
+        assertThat(pool.targetSize(), is(3));
+    }
+
+    @Test
+    public void never_keep_more_than_the_maximum_number_of_clusters() {
+        pool = new ClusterPool(clusterFactory, 0, 2, ticker);
+
+        pool.recordStartup(TimeUnit.MINUTES.toMillis(10));
+        pool.recordLease();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        pool.recordLease();
+
+        assertThat(pool.targetSize(), is(2));
+    }
+
+    @Test(timeout = 5000L)
+    public void shut_down_every_started_cluster_when_closed() throws IOException, InterruptedException {
+        pool = new ClusterPool(clusterFactory, 2, 4, ticker);
+        waitForClusters(2);
+
+        pool.close();
+
+        verify(created.get(0)).after();
+        verify(created.get(1)).after();
+    }
+
+    private void waitForClusters(int count) throws InterruptedException {
+        while (created.size() < count) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DockerComposeRuleGroupShould {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final DockerComposeRule infra = mock(DockerComposeRule.class);
+    private final DockerComposeRule app = mock(DockerComposeRule.class);
+    private final DockerComposeRule mocks = mock(DockerComposeRule.class);
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    @Test(timeout = 5000L)
+    public void start_independent_projects_concurrently() throws Exception {
+        CountDownLatch bothStarting = new CountDownLatch(2);
+        doAnswer(invocation -> bothStarting.await(1, TimeUnit.MINUTES)).when(infra).before();
+        doAnswer(invocation -> {
+            bothStarting.countDown();
+            bothStarting.await(1, TimeUnit.MINUTES);
+            return null;
+        }).when(mocks).before();
+        doAnswer(invocation -> {
+            bothStarting.countDown();
+            return null;
+        }).when(app).before();
+
+        DockerComposeRuleGroup.builder()
+                .project("infra", infra)
+                .project("app", app)
+                .project("mocks", mocks)
+                .build()
+                .before();
+
+        verify(infra).before();
+        verify(app).before();
+        verify(mocks).before();
+    }
+
+    @Test
+    public void start_a_project_after_the_projects_it_depends_on() throws Exception {
+        recordStartAndStop(infra, "infra");
+        recordStartAndStop(app, "app");
+
+        DockerComposeRuleGroup.builder()
+                .project("app", app)
+                .project("infra", infra)
+                .dependency("app", "infra")
+                .build()
+                .before();
+
+        assertThat(events, contains("start infra", "start app"));
+    }
+
+    @Test
+    public void shut_down_a_project_before_the_projects_it_depends_on() throws Exception {
+        recordStartAndStop(infra, "infra");
+        recordStartAndStop(app, "app");
+
+        DockerComposeRuleGroup.builder()
+                .project("infra", infra)
+                .project("app", app)
+                .dependency("app", "infra")
+                .build()
+                .after();
+
+        assertThat(events, contains("stop app", "stop infra"));
+    }
+
+    @Test
+    public void shut_down_the_projects_which_began_starting_when_one_fails() throws Exception {
+        doThrow(new IOException("infra failed")).when(infra).before();
+
+        exception.expect(IOException.class);
+        exception.expectMessage("infra failed");
+        try {
+            DockerComposeRuleGroup.builder()
+                    .project("infra", infra)
+                    .project("app", app)
+                    .dependency("app", "infra")
+                    .build()
+                    .before();
+        } finally {
+            verify(infra).after();
+            verify(app, never()).before();
+            verify(app, never()).after();
+        }
+    }
+
+    @Test
+    public void restore_the_interrupt_when_a_project_is_interrupted_while_starting() throws Exception {
+        doThrow(new InterruptedException()).when(infra).before();
+
+        exception.expect(RuntimeException.class);
+        try {
+            DockerComposeRuleGroup.builder()
+                    .project("infra", infra)
+                    .build()
+                    .before();
+        } finally {
+            assertThat(Thread.interrupted(), is(true));
+        }
+    }
+
+    @Test(timeout = 5000L)
+    public void fail_when_the_projects_do_not_all_start_within_the_timeout() throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return null;
+        }).when(infra).before();
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Docker-compose projects [infra] did not start within 200ms");
+        try {
+            DockerComposeRuleGroup.builder()
+                    .project("infra", infra)
+                    .project("mocks", mocks)
+                    .startupTimeout(Duration.millis(200))
+                    .build()
+                    .before();
+        } finally {
+            verify(infra).after();
+            verify(mocks).after();
+        }
+    }
+
+    @Test
+    public void refuse_projects_which_depend_on_each_other() {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("depend on each other");
+
+        DockerComposeRuleGroup.builder()
+                .project("infra", infra)
+                .project("app", app)
+                .dependency("app", "infra")
+                .dependency("infra", "app")
+                .build();
+    }
+
+    @Test
+    public void refuse_dependencies_on_unknown_projects() {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Project 'app' depends on unknown project 'db'");
+
+        DockerComposeRuleGroup.builder()
+                .project("app", app)
+                .dependency("app", "db")
+                .build();
+    }
+
+    @Test
+    public void keep_projects_in_the_order_they_were_added() {
+        DockerComposeRuleGroup group = DockerComposeRuleGroup.builder()
+                .project("infra", infra)
+                .project("app", app)
+                .build();
+
+        assertThat(group.projects().keySet(), contains("infra", "app"));
+        assertThat(group.startupTimeout(), is(DockerComposeRuleGroup.DEFAULT_STARTUP_TIMEOUT));
+    }
+
+    private void recordStartAndStop(DockerComposeRule rule, String name) throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            events.add("start " + name);
+            return null;
+        }).when(rule).before();
+        doAnswer(invocation -> {
+            Thread.sleep(50);
+            events.add("stop " + name);
+            return null;
+        }).when(rule).after();
+    }
+}
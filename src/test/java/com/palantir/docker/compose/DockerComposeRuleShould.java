@@ -18,14 +18,24 @@ package com.palantir.docker.compose;
 import static com.palantir.docker.compose.connection.waiting.HealthChecks.toHaveAllPortsOpen;
 import static com.palantir.docker.compose.matchers.IOMatchers.fileContainingString;
 import static com.palantir.docker.compose.matchers.IOMatchers.fileWithName;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.core.Is.is;
 import static org.joda.time.Duration.millis;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -45,13 +55,19 @@ import com.palantir.docker.compose.execution.Docker;
 import com.palantir.docker.compose.execution.DockerCompose;
 import com.palantir.docker.compose.execution.DockerExecutionException;
 import com.palantir.docker.compose.logging.LogCollector;
+import com.palantir.docker.compose.warmup.WarmUp;
+import com.palantir.docker.compose.watchdog.Watchdog;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Rule;
@@ -59,6 +75,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -85,13 +102,19 @@ public class DockerComposeRuleShould {
     private DockerComposeRule rule;
 
     @Before public void
-    setup() {
+    setup() throws IOException, InterruptedException {
         when(machine.getIp()).thenReturn(IP);
+        doAnswer(invocation -> {
+            shutdownStrategy.shutdown((DockerComposeRule) invocation.getArguments()[0]);
+            ((ShutdownStrategy.AfterShutdown) invocation.getArguments()[1]).run();
+            return null;
+        }).when(shutdownStrategy).shutdown(any(DockerComposeRule.class), any(ShutdownStrategy.AfterShutdown.class));
         rule = defaultBuilder().build();
     }
 
     private DockerComposeRule.Builder defaultBuilder() {
         return DockerComposeRule.builder().dockerCompose(dockerCompose)
+                                          .docker(mockDocker)
                                           .files(mockFiles)
                                           .machine(machine)
                                           .logCollector(logCollector)
@@ -105,12 +128,75 @@ public class DockerComposeRuleShould {
         verify(dockerCompose).up();
     }
 
+    @Test
+    public void start_watching_the_cluster_once_it_is_up_and_stop_before_shutting_down() throws IOException, InterruptedException {
+        Watchdog watchdog = mock(Watchdog.class);
+        DockerComposeRule watchedRule = defaultBuilder().watchdog(watchdog).build();
+
+        watchedRule.before();
+        watchedRule.after();
+
+        InOrder inOrder = inOrder(dockerCompose, watchdog, shutdownStrategy);
+        inOrder.verify(dockerCompose).up();
+        inOrder.verify(watchdog).startWatching(watchedRule);
+        inOrder.verify(watchdog).stopWatching();
+        inOrder.verify(shutdownStrategy).shutdown(watchedRule);
+    }
+
     @Test
     public void calls_shutdownStrategy_in_after_method() throws IOException, InterruptedException {
         rule.after();
         verify(shutdownStrategy).shutdown(rule);
     }
 
+    @Test
+    public void stop_collecting_logs_once_the_cluster_has_been_shut_down() throws IOException, InterruptedException {
+        rule.after();
+
+        InOrder inOrder = inOrder(shutdownStrategy, logCollector);
+        inOrder.verify(shutdownStrategy).shutdown(rule);
+        inOrder.verify(logCollector).stopCollecting();
+    }
+
+    @Test
+    public void mark_the_cluster_as_owned_by_this_jvm_until_it_has_been_shut_down() throws IOException, InterruptedException {
+        String marker = LeakedProjects.markerVolume(rule.projectName().asString());
+
+        rule.before();
+        rule.after();
+
+        InOrder inOrder = inOrder(mockDocker, dockerCompose, shutdownStrategy);
+        inOrder.verify(mockDocker).createVolume(eq(marker), anyVararg());
+        inOrder.verify(dockerCompose).up();
+        inOrder.verify(shutdownStrategy).shutdown(rule);
+        inOrder.verify(mockDocker).removeVolumes(ImmutableList.of(marker));
+    }
+
+    @Test
+    public void keep_the_cluster_marked_as_owned_until_the_containers_have_stopped() throws IOException, InterruptedException {
+        AtomicReference<ShutdownStrategy.AfterShutdown> stillToRun = new AtomicReference<>();
+        DockerComposeRule backgroundRule = defaultBuilder()
+                .shutdownStrategy(new ShutdownStrategy() {
+                    @Override
+                    public void shutdown(DockerComposeRule shutDownRule) {
+                    }
+
+                    @Override
+                    public void shutdown(DockerComposeRule shutDownRule, AfterShutdown afterShutdown) {
+                        stillToRun.set(afterShutdown);
+                    }
+                })
+                .build();
+        String marker = LeakedProjects.markerVolume(backgroundRule.projectName().asString());
+
+        backgroundRule.before();
+        backgroundRule.after();
+        verify(mockDocker, never()).removeVolumes(ImmutableList.of(marker));
+
+        stillToRun.get().run();
+        verify(mockDocker).removeVolumes(ImmutableList.of(marker));
+    }
+
     @Test
     public void pass_wait_for_service_when_check_is_true() throws IOException, InterruptedException {
         AtomicInteger timesCheckCalled = new AtomicInteger(0);
@@ -120,6 +206,28 @@ public class DockerComposeRuleShould {
         assertThat(timesCheckCalled.get(), is(1));
     }
 
+    @Test
+    public void warm_up_services_once_they_are_ready() throws IOException, InterruptedException {
+        List<String> events = new ArrayList<>();
+        withComposeExecutableReturningContainerFor("db");
+        WarmUp warmUp = WarmUp.builder()
+                .attempts("db", () -> events.add("warm-up"))
+                .windowSize(1)
+                .tolerance(Double.MAX_VALUE)
+                .build();
+
+        DockerComposeRule.builder().from(rule)
+                .waitingForService("db", container -> {
+                    events.add("wait");
+                    return SuccessOrFailure.success();
+                })
+                .addWarmUp(warmUp)
+                .build()
+                .before();
+
+        assertThat(events, contains("wait", "warm-up", "warm-up"));
+    }
+
     @Test
     public void wait_for_multiple_services_on_wait() throws IOException, InterruptedException {
         Container db1 = withComposeExecutableReturningContainerFor("db1");
@@ -155,6 +263,130 @@ public class DockerComposeRuleShould {
         DockerComposeRule.builder().from(rule).waitingForService("db", (container) -> SuccessOrFailure.failure("oops"), millis(200)).build().before();
     }
 
+    @Test
+    public void wait_for_dependencies_first_when_waiting_in_dependency_order() throws IOException, InterruptedException {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        withComposeExecutableReturningContainerFor("db");
+        withComposeExecutableReturningContainerFor("web");
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n");
+
+        DockerComposeRule.builder().from(rule)
+                .waitInDependencyOrder(true)
+                .waitingForService("web", container -> recordingSuccess(checked, container))
+                .waitingForService("db", container -> recordingSuccess(checked, container))
+                .build()
+                .before();
+
+        assertThat(checked, contains("db", "web"));
+    }
+
+    @Test
+    public void only_start_and_wait_on_the_chosen_services_and_their_dependencies() throws IOException, InterruptedException {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        withComposeExecutableReturningContainerFor("db");
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n  cache: {}\n");
+
+        defaultBuilder()
+                .services("web")
+                .waitingForService("web", container -> recordingSuccess(checked, container))
+                .waitingForService("db", container -> recordingSuccess(checked, container))
+                .waitingForService("cache", container -> recordingSuccess(checked, container))
+                .build()
+                .before();
+
+        verify(dockerCompose).up(ImmutableSet.of("web"));
+        verify(dockerCompose, never()).up();
+        assertThat(checked, containsInAnyOrder("db", "web"));
+    }
+
+    @Test
+    public void start_services_when_their_containers_are_first_used_when_starting_lazily() throws IOException, InterruptedException {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        withComposeExecutableReturningContainerFor("db");
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n  cache: {}\n");
+        DockerComposeRule lazyRule = defaultBuilder()
+                .startingServicesLazily()
+                .waitingForService("web", container -> recordingSuccess(checked, container))
+                .waitingForService("db", container -> recordingSuccess(checked, container))
+                .waitingForService("cache", container -> recordingSuccess(checked, container))
+                .build();
+
+        lazyRule.before();
+        verify(dockerCompose, never()).up();
+        verify(dockerCompose, never()).up(anyCollectionOf(String.class));
+
+        lazyRule.containers().container("web");
+        lazyRule.containers().container("db");
+
+        verify(dockerCompose).up(ImmutableSet.of("db", "web"));
+        verify(dockerCompose, times(1)).up(anyCollectionOf(String.class));
+        assertThat(checked, containsInAnyOrder("db", "web"));
+    }
+
+    @Test
+    public void only_start_the_chosen_services_when_starting_lazily() throws IOException, InterruptedException {
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n  cache: {}\n");
+        DockerComposeRule lazyRule = defaultBuilder()
+                .services("web")
+                .startingServicesLazily()
+                .build();
+
+        lazyRule.before();
+        lazyRule.containers().container("cache");
+        lazyRule.containers().container("web");
+
+        verify(dockerCompose).up(ImmutableSet.of("db", "web"));
+        verify(dockerCompose, times(1)).up(anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void collect_the_logs_of_every_service_started_lazily() throws IOException, InterruptedException {
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        when(dockerCompose.config()).thenReturn("services:\n  web: {}\n  cache: {}\n");
+        DockerComposeRule lazyRule = defaultBuilder()
+                .startingServicesLazily()
+                .build();
+
+        lazyRule.before();
+        lazyRule.containers().container("web");
+        verify(logCollector).startCollecting(dockerCompose);
+        lazyRule.containers().container("cache");
+
+        verify(logCollector).startCollectingNewContainers(dockerCompose);
+    }
+
+    @Test(timeout = 10_000)
+    public void start_services_used_by_the_waits_of_other_services_when_starting_lazily() throws IOException, InterruptedException {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        AtomicReference<DockerComposeRule> lazyRule = new AtomicReference<>();
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        when(dockerCompose.config()).thenReturn("services:\n  web: {}\n  cache: {}\n");
+        lazyRule.set(defaultBuilder()
+                .startingServicesLazily()
+                .waitingForService("web", container -> recordingSuccess(checked, lazyRule.get().containers().container("cache")))
+                .build());
+
+        lazyRule.get().before();
+        lazyRule.get().containers().container("web");
+
+        verify(dockerCompose).up(ImmutableSet.of("web"));
+        verify(dockerCompose).up(ImmutableSet.of("cache"));
+        assertThat(checked, contains("cache"));
+    }
+
+    private static SuccessOrFailure recordingSuccess(List<String> checked, Container container) {
+        checked.add(container.getContainerName());
+        return SuccessOrFailure.success();
+    }
+
     @Test
     public void retrieve_port_for_container_by_external_mapping() throws IOException, InterruptedException {
         DockerPort expectedPort = env.port("db", IP, 5433, 5432);
@@ -245,7 +477,7 @@ public class DockerComposeRuleShould {
         doThrow(new DockerExecutionException("The name \"" + conflictingContainer + "\" is already in use"))
                 .doNothing()
                 .when(dockerCompose).up();
-        rule = defaultBuilder().docker(mockDocker).build();
+        rule = defaultBuilder().build();
         rule.before();
 
         verify(dockerCompose, times(2)).up();
@@ -258,16 +490,118 @@ public class DockerComposeRuleShould {
         String conflictingContainer = "conflictingContainer";
         doThrow(new DockerExecutionException("The name \"" + conflictingContainer + "\" is already in use"))
                 .when(dockerCompose).up();
-        rule = defaultBuilder().docker(mockDocker).removeConflictingContainersOnStartup(false).build();
+        rule = defaultBuilder().removeConflictingContainersOnStartup(false).build();
 
         exception.expect(DockerExecutionException.class);
         exception.expectMessage("The name \"conflictingContainer\" is already in use");
         rule.before();
     }
 
+    @Test
+    public void only_consider_a_cluster_alive_when_none_of_its_containers_are_unhealthy_or_starting() throws IOException, InterruptedException {
+        when(mockDocker.statuses(anyVararg())).thenReturn(
+                ImmutableList.of("Up 2 minutes (healthy)", "Up 2 minutes"),
+                ImmutableList.of("Up 2 minutes (healthy)", "Up 1 minute (unhealthy)"),
+                ImmutableList.of("Up 2 minutes", "Up 3 seconds (health: starting)"));
+
+        assertThat(rule.isClusterAlive(), is(true));
+        assertThat(rule.isClusterAlive(), is(false));
+        assertThat(rule.isClusterAlive(), is(false));
+    }
+
+    @Test
+    public void skip_build_up_and_waits_when_a_kept_alive_cluster_can_be_reused() throws IOException, InterruptedException {
+        when(mockFiles.fingerprint()).thenReturn("fingerprint");
+        when(mockFiles.constructComposeFileCommand()).thenReturn(ImmutableList.of("--file", "docker-compose.yaml"));
+        when(mockDocker.statuses(anyVararg())).thenReturn(ImmutableList.of("Up 2 minutes"));
+        DockerComposeRule keptAliveRule = defaultBuilder()
+                .docker(mockDocker)
+                .keepingClusterAlive()
+                .keepAliveDirectory(logFolder.getRoot().getAbsolutePath())
+                .build();
+
+        keptAliveRule.before();
+        keptAliveRule.after();
+        keptAliveRule.before();
+
+        verify(dockerCompose, times(1)).build();
+        verify(dockerCompose, times(1)).up();
+        verify(dockerCompose, times(1)).down(DockerComposeRule.DEFAULT_STOP_TIMEOUT);
+    }
+
+    @Test
+    public void only_wait_on_the_services_which_changed_when_updating_a_kept_alive_cluster() throws IOException, InterruptedException {
+        when(mockFiles.fingerprint()).thenReturn("fingerprint");
+        when(mockFiles.constructComposeFileCommand()).thenReturn(ImmutableList.of("--file", "docker-compose.yaml"));
+        when(mockDocker.statuses(anyVararg())).thenReturn(ImmutableList.of("Up 2 minutes"));
+        when(mockDocker.ps(anyString(), anyVararg())).thenReturn(
+                ImmutableList.of("db 1111 Up 2 minutes", "web 2222 Up 2 minutes", "cache 3333 Up 2 minutes"),
+                ImmutableList.of("db 4444 Up 1 second", "web 2222 Up 2 minutes", "cache 3333 Up 2 minutes"));
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n  cache: {}\n");
+        withComposeExecutableReturningContainerFor("db");
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        List<String> waitedOn = new CopyOnWriteArrayList<>();
+        DockerComposeRule keptAliveRule = defaultBuilder()
+                .docker(mockDocker)
+                .keepingClusterAliveAndUpdatingIt()
+                .keepAliveDirectory(logFolder.getRoot().getAbsolutePath())
+                .waitingForService("db", container -> SuccessOrFailure.fromBoolean(waitedOn.add("db"), "not waited on"))
+                .waitingForService("web", container -> SuccessOrFailure.fromBoolean(waitedOn.add("web"), "not waited on"))
+                .waitingForService("cache", container -> SuccessOrFailure.fromBoolean(waitedOn.add("cache"), "not waited on"))
+                .build();
+        Files.write(logFolder.getRoot().toPath().resolve(keptAliveRule.projectName().asString() + ".fingerprint"),
+                "earlier fingerprint".getBytes(UTF_8));
+
+        keptAliveRule.before();
+
+        verify(dockerCompose).up();
+        verify(shutdownStrategy, never()).shutdown(keptAliveRule);
+        assertThat(waitedOn, containsInAnyOrder("db", "web"));
+    }
+
     public Container withComposeExecutableReturningContainerFor(String containerName) {
         final Container container = new Container(containerName, dockerCompose);
         when(dockerCompose.container(containerName)).thenReturn(container);
         return container;
     }
+
+    @Test
+    public void wait_on_every_service_when_an_earlier_update_failed_in_its_waits() throws IOException, InterruptedException {
+        when(mockFiles.fingerprint()).thenReturn("fingerprint");
+        when(mockFiles.constructComposeFileCommand()).thenReturn(ImmutableList.of("--file", "docker-compose.yaml"));
+        when(mockDocker.statuses(anyVararg())).thenReturn(ImmutableList.of("Up 2 minutes"));
+        when(mockDocker.ps(anyString(), anyVararg())).thenReturn(
+                ImmutableList.of("db 1111 Up 2 minutes", "web 2222 Up 2 minutes", "cache 3333 Up 2 minutes"),
+                ImmutableList.of("db 4444 Up 1 second", "web 2222 Up 2 minutes", "cache 3333 Up 2 minutes"));
+        when(dockerCompose.config()).thenReturn("services:\n  db: {}\n  web:\n    depends_on: [db]\n  cache: {}\n");
+        withComposeExecutableReturningContainerFor("db");
+        withComposeExecutableReturningContainerFor("web");
+        withComposeExecutableReturningContainerFor("cache");
+        File keepAliveDirectory = logFolder.getRoot();
+        DockerComposeRule failingRule = defaultBuilder()
+                .keepingClusterAliveAndUpdatingIt()
+                .keepAliveDirectory(keepAliveDirectory.getAbsolutePath())
+                .waitingForService("db", container -> SuccessOrFailure.failure("not ready"), millis(200))
+                .build();
+        List<String> waitedOn = new CopyOnWriteArrayList<>();
+        DockerComposeRule keptAliveRule = defaultBuilder()
+                .keepingClusterAliveAndUpdatingIt()
+                .keepAliveDirectory(keepAliveDirectory.getAbsolutePath())
+                .waitingForService("db", container -> SuccessOrFailure.fromBoolean(waitedOn.add("db"), "not waited on"))
+                .waitingForService("web", container -> SuccessOrFailure.fromBoolean(waitedOn.add("web"), "not waited on"))
+                .waitingForService("cache", container -> SuccessOrFailure.fromBoolean(waitedOn.add("cache"), "not waited on"))
+                .build();
+        Files.write(keepAliveDirectory.toPath().resolve(keptAliveRule.projectName().asString() + ".fingerprint"),
+                "earlier fingerprint".getBytes(UTF_8));
+
+        try {
+            failingRule.before();
+            fail("Expected the wait on db to fail");
+        } catch (RuntimeException e) {
+            keptAliveRule.before();
+        }
+
+        assertThat(waitedOn, containsInAnyOrder("db", "web", "cache"));
+    }
 }
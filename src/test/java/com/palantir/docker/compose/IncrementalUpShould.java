@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.execution.Docker;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalUpShould {
+    private static final List<String> RUNNING = ImmutableList.of(
+            "db 1111 Up 2 minutes",
+            "web 2222 Up 2 minutes",
+            "worker 3333 Up 2 minutes",
+            "cache 4444 Up 2 minutes");
+
+    private final DockerComposeRule rule = mock(DockerComposeRule.class);
+    private final Docker docker = mock(Docker.class);
+    private final DockerCompose dockerCompose = mock(DockerCompose.class);
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        when(rule.projectName()).thenReturn(ProjectName.fromString("incremental"));
+        when(rule.docker()).thenReturn(docker);
+        when(rule.dockerCompose()).thenReturn(dockerCompose);
+        when(dockerCompose.config()).thenReturn("services:\n"
+                + "  db:\n"
+                + "    image: postgres\n"
+                + "  web:\n"
+                + "    image: web\n"
+                + "    depends_on:\n"
+                + "      - db\n"
+                + "  worker:\n"
+                + "    image: worker\n"
+                + "    depends_on:\n"
+                + "      - web\n"
+                + "  cache:\n"
+                + "    image: redis\n"
+                + "version: '2'\n");
+    }
+
+    @Test
+    public void report_no_services_when_no_containers_changed() throws IOException, InterruptedException {
+        when(docker.ps(anyString(), anyVararg())).thenReturn(RUNNING, RUNNING);
+
+        assertThat(new IncrementalUp(rule).up(dockerCompose), empty());
+        verify(dockerCompose).up();
+    }
+
+    @Test
+    public void report_recreated_services_along_with_the_services_which_depend_on_them() throws IOException, InterruptedException {
+        when(docker.ps(anyString(), anyVararg())).thenReturn(RUNNING, ImmutableList.of(
+                "db 5555 Up 1 second",
+                "web 2222 Up 2 minutes",
+                "worker 3333 Up 2 minutes",
+                "cache 4444 Up 2 minutes"));
+
+        assertThat(new IncrementalUp(rule).up(dockerCompose), containsInAnyOrder("db", "web", "worker"));
+    }
+
+    @Test
+    public void report_services_whose_containers_were_started_again() throws IOException, InterruptedException {
+        when(docker.ps(anyString(), anyVararg())).thenReturn(ImmutableList.of(
+                "db 1111 Up 2 minutes",
+                "web 2222 Up 2 minutes",
+                "worker 3333 Up 2 minutes",
+                "cache 4444 Exited (1) 1 minute ago"), RUNNING);
+
+        assertThat(new IncrementalUp(rule).up(dockerCompose), contains("cache"));
+    }
+
+    @Test
+    public void report_services_which_did_not_have_containers_before() throws IOException, InterruptedException {
+        when(docker.ps(anyString(), anyVararg())).thenReturn(RUNNING.subList(0, 3), RUNNING);
+
+        assertThat(new IncrementalUp(rule).up(dockerCompose), contains("cache"));
+    }
+
+    @Test
+    public void report_services_which_were_not_healthy_before_even_when_up_leaves_them_alone() throws IOException, InterruptedException {
+        List<String> unhealthy = ImmutableList.of(
+                "db 1111 Up 2 minutes",
+                "web 2222 Up 2 minutes (unhealthy)",
+                "worker 3333 Up 2 minutes",
+                "cache 4444 Up 2 seconds (health: starting)");
+        when(docker.ps(anyString(), anyVararg())).thenReturn(unhealthy, unhealthy);
+
+        assertThat(new IncrementalUp(rule).up(dockerCompose), containsInAnyOrder("web", "worker", "cache"));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.docker.compose.configuration.DockerComposeFiles;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.connection.DockerMachine;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import org.joda.time.ReadableDuration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class KeptAliveClusterShould {
+    private static final ProjectName PROJECT_NAME = ProjectName.fromString("keptalive");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final DockerComposeRule rule = mock(DockerComposeRule.class);
+    private final DockerCompose dockerCompose = mock(DockerCompose.class);
+    private final DockerComposeFiles files = mock(DockerComposeFiles.class);
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        when(rule.projectName()).thenReturn(PROJECT_NAME);
+        when(rule.dockerCompose()).thenReturn(dockerCompose);
+        when(rule.isClusterAlive()).thenReturn(true);
+        when(files.fingerprint()).thenReturn("fingerprint");
+    }
+
+    @Test
+    public void not_reuse_a_cluster_it_has_no_record_of() throws IOException, InterruptedException {
+        assertThat(keptAliveCluster().isReusable(rule), is(false));
+    }
+
+    @Test
+    public void reuse_a_running_cluster_started_from_the_same_files() throws IOException, InterruptedException {
+        keptAliveCluster().record();
+
+        assertThat(keptAliveCluster().isReusable(rule), is(true));
+    }
+
+    @Test
+    public void not_reuse_a_cluster_started_from_files_which_have_since_changed() throws IOException, InterruptedException {
+        keptAliveCluster().record();
+        when(files.fingerprint()).thenReturn("changed");
+
+        assertThat(keptAliveCluster().isReusable(rule), is(false));
+    }
+
+    @Test
+    public void not_reuse_a_cluster_with_containers_which_are_not_up() throws IOException, InterruptedException {
+        keptAliveCluster().record();
+        when(rule.isClusterAlive()).thenReturn(false);
+
+        assertThat(keptAliveCluster().isReusable(rule), is(false));
+    }
+
+    @Test
+    public void shut_down_the_containers_left_by_an_earlier_run_when_discarding_it() throws IOException, InterruptedException {
+        keptAliveCluster().record();
+        when(rule.containerStatuses()).thenReturn(ImmutableList.of("Exited (1) 2 hours ago"));
+        when(rule.stopTimeout()).thenReturn(DockerComposeRule.DEFAULT_STOP_TIMEOUT);
+
+        keptAliveCluster().discard(rule);
+
+        verify(dockerCompose).down(DockerComposeRule.DEFAULT_STOP_TIMEOUT);
+        assertThat(keptAliveCluster().isReusable(rule), is(false));
+    }
+
+    @Test
+    public void not_run_docker_compose_when_discarding_a_cluster_with_no_containers() throws IOException, InterruptedException {
+        when(rule.containerStatuses()).thenReturn(Collections.emptyList());
+
+        keptAliveCluster().discard(rule);
+
+        verify(dockerCompose, never()).down(any(ReadableDuration.class));
+    }
+
+    @Test
+    public void derive_the_project_name_from_the_paths_of_the_files() {
+        DockerMachine machine = new DockerMachine("127.0.0.1", ImmutableMap.of());
+        DockerComposeFiles someFiles = new DockerComposeFiles(ImmutableList.of(new File("/a/docker-compose.yaml")));
+        DockerComposeFiles sameFiles = new DockerComposeFiles(ImmutableList.of(new File("/a/docker-compose.yaml")));
+        DockerComposeFiles otherFiles = new DockerComposeFiles(ImmutableList.of(new File("/b/docker-compose.yaml")));
+
+        assertThat(KeptAliveCluster.projectName(someFiles, machine), is(KeptAliveCluster.projectName(sameFiles, machine)));
+        assertThat(KeptAliveCluster.projectName(someFiles, machine), is(not(KeptAliveCluster.projectName(otherFiles, machine))));
+    }
+
+    private KeptAliveCluster keptAliveCluster() {
+        return new KeptAliveCluster(temporaryFolder.getRoot(), PROJECT_NAME, files);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.LeakedProjects.Owner;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.execution.Docker;
+import com.palantir.docker.compose.sidecar.SidecarProber;
+import java.io.IOException;
+import java.util.Optional;
+import org.joda.time.Duration;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class LeakedProjectsShould {
+    private static final String MARKER_FORMAT = "{{.Label \"com.docker.compose.project\"}} {{.Label \"" + LeakedProjects.OWNER_LABEL + "\"}} "
+            + "{{.Label \"" + LeakedProjects.STARTED_LABEL + "\"}}";
+    private static final String OWNER_FILTER = "label=" + LeakedProjects.OWNER_LABEL;
+    private static final int DEAD_PID = 111;
+    private static final int RUNNING_PID = 222;
+
+    private final Docker docker = mock(Docker.class);
+    private final long now = System.currentTimeMillis();
+    private final long sevenHoursAgo = now - Duration.standardHours(7).getMillis();
+    private final Owner self = new Owner(333, "agent", now);
+    private final LeakedProjects leakedProjects = new LeakedProjects(docker, Duration.standardHours(6), self, pid -> Optional.of(pid != DEAD_PID));
+
+    @Test
+    public void reap_projects_whose_owner_on_this_host_is_no_longer_running() throws IOException, InterruptedException {
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of(
+                "dead " + new Owner(DEAD_PID, "agent", now) + " " + now,
+                "running " + new Owner(RUNNING_PID, "agent", now) + " " + now,
+                "mine " + self + " " + now));
+
+        assertThat(leakedProjects.reap(), contains("dead"));
+    }
+
+    @Test
+    public void leave_projects_owned_by_other_hosts_until_they_are_older_than_the_time_to_live() throws IOException, InterruptedException {
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of(
+                "recent " + new Owner(DEAD_PID, "other", sevenHoursAgo) + " " + now,
+                "old " + new Owner(RUNNING_PID, "other", now) + " " + sevenHoursAgo,
+                "unrecognised someone " + now));
+
+        assertThat(leakedProjects.reap(), contains("old"));
+    }
+
+    @Test
+    public void never_reap_the_projects_of_running_jvms_on_this_host_however_old() throws IOException, InterruptedException {
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of(
+                "running " + new Owner(RUNNING_PID, "agent", sevenHoursAgo) + " " + sevenHoursAgo,
+                "mine " + self + " " + sevenHoursAgo));
+
+        assertThat(leakedProjects.reap(), empty());
+    }
+
+    @Test
+    public void fall_back_to_the_time_to_live_where_processes_cannot_be_checked() throws IOException, InterruptedException {
+        LeakedProjects withoutProcesses = new LeakedProjects(docker, Duration.standardHours(6), self, pid -> Optional.empty());
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of(
+                "recent " + new Owner(DEAD_PID, "agent", now) + " " + now,
+                "old " + new Owner(DEAD_PID, "agent", now) + " " + sevenHoursAgo,
+                "mine " + self + " " + sevenHoursAgo));
+
+        assertThat(withoutProcesses.reap(), contains("old"));
+    }
+
+    @Test
+    public void remove_the_containers_networks_and_volumes_of_a_leaked_project_then_its_marker() throws IOException, InterruptedException {
+        String filter = "label=com.docker.compose.project=dead";
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of("dead " + new Owner(DEAD_PID, "agent", now) + " " + now));
+        when(docker.ps("{{.ID}}", filter)).thenReturn(ImmutableList.of("abc", "def"));
+        when(docker.networks("{{.Name}}", filter)).thenReturn(ImmutableList.of("dead_default"));
+        when(docker.volumes("{{.Name}}", filter)).thenReturn(ImmutableList.of("dead_data", LeakedProjects.markerVolume("dead")));
+
+        leakedProjects.reap();
+
+        InOrder inOrder = inOrder(docker);
+        inOrder.verify(docker).rm(ImmutableList.of("abc", "def"));
+        inOrder.verify(docker).removeNetworks(ImmutableList.of("dead_default"));
+        inOrder.verify(docker).removeVolumes(ImmutableList.of("dead_data"));
+        inOrder.verify(docker).removeVolumes(ImmutableList.of(LeakedProjects.markerVolume("dead")));
+    }
+
+    @Test
+    public void remove_the_probe_container_left_on_the_network_of_a_leaked_project() throws IOException, InterruptedException {
+        String filter = "label=com.docker.compose.project=dead";
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of("dead " + new Owner(DEAD_PID, "agent", now) + " " + now));
+        when(docker.ps("{{.ID}}", filter)).thenReturn(ImmutableList.of("abc"));
+        when(docker.networks("{{.Name}}", filter)).thenReturn(ImmutableList.of("dead_default"));
+        when(docker.ps("{{.ID}}", "label=" + SidecarProber.PROBE_LABEL + "=dead_default")).thenReturn(ImmutableList.of("probe"));
+
+        leakedProjects.reap();
+
+        InOrder inOrder = inOrder(docker);
+        inOrder.verify(docker).rm(ImmutableList.of("abc", "probe"));
+        inOrder.verify(docker).removeNetworks(ImmutableList.of("dead_default"));
+    }
+
+    @Test
+    public void reap_several_projects_even_when_one_fails_to_be_removed() throws IOException, InterruptedException {
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of(
+                "first " + new Owner(DEAD_PID, "agent", now) + " " + now,
+                "second " + new Owner(DEAD_PID, "agent", now) + " " + now));
+        when(docker.ps("{{.ID}}", "label=com.docker.compose.project=first")).thenThrow(new IOException("docker is unhappy"));
+
+        assertThat(leakedProjects.reap(), containsInAnyOrder("first", "second"));
+        verify(docker).removeVolumes(ImmutableList.of(LeakedProjects.markerVolume("second")));
+        verify(docker, never()).removeVolumes(ImmutableList.of(LeakedProjects.markerVolume("first")));
+    }
+
+    @Test
+    public void remove_nothing_when_no_projects_have_leaked() throws IOException, InterruptedException {
+        when(docker.volumes(MARKER_FORMAT, OWNER_FILTER)).thenReturn(ImmutableList.of());
+
+        assertThat(leakedProjects.reap(), empty());
+        verify(docker, never()).ps(anyString(), anyVararg());
+        verify(docker, never()).removeVolumes(anyCollectionOf(String.class));
+    }
+
+    @Test
+    public void stamp_a_project_with_a_marker_volume_labelled_with_its_owner() throws IOException, InterruptedException {
+        DockerComposeRule rule = mock(DockerComposeRule.class);
+        when(rule.docker()).thenReturn(docker);
+        when(rule.projectName()).thenReturn(ProjectName.fromString("project"));
+
+        LeakedProjects.stamp(rule);
+
+        verify(docker).createVolume(eq(LeakedProjects.markerVolume("project")),
+                eq(LeakedProjects.OWNER_LABEL + "=" + Owner.current()), startsWith(LeakedProjects.STARTED_LABEL + "="),
+                eq("com.docker.compose.project=project"));
+    }
+}
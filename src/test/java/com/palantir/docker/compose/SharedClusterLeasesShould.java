@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.palantir.docker.compose.configuration.ProjectName;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedClusterLeasesShould {
+    private static final String KEY = "key";
+    private static final long NO_HEARTBEAT = TimeUnit.MINUTES.toMillis(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final DockerComposeRule first = mock(DockerComposeRule.class);
+    private final DockerComposeRule second = mock(DockerComposeRule.class);
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        directory = temporaryFolder.getRoot();
+        when(first.projectName()).thenReturn(ProjectName.fromString("shared"));
+        when(second.projectName()).thenReturn(ProjectName.fromString("shared"));
+        when(second.isClusterAlive()).thenReturn(true);
+    }
+
+    @Test
+    public void start_the_cluster_in_the_first_jvm_and_attach_to_it_from_the_others() throws IOException, InterruptedException {
+        new SharedClusterLeases(directory, KEY).join(first);
+        new SharedClusterLeases(directory, KEY).join(second);
+
+        verify(first).startCluster();
+        verify(second).attachToCluster();
+        verify(second, never()).startCluster();
+        assertThat(new File(directory, KEY + ".properties").exists(), is(true));
+    }
+
+    @Test
+    public void start_the_cluster_again_when_it_is_no_longer_running() throws IOException, InterruptedException {
+        when(second.isClusterAlive()).thenReturn(false);
+
+        new SharedClusterLeases(directory, KEY).join(first);
+        new SharedClusterLeases(directory, KEY).join(second);
+
+        verify(second).startCluster();
+    }
+
+    @Test
+    public void leave_the_cluster_running_while_other_jvms_hold_leases() throws IOException, InterruptedException {
+        SharedClusterLeases firstJvm = new SharedClusterLeases(directory, KEY);
+        SharedClusterLeases secondJvm = new SharedClusterLeases(directory, KEY);
+        firstJvm.join(first);
+        secondJvm.join(second);
+
+        firstJvm.leave(first);
+
+        verify(first, never()).stopCluster();
+        verify(first).detachFromCluster();
+
+        secondJvm.leave(second);
+
+        verify(second).stopCluster();
+        assertThat(new File(directory, KEY + ".properties").exists(), is(false));
+    }
+
+    @Test
+    public void shut_down_the_cluster_when_the_other_leases_have_expired() throws IOException, InterruptedException {
+        SharedClusterLeases deadJvm = new SharedClusterLeases(directory, KEY, NO_HEARTBEAT, 100, SharedClusterLeases.LOCK_TIMEOUT_MILLIS);
+        SharedClusterLeases liveJvm = new SharedClusterLeases(directory, KEY, NO_HEARTBEAT, 100, SharedClusterLeases.LOCK_TIMEOUT_MILLIS);
+        deadJvm.join(first);
+        liveJvm.join(second);
+
+        Thread.sleep(200);
+        liveJvm.leave(second);
+
+        verify(second).stopCluster();
+    }
+
+    @Test(timeout = 5000L)
+    public void give_up_joining_when_another_jvm_holds_the_lock_for_too_long() throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(new File(directory, KEY + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock otherJvm = channel.lock();
+            try {
+                new SharedClusterLeases(directory, KEY, NO_HEARTBEAT, SharedClusterLeases.LEASE_EXPIRY_MILLIS, 200).join(first);
+                fail("Expected joining to time out");
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), containsString("Timed out after 200ms"));
+            } finally {
+                otherJvm.release();
+            }
+        }
+        verify(first, never()).startCluster();
+    }
+
+    @Test
+    public void give_every_jvm_the_same_project_name_for_a_directory_and_key() {
+        ProjectName projectName = SharedClusterLeases.projectName(directory, KEY);
+
+        assertThat(SharedClusterLeases.projectName(new File(directory.getPath()), KEY), is(projectName));
+        assertThat(SharedClusterLeases.projectName(directory, "other"), is(not(projectName)));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.palantir.docker.compose.connection.DockerMachine;
+import com.palantir.docker.compose.connection.waiting.HealthChecks;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import org.joda.time.Duration;
+import org.joda.time.ReadableDuration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SharedClustersShould {
+    private static final String KEY = "key";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SharedClusters sharedClusters = new SharedClusters();
+    private final DockerComposeRule first = mock(DockerComposeRule.class);
+    private final DockerComposeRule second = mock(DockerComposeRule.class);
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        withIdleTimeout(Optional.empty());
+        when(first.sharedClusterLockDirectory()).thenReturn(Optional.empty());
+        when(second.sharedClusterLockDirectory()).thenReturn(Optional.empty());
+        when(first.isClusterAlive()).thenReturn(true);
+    }
+
+    @Test
+    public void start_the_cluster_for_the_first_rule_and_attach_later_rules_to_it() throws IOException, InterruptedException {
+        sharedClusters.attach(KEY, first);
+        sharedClusters.attach(KEY, second);
+
+        verify(first).startCluster();
+        verify(second).attachToCluster();
+        verify(second, never()).startCluster();
+    }
+
+    @Test
+    public void start_the_cluster_again_when_it_is_no_longer_running() throws IOException, InterruptedException {
+        when(first.isClusterAlive()).thenReturn(false);
+
+        sharedClusters.attach(KEY, first);
+        sharedClusters.attach(KEY, second);
+
+        verify(first).stopCluster();
+        verify(second).startCluster();
+    }
+
+    @Test
+    public void keep_the_cluster_running_until_the_jvm_exits_without_an_idle_timeout() throws IOException, InterruptedException {
+        sharedClusters.attach(KEY, first);
+        sharedClusters.detach(KEY, first);
+        sharedClusters.attach(KEY, second);
+        sharedClusters.detach(KEY, second);
+
+        verify(second, never()).startCluster();
+        verify(first, never()).stopCluster();
+
+        sharedClusters.shutDownAll();
+
+        verify(first).stopCluster();
+    }
+
+    @Test
+    public void shut_down_the_cluster_when_the_last_rule_detaches_with_a_zero_idle_timeout() throws IOException, InterruptedException {
+        withIdleTimeout(Optional.of(Duration.ZERO));
+
+        sharedClusters.attach(KEY, first);
+        sharedClusters.attach(KEY, second);
+        sharedClusters.detach(KEY, first);
+
+        verify(first, never()).stopCluster();
+
+        sharedClusters.detach(KEY, second);
+
+        verify(second).detachFromCluster();
+        verify(first).stopCluster();
+    }
+
+    @Test
+    public void shut_down_the_cluster_once_it_has_been_idle_for_the_idle_timeout() throws IOException, InterruptedException {
+        withIdleTimeout(Optional.of(Duration.millis(100)));
+
+        sharedClusters.attach(KEY, first);
+        sharedClusters.detach(KEY, first);
+
+        verify(first, timeout(2000)).stopCluster();
+    }
+
+    @Test
+    public void keep_the_cluster_running_when_a_rule_attaches_within_the_idle_timeout() throws IOException, InterruptedException {
+        withIdleTimeout(Optional.of(Duration.millis(200)));
+
+        sharedClusters.attach(KEY, first);
+        sharedClusters.detach(KEY, first);
+        sharedClusters.attach(KEY, second);
+        Thread.sleep(400);
+
+        verify(first, never()).stopCluster();
+    }
+
+    @Test
+    public void start_a_separate_cluster_for_each_key() throws IOException, InterruptedException {
+        sharedClusters.attach(KEY, first);
+        sharedClusters.attach("other", second);
+
+        verify(first).startCluster();
+        verify(second).startCluster();
+    }
+
+    @Test
+    public void give_rules_with_the_same_files_and_waits_the_same_key_and_project_name() throws IOException {
+        DockerComposeRule rule = sharedRule().build();
+        DockerComposeRule sameRule = sharedRule().build();
+
+        assertThat(SharedClusters.key(rule), is(SharedClusters.key(sameRule)));
+        assertThat(rule.projectName(), is(sameRule.projectName()));
+    }
+
+    @Test
+    public void give_rules_waiting_for_different_services_different_keys() throws IOException {
+        DockerComposeRule rule = sharedRule().build();
+        DockerComposeRule otherRule = sharedRule().waitingForService("db2", HealthChecks.toHaveAllPortsOpen()).build();
+
+        assertThat(SharedClusters.key(rule), is(not(SharedClusters.key(otherRule))));
+    }
+
+    private DockerComposeRule.Builder sharedRule() throws IOException {
+        File composeFile = new File(temporaryFolder.getRoot(), "docker-compose.yaml");
+        Files.write("db:\n  image: appropriate/nc\n", composeFile, UTF_8);
+        return DockerComposeRule.builder()
+                .file(composeFile.getAbsolutePath())
+                .machine(new DockerMachine("127.0.0.1", ImmutableMap.of()))
+                .waitingForService("db", HealthChecks.toHaveAllPortsOpen())
+                .sharingCluster();
+    }
+
+    private void withIdleTimeout(Optional<ReadableDuration> idleTimeout) {
+        when(first.sharedClusterIdleTimeout()).thenReturn(idleTimeout);
+        when(second.sharedClusterIdleTimeout()).thenReturn(idleTimeout);
+    }
+}
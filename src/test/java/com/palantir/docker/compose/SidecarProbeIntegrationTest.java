@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose;
+
+import static com.palantir.docker.compose.connection.waiting.HealthChecks.toHaveAllPortsOpen;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import com.palantir.docker.compose.connection.State;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SidecarProbeIntegrationTest {
+
+    @Rule
+    public final DockerComposeRule docker = DockerComposeRule.builder()
+            .file("src/test/resources/sidecar-probe-docker-compose.yaml")
+            .probingFromSidecar()
+            .waitingForService("db", toHaveAllPortsOpen())
+            .build();
+
+    @Test
+    public void waits_on_ports_which_are_only_exposed_inside_the_project_network() throws IOException, InterruptedException {
+        assertThat(docker.containers().container("db").state(), is(State.Up));
+    }
+}
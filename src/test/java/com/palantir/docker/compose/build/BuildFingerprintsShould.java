@@ -0,0 +1,108 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import com.google.common.io.Files;
+import com.palantir.docker.compose.configuration.BuildDefinition;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildFingerprintsShould {
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File context;
+    private File indexFile;
+    private BuildDefinition build;
+
+    @Before
+    public void setup() throws IOException {
+        context = temporaryFolder.newFolder("context");
+        indexFile = new File(temporaryFolder.getRoot(), "file-hashes.properties");
+        write("Dockerfile", "FROM alpine\nCOPY app.sh /\n");
+        write("app.sh", "echo hello\n");
+        build = buildDefinition("build: " + context.getAbsolutePath());
+    }
+
+    @Test
+    public void give_the_same_fingerprint_to_an_unchanged_context() throws IOException {
+        assertThat(fingerprint(build), is(fingerprint(build)));
+    }
+
+    @Test
+    public void change_the_fingerprint_when_a_file_in_the_context_changes() throws IOException {
+        String before = fingerprint(build);
+        write("app.sh", "echo goodbye\n");
+
+        assertThat(fingerprint(build), is(not(before)));
+    }
+
+    @Test
+    public void change_the_fingerprint_when_a_file_is_added_to_the_context() throws IOException {
+        String before = fingerprint(build);
+        write("config.yml", "port: 8080\n");
+
+        assertThat(fingerprint(build), is(not(before)));
+    }
+
+    @Test
+    public void change_the_fingerprint_when_the_build_args_change() throws IOException {
+        BuildDefinition withArgs = buildDefinition("build:\n      context: " + context.getAbsolutePath() + "\n      args:\n        VERSION: '2'");
+
+        assertThat(fingerprint(withArgs), is(not(fingerprint(build))));
+    }
+
+    @Test
+    public void not_read_files_again_when_their_size_and_modification_time_are_unchanged() throws IOException {
+        String before = fingerprint(build);
+        write("app.sh", "echo HELLO\n");
+
+        assertThat(fingerprint(build), is(before));
+    }
+
+    private static BuildDefinition buildDefinition(String buildSection) {
+        return ServiceGraph.parseFromDockerComposeConfig("services:\n  web:\n    " + buildSection + "\nversion: '2'\n")
+                .service("web")
+                .buildDefinition()
+                .get();
+    }
+
+    private String fingerprint(BuildDefinition definition) throws IOException {
+        FileHashIndex index = new FileHashIndex(indexFile);
+        String fingerprint = new BuildFingerprints(index).fingerprint(definition);
+        index.save();
+        return fingerprint;
+    }
+
+    private void write(String name, String contents) throws IOException {
+        File file = new File(context, name);
+        Files.write(contents, file, UTF_8);
+        file.setLastModified(AN_HOUR_AGO);
+    }
+}
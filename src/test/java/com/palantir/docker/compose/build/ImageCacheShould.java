@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ImageCacheShould {
+
+    private static final CachedImage POSTGRES = CachedImage.pulled("postgres:9.6");
+    private static final CachedImage REDIS = CachedImage.pulled("redis:3");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Docker docker = mock(Docker.class);
+
+    private File directory;
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        directory = temporaryFolder.newFolder("images");
+        when(docker.imageIds(anyVararg())).thenReturn(Collections.emptyList());
+        doAnswer(invocation -> {
+            try (RandomAccessFile tarball = new RandomAccessFile((File) invocation.getArguments()[0], "rw")) {
+                tarball.setLength(100);
+            }
+            return null;
+        }).when(docker).save(any(File.class), any(String.class));
+    }
+
+    @Test
+    public void save_images_which_are_not_cached_and_load_them_next_time() throws IOException, InterruptedException {
+        ImageCache cache = new ImageCache(directory, 1000, 2);
+
+        cache.load(docker, ImmutableList.of(POSTGRES));
+        verify(docker, never()).load(any(File.class));
+
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES));
+        cache.awaitSaves();
+        verify(docker).save(any(File.class), eq("postgres:9.6"));
+
+        cache.load(docker, ImmutableList.of(POSTGRES));
+        verify(docker).load(any(File.class));
+    }
+
+    @Test
+    public void not_save_images_which_are_already_cached() throws IOException, InterruptedException {
+        ImageCache cache = new ImageCache(directory, 1000, 2);
+
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES));
+        cache.awaitSaves();
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES));
+        cache.awaitSaves();
+
+        verify(docker, times(1)).save(any(File.class), eq("postgres:9.6"));
+    }
+
+    @Test
+    public void not_load_images_which_are_already_present() throws IOException, InterruptedException {
+        ImageCache cache = new ImageCache(directory, 1000, 2);
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES));
+        cache.awaitSaves();
+        when(docker.imageIds("reference=postgres:9.6")).thenReturn(ImmutableList.of("sha256:abc"));
+
+        cache.load(docker, ImmutableList.of(POSTGRES));
+
+        verify(docker, never()).load(any(File.class));
+    }
+
+    @Test
+    public void evict_the_least_recently_used_images_once_over_budget() throws IOException, InterruptedException {
+        ImageCache cache = new ImageCache(directory, 150, 2);
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES));
+        cache.awaitSaves();
+        File[] tarballs = directory.listFiles();
+        assertThat(tarballs.length, is(1));
+        assertThat(tarballs[0].setLastModified(System.currentTimeMillis() - 60_000), is(true));
+
+        cache.saveInBackground(docker, ImmutableList.of(REDIS));
+        cache.awaitSaves();
+
+        cache.load(docker, ImmutableList.of(POSTGRES, REDIS));
+        verify(docker, times(1)).load(any(File.class));
+        assertThat(directory.listFiles().length, is(1));
+    }
+
+    @Test
+    public void not_leave_temporary_files_behind_when_saving_fails() throws IOException, InterruptedException {
+        ImageCache cache = new ImageCache(directory, 1000, 2);
+        doThrow(new IllegalStateException("no space left on device")).when(docker).save(any(File.class), eq("redis:3"));
+
+        cache.saveInBackground(docker, ImmutableList.of(POSTGRES, REDIS));
+        cache.awaitSaves();
+
+        File[] files = directory.listFiles();
+        assertThat(files.length, is(1));
+        assertThat(files[0].getName().endsWith(".tar"), is(true));
+    }
+
+    @Test
+    public void cache_pulled_images_by_reference_and_built_images_by_fingerprint() throws IOException {
+        File context = temporaryFolder.newFolder("web");
+        Files.write("FROM alpine\n", new File(context, "Dockerfile"), UTF_8);
+        ServiceGraph services = ServiceGraph.parseFromDockerComposeConfig("services:\n"
+                + "  web:\n"
+                + "    build: " + context.getAbsolutePath() + "\n"
+                + "  db:\n"
+                + "    image: postgres:9.6\n"
+                + "version: '2'\n");
+        IncrementalBuild build = new IncrementalBuild(docker,
+                ProjectName.fromString("project"), temporaryFolder.newFolder("cache"));
+
+        assertThat(ImageCache.imagesOf(services, Optional.empty()), contains(POSTGRES));
+        assertThat(ImageCache.imagesOf(services, Optional.of(build)), containsInAnyOrder(POSTGRES,
+                CachedImage.built(build.fingerprint(services.service("web")), "project_web")));
+    }
+}
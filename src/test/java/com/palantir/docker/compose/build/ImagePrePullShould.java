@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.execution.Docker;
+import com.palantir.docker.compose.execution.DockerExecutionException;
+import java.io.IOException;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImagePrePullShould {
+
+    private final Docker docker = mock(Docker.class);
+    private final ImagePrePull prePull = new ImagePrePull(docker, 2);
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        when(docker.imageIds(anyVararg())).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    public void pull_images_which_are_not_present() throws IOException, InterruptedException {
+        prePull.pullMissing(ImmutableList.of("postgres:9.6", "redis:3")).join();
+
+        verify(docker).pull("postgres:9.6");
+        verify(docker).pull("redis:3");
+    }
+
+    @Test
+    public void not_pull_images_which_are_already_present() throws IOException, InterruptedException {
+        when(docker.imageIds("reference=postgres:9.6")).thenReturn(ImmutableList.of("sha256:abc"));
+
+        prePull.pullMissing(ImmutableList.of("postgres:9.6")).join();
+
+        verify(docker, never()).pull(anyString());
+    }
+
+    @Test
+    public void check_for_the_latest_tag_of_images_without_a_tag_or_digest() {
+        assertThat(ImagePrePull.withTag("postgres"), is("postgres:latest"));
+        assertThat(ImagePrePull.withTag("localhost:5000/postgres"), is("localhost:5000/postgres:latest"));
+        assertThat(ImagePrePull.withTag("postgres:9.6"), is("postgres:9.6"));
+        assertThat(ImagePrePull.withTag("postgres@sha256:abc"), is("postgres@sha256:abc"));
+    }
+
+    @Test
+    public void carry_on_pulling_other_images_when_one_fails() throws IOException, InterruptedException {
+        doThrow(new DockerExecutionException("manifest unknown")).when(docker).pull("postgres:9.6");
+
+        prePull.pullMissing(ImmutableList.of("postgres:9.6", "redis:3")).join();
+
+        verify(docker).pull("redis:3");
+    }
+}
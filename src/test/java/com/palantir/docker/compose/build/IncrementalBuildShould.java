@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IncrementalBuildShould {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Docker docker = mock(Docker.class);
+
+    private ServiceGraph services;
+    private IncrementalBuild build;
+
+    @Before
+    public void setup() throws IOException {
+        File context = temporaryFolder.newFolder("web");
+        Files.write("FROM alpine\n", new File(context, "Dockerfile"), UTF_8);
+        services = ServiceGraph.parseFromDockerComposeConfig("services:\n"
+                + "  web:\n"
+                + "    build: " + context.getAbsolutePath() + "\n"
+                + "  db:\n"
+                + "    image: postgres\n"
+                + "version: '2'\n");
+        build = new IncrementalBuild(docker, ProjectName.fromString("project"), temporaryFolder.newFolder("cache"));
+    }
+
+    @Test
+    public void build_a_service_with_no_image_from_the_same_build_context() throws IOException, InterruptedException {
+        when(docker.imageIds(anyVararg())).thenReturn(Collections.emptyList());
+
+        build.build(services);
+
+        verify(docker).build((List<String>) argThat(hasItems("--tag", "project_web", "--label")), anyString());
+        verify(docker, never()).tag(anyString(), anyString());
+    }
+
+    @Test
+    public void tag_the_image_built_from_an_unchanged_build_context_instead_of_building_it() throws IOException, InterruptedException {
+        when(docker.imageIds(anyVararg())).thenReturn(ImmutableList.of("sha256:abc"));
+
+        build.build(services);
+
+        verify(docker).tag("sha256:abc", "project_web");
+        verify(docker, never()).build(any(), anyString());
+    }
+
+    @Test
+    public void look_up_images_by_their_fingerprint_label() throws IOException, InterruptedException {
+        when(docker.imageIds(anyVararg())).thenReturn(Collections.emptyList());
+
+        build.build(services);
+
+        verify(docker).imageIds(argThat(startsWith("label=" + IncrementalBuild.FINGERPRINT_LABEL + "=")));
+        verify(docker, never()).tag(anyString(), eq("postgres"));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.build;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ParallelBuildShould {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void build_every_service() throws IOException, InterruptedException {
+        Set<String> built = Sets.newConcurrentHashSet();
+
+        new ParallelBuild(2).build(ImmutableList.of("web", "worker", "db"), built::add);
+
+        assertThat(built, containsInAnyOrder("web", "worker", "db"));
+    }
+
+    @Test
+    public void build_up_to_the_parallelism_at_once() throws IOException, InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Set<Boolean> startedTogether = Sets.newConcurrentHashSet();
+
+        new ParallelBuild(2).build(ImmutableList.of("web", "worker"), service -> {
+            bothStarted.countDown();
+            startedTogether.add(bothStarted.await(10, TimeUnit.SECONDS));
+        });
+
+        assertThat(startedTogether, containsInAnyOrder(true));
+    }
+
+    @Test(timeout = 10_000)
+    public void report_the_first_failure_without_waiting_for_the_other_builds() throws IOException, InterruptedException {
+        CountDownLatch never = new CountDownLatch(1);
+
+        exception.expect(IOException.class);
+        exception.expectMessage("worker");
+        new ParallelBuild(2).build(ImmutableList.of("web", "worker"), service -> {
+            if (service.equals("worker")) {
+                throw new IOException("Could not build worker");
+            }
+            never.await();
+        });
+    }
+
+    @Test(timeout = 10_000)
+    public void stop_the_other_builds_before_reporting_a_failure() throws InterruptedException {
+        CountDownLatch webStarted = new CountDownLatch(1);
+        Set<String> stopped = Sets.newConcurrentHashSet();
+
+        try {
+            new ParallelBuild(2).build(ImmutableList.of("web", "worker"), service -> {
+                if (service.equals("worker")) {
+                    webStarted.await();
+                    throw new IOException("Could not build worker");
+                }
+                try {
+                    webStarted.countDown();
+                    new CountDownLatch(1).await();
+                } finally {
+                    stopped.add(service);
+                }
+            });
+            fail("Expected the build of worker to fail");
+        } catch (IOException e) {
+            assertThat(stopped, containsInAnyOrder("web"));
+        }
+    }
+
+    @Test
+    public void build_one_service_at_a_time_without_parallelism() throws IOException, InterruptedException {
+        Set<String> threads = Sets.newConcurrentHashSet();
+
+        new ParallelBuild(1).build(ImmutableList.of("web", "worker"), service -> threads.add(Thread.currentThread().getName()));
+
+        assertThat(threads.size(), is(1));
+    }
+}
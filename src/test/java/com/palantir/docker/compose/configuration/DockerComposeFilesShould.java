@@ -15,11 +15,14 @@
  */
 package com.palantir.docker.compose.configuration;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 
+import com.google.common.io.Files;
 import java.io.File;
 import org.junit.Rule;
 import org.junit.Test;
@@ -80,4 +83,15 @@ public class DockerComposeFilesShould {
                 "--file", composeFile1.getAbsolutePath(), "--file", composeFile2.getAbsolutePath()));
     }
 
+    @Test
+    public void have_a_fingerprint_which_changes_with_the_contents_of_the_files() throws Exception {
+        File composeFile = tempFolder.newFile("docker-compose.yaml");
+        Files.write("db:\n  image: postgres:9.5\n", composeFile, UTF_8);
+        String before = DockerComposeFiles.from(composeFile.getAbsolutePath()).fingerprint();
+
+        assertThat(DockerComposeFiles.from(composeFile.getAbsolutePath()).fingerprint(), is(before));
+
+        Files.write("db:\n  image: postgres:9.6\n", composeFile, UTF_8);
+        assertThat(DockerComposeFiles.from(composeFile.getAbsolutePath()).fingerprint(), is(not(before)));
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.configuration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class ServiceGraphShould {
+
+    private static final String CONFIG = "networks: {}\n"
+            + "services:\n"
+            + "  api:\n"
+            + "    depends_on:\n"
+            + "    - db\n"
+            + "    - cache\n"
+            + "    image: api\n"
+            + "  cache:\n"
+            + "    image: redis\n"
+            + "    links:\n"
+            + "    - metrics:stats\n"
+            + "  db:\n"
+            + "    depends_on:\n"
+            + "      metrics:\n"
+            + "        condition: service_started\n"
+            + "    image: postgres\n"
+            + "  metrics:\n"
+            + "    image: graphite\n"
+            + "  web:\n"
+            + "    depends_on:\n"
+            + "    - api\n"
+            + "    image: nginx\n"
+            + "version: '2.1'\n"
+            + "volumes: {}\n";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final ServiceGraph graph = ServiceGraph.parseFromDockerComposeConfig(CONFIG);
+
+    @Test
+    public void parse_every_service_in_the_config() {
+        assertThat(graph.services(), containsInAnyOrder("api", "cache", "db", "metrics", "web"));
+    }
+
+    @Test
+    public void parse_depends_on_in_list_form() {
+        assertThat(graph.dependenciesOf("api"), containsInAnyOrder("db", "cache"));
+    }
+
+    @Test
+    public void parse_depends_on_in_map_form() {
+        assertThat(graph.dependenciesOf("db"), containsInAnyOrder("metrics"));
+    }
+
+    @Test
+    public void treat_links_as_dependencies() {
+        assertThat(graph.dependenciesOf("cache"), containsInAnyOrder("metrics"));
+    }
+
+    @Test
+    public void have_no_dependencies_for_a_service_that_declares_none() {
+        assertThat(graph.dependenciesOf("metrics"), is(empty()));
+    }
+
+    @Test
+    public void have_no_dependencies_for_an_unknown_service() {
+        assertThat(graph.dependenciesOf("unknown"), is(empty()));
+    }
+
+    @Test
+    public void follow_dependencies_transitively() {
+        assertThat(graph.transitiveDependenciesOf(ImmutableList.of("web")), containsInAnyOrder("api", "db", "cache", "metrics"));
+    }
+
+    @Test
+    public void include_dependencies_in_a_subgraph() {
+        assertThat(graph.subgraph(ImmutableList.of("api")).services(), containsInAnyOrder("api", "db", "cache", "metrics"));
+    }
+
+    @Test
+    public void reject_unknown_services_in_a_subgraph() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("unknown");
+        graph.subgraph(ImmutableList.of("unknown"));
+    }
+
+    @Test
+    public void follow_dependents_transitively() {
+        assertThat(graph.transitiveDependentsOf(ImmutableList.of("cache")), containsInAnyOrder("api", "web"));
+    }
+
+    @Test
+    public void parse_version_one_config_without_a_services_section() {
+        ServiceGraph versionOneGraph = ServiceGraph.parseFromDockerComposeConfig("db:\n  image: postgres\nweb:\n  links:\n  - db\n");
+        assertThat(versionOneGraph.dependenciesOf("web"), containsInAnyOrder("db"));
+    }
+
+    @Test
+    public void parse_a_build_context_given_as_a_path() {
+        ServiceGraph buildGraph = ServiceGraph.parseFromDockerComposeConfig(
+                "services:\n  web:\n    build: /code/web\n  db:\n    image: postgres\nversion: '2'\n");
+
+        assertThat(buildGraph.servicesWithBuilds(), contains("web"));
+        assertThat(buildGraph.service("web").buildDefinition().get().context(), is("/code/web"));
+        assertThat(buildGraph.service("web").buildDefinition().get().dockerfile(), is("Dockerfile"));
+        assertThat(buildGraph.service("db").image(), is(Optional.of("postgres")));
+    }
+
+    @Test
+    public void list_the_images_of_services_which_are_not_built_once_each() {
+        ServiceGraph pullGraph = ServiceGraph.parseFromDockerComposeConfig("services:\n"
+                + "  web:\n"
+                + "    build: /code/web\n"
+                + "    image: example/web\n"
+                + "  db:\n"
+                + "    image: postgres\n"
+                + "  replica:\n"
+                + "    image: postgres\n"
+                + "  cache:\n"
+                + "    image: redis:3\n"
+                + "version: '2'\n");
+
+        assertThat(pullGraph.pulledImages(), contains("postgres", "redis:3"));
+    }
+
+    @Test
+    public void parse_a_build_section_with_a_dockerfile_args_and_target() {
+        ServiceGraph buildGraph = ServiceGraph.parseFromDockerComposeConfig("services:\n"
+                + "  web:\n"
+                + "    build:\n"
+                + "      context: /code\n"
+                + "      dockerfile: web/Dockerfile.test\n"
+                + "      args:\n"
+                + "        VERSION: '1.2'\n"
+                + "      target: test\n"
+                + "    image: web:test\n"
+                + "version: '3.4'\n");
+
+        BuildDefinition build = buildGraph.service("web").buildDefinition().get();
+        assertThat(build.context(), is("/code"));
+        assertThat(build.dockerfile(), is("web/Dockerfile.test"));
+        assertThat(build.args(), is(ImmutableMap.of("VERSION", "1.2")));
+        assertThat(build.target(), is(Optional.of("test")));
+        assertThat(buildGraph.service("web").image(), is(Optional.of("web:test")));
+    }
+
+    @Test
+    public void throw_when_there_is_no_config() {
+        exception.expect(IllegalArgumentException.class);
+        exception.expectMessage("No docker-compose configuration found");
+        ServiceGraph.parseFromDockerComposeConfig("");
+    }
+}
@@ -17,18 +17,32 @@ package com.palantir.docker.compose.connection.waiting;
 
 import static com.palantir.docker.compose.connection.waiting.SuccessOrFailure.failure;
 import static com.palantir.docker.compose.connection.waiting.SuccessOrFailure.success;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
 import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.Container;
 import com.palantir.docker.compose.connection.ContainerCache;
 import com.palantir.docker.compose.connection.ImmutableCluster;
+import com.palantir.docker.compose.connection.State;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
 import org.joda.time.Duration;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 public class ClusterWaitShould {
 
@@ -44,6 +58,7 @@ public class ClusterWaitShould {
             .build();
 
     @Rule public ExpectedException exception = ExpectedException.none();
+    @Rule public TemporaryFolder historyFolder = new TemporaryFolder();
 
 
     @Test public void
@@ -72,4 +87,118 @@ public class ClusterWaitShould {
 
         wait.waitUntilReady(cluster);
     }
+
+    @Test(timeout = 5000L) public void
+    time_out_even_when_more_health_checks_hang_than_there_are_processors() {
+        CountDownLatch never = new CountDownLatch(1);
+        ClusterHealthCheck hanging = unused -> {
+            try {
+                never.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return failure("interrupted");
+        };
+        List<CompletableFuture<Void>> waits = IntStream.range(0, 4 * Runtime.getRuntime().availableProcessors() + 4)
+                .mapToObj(i -> new ClusterWait(hanging, Duration.millis(500)).waitUntilReadyAsync(cluster))
+                .collect(toList());
+
+        waits.forEach(wait -> assertThat(wait.handle((ignored, failure) -> failure).join(), instanceOf(IllegalStateException.class)));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("The healthcheck did not finish before the timeout");
+        new ClusterWait(hanging, Duration.millis(500)).waitUntilReady(cluster);
+    }
+
+    @Test(timeout = 2000L) public void
+    fail_as_soon_as_a_container_it_is_waiting_for_has_exited() throws Exception {
+        Container db = mock(Container.class);
+        when(containerCache.container("db")).thenReturn(db);
+        when(db.getContainerName()).thenReturn("db");
+        when(db.state()).thenReturn(State.Exit);
+        when(db.exitCode()).thenReturn(3);
+        when(db.logs(50)).thenReturn("FATAL: database files are incompatible with server");
+        when(clusterHealthCheck.isClusterHealthy(cluster)).thenReturn(failure("failure!"));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Container 'db' exited with code 3");
+        exception.expectMessage("database files are incompatible with server");
+
+        ClusterWait wait = new ClusterWait(clusterHealthCheck, Duration.standardMinutes(1), ImmutableList.of("db"));
+
+        wait.waitUntilReady(cluster);
+    }
+
+    @Test public void
+    keep_waiting_while_the_containers_it_is_waiting_for_are_up() throws Exception {
+        Container db = mock(Container.class);
+        when(containerCache.container("db")).thenReturn(db);
+        when(db.state()).thenReturn(State.Up);
+        when(clusterHealthCheck.isClusterHealthy(cluster)).thenReturn(failure("failure!"), failure("failure!"), success());
+
+        ClusterWait wait = new ClusterWait(clusterHealthCheck, DURATION, ImmutableList.of("db"));
+
+        wait.waitUntilReady(cluster);
+        verify(clusterHealthCheck, times(3)).isClusterHealthy(cluster);
+    }
+
+    @Test(timeout = 2000L) public void
+    return_a_future_which_completes_once_the_cluster_is_ready() throws Exception {
+        CountDownLatch healthy = new CountDownLatch(1);
+        when(clusterHealthCheck.isClusterHealthy(cluster))
+                .thenAnswer(invocation -> healthy.getCount() == 0 ? success() : failure("failure!"));
+
+        CompletableFuture<Void> ready = new ClusterWait(clusterHealthCheck, DURATION).waitUntilReadyAsync(cluster);
+
+        assertThat(ready.isDone(), is(false));
+        healthy.countDown();
+        ready.get();
+    }
+
+    @Test(timeout = 2000L) public void
+    return_a_future_which_fails_when_the_wait_times_out() throws Exception {
+        when(clusterHealthCheck.isClusterHealthy(cluster)).thenReturn(failure("failure!"));
+
+        CompletableFuture<Void> ready = new ClusterWait(clusterHealthCheck, Duration.millis(200)).waitUntilReadyAsync(cluster);
+
+        exception.expectCause(instanceOf(IllegalStateException.class));
+        ready.get();
+    }
+
+    @Test(timeout = 2000L) public void
+    stop_polling_once_the_future_is_cancelled() throws Exception {
+        when(clusterHealthCheck.isClusterHealthy(cluster)).thenReturn(failure("failure!"));
+
+        new ClusterWait(clusterHealthCheck, DURATION).waitUntilReadyAsync(cluster).cancel(true);
+        Thread.sleep(200);
+
+        verify(clusterHealthCheck, atMost(1)).isClusterHealthy(cluster);
+    }
+
+    @Test(timeout = 2000L) public void
+    record_how_long_the_wait_took_in_the_readiness_history() {
+        when(clusterHealthCheck.isClusterHealthy(cluster)).thenReturn(success());
+        ReadinessHistory history = new ReadinessHistory(new File(historyFolder.getRoot(), "history.properties"), false);
+
+        new ClusterWait(clusterHealthCheck, DURATION, ImmutableList.of("db")).withReadinessHistory(history).waitUntilReady(cluster);
+
+        assertThat(history.profile("db").isPresent(), is(true));
+    }
+
+    @Test(timeout = 5000L) public void
+    fail_an_unusually_slow_startup_when_asked_to() throws Exception {
+        ReadinessHistory history = new ReadinessHistory(new File(historyFolder.getRoot(), "history.properties"), true);
+        IntStream.range(0, ReadinessProfile.MIN_SAMPLES_FOR_ANOMALIES).forEach(run -> history.record("db", 10));
+        Container db = mock(Container.class);
+        when(containerCache.container("db")).thenReturn(db);
+        when(db.state()).thenReturn(State.Up);
+        long start = System.currentTimeMillis();
+        when(clusterHealthCheck.isClusterHealthy(cluster))
+                .thenAnswer(invocation -> System.currentTimeMillis() - start > 300 ? success() : failure("failure!"));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("unusually slow");
+
+        new ClusterWait(clusterHealthCheck, DURATION, ImmutableList.of("db")).withReadinessHistory(history).waitUntilReady(cluster);
+    }
 }
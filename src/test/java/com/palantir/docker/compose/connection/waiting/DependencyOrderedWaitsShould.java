@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.configuration.ServiceGraph;
+import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.ContainerCache;
+import com.palantir.docker.compose.connection.ImmutableCluster;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class DependencyOrderedWaitsShould {
+
+    private static final Duration TIMEOUT = Duration.standardSeconds(2);
+
+    private static final ServiceGraph GRAPH = ServiceGraph.parseFromDockerComposeConfig("services:\n"
+            + "  db: {}\n"
+            + "  cache: {}\n"
+            + "  api:\n"
+            + "    depends_on: [db, cache]\n"
+            + "  web:\n"
+            + "    depends_on: [api]\n");
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private final Cluster cluster = ImmutableCluster.builder()
+            .containerCache(mock(ContainerCache.class, RETURNS_MOCKS))
+            .ip("127.0.0.1")
+            .build();
+
+    private final List<String> completed = new CopyOnWriteArrayList<>();
+
+    @Test(timeout = 5000L)
+    public void run_waits_on_independent_services_in_parallel() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        ClusterHealthCheck waitForEachOther = target -> {
+            bothStarted.countDown();
+            return SuccessOrFailure.onResultOf(() -> bothStarted.await(1, TimeUnit.SECONDS));
+        };
+
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(
+                new ClusterWait(waitForEachOther, TIMEOUT, ImmutableList.of("db")),
+                new ClusterWait(waitForEachOther, TIMEOUT, ImmutableList.of("cache"))))
+                .waitUntilReady(cluster);
+
+        assertThat(bothStarted.getCount(), is(0L));
+    }
+
+    @Test(timeout = 5000L)
+    public void only_start_a_wait_once_the_waits_on_its_dependencies_have_passed() {
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(
+                recordingWait("web"),
+                recordingWait("api"),
+                recordingWait("db")))
+                .waitUntilReady(cluster);
+
+        assertThat(completed, contains("db", "api", "web"));
+    }
+
+    @Test(timeout = 5000L)
+    public void respect_dependencies_through_services_that_have_no_wait() {
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(
+                recordingWait("web"),
+                recordingWait("cache")))
+                .waitUntilReady(cluster);
+
+        assertThat(completed, contains("cache", "web"));
+    }
+
+    @Test(timeout = 5000L)
+    public void run_waits_that_are_not_tied_to_a_service() {
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(
+                new ClusterWait(recording("host port"), TIMEOUT),
+                recordingWait("db")))
+                .waitUntilReady(cluster);
+
+        assertThat(completed, containsInAnyOrder("host port", "db"));
+    }
+
+    @Test(timeout = 5000L)
+    public void fail_without_waiting_for_other_waits_to_time_out() {
+        ClusterWait failing = new ClusterWait(target -> SuccessOrFailure.failure("db is broken"),
+                Duration.millis(200), ImmutableList.of("db"));
+        ClusterWait slow = new ClusterWait(target -> SuccessOrFailure.failure("cache is slow"),
+                Duration.standardSeconds(30), ImmutableList.of("cache"));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("db is broken");
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(failing, slow)).waitUntilReady(cluster);
+    }
+
+    @Test(timeout = 5000L)
+    public void not_start_dependent_waits_when_a_dependency_fails() {
+        ClusterWait failing = new ClusterWait(target -> SuccessOrFailure.failure("db is broken"),
+                Duration.millis(200), ImmutableList.of("db"));
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("db is broken");
+        try {
+            new DependencyOrderedWaits(GRAPH, ImmutableList.of(failing, recordingWait("api"))).waitUntilReady(cluster);
+        } finally {
+            assertThat(completed.isEmpty(), is(true));
+        }
+    }
+
+    @Test
+    public void reject_waits_that_depend_on_each_other() {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("depend on each other");
+
+        new DependencyOrderedWaits(GRAPH, ImmutableList.of(
+                new ClusterWait(recording("db and web"), TIMEOUT, ImmutableList.of("db", "web")),
+                recordingWait("api")))
+                .waitUntilReady(cluster);
+    }
+
+    private ClusterWait recordingWait(String service) {
+        return new ClusterWait(recording(service), TIMEOUT, ImmutableList.of(service));
+    }
+
+    private ClusterHealthCheck recording(String name) {
+        return target -> {
+            completed.add(name);
+            return SuccessOrFailure.success();
+        };
+    }
+}
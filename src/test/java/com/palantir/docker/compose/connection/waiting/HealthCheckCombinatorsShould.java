@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.failureWithMessage;
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.successful;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.Container;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Duration;
+import org.junit.Test;
+
+public class HealthCheckCombinatorsShould {
+    private static final HealthCheck<Container> PASSING = container -> SuccessOrFailure.success();
+
+    private final Container container = mock(Container.class);
+    private final Cluster cluster = mock(Cluster.class);
+
+    @Test
+    public void pass_all_of_when_every_check_passes() {
+        assertThat(HealthCheck.allOf(PASSING, PASSING).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void report_every_failure_from_all_of() {
+        HealthCheck<Container> check = HealthCheck.allOf(failing("db is down"), PASSING, failing("cache is down"));
+
+        assertThat(check.isHealthy(container),
+                is(failureWithMessage("2 of 3 health checks failed:\n - db is down\n - cache is down")));
+    }
+
+    @Test(timeout = 2000L)
+    public void run_sub_checks_in_parallel() {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        HealthCheck<Container> waitsForTheOther = target -> {
+            bothRunning.countDown();
+            return SuccessOrFailure.onResultOf(() -> bothRunning.await(1, TimeUnit.SECONDS));
+        };
+
+        assertThat(HealthCheck.allOf(waitsForTheOther, waitsForTheOther).isHealthy(container), is(successful()));
+    }
+
+    @Test(timeout = 2000L)
+    public void pass_any_of_as_soon_as_one_check_passes_and_interrupt_the_rest() throws InterruptedException {
+        CountDownLatch hanging = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        HealthCheck<Container> hangs = target -> {
+            hanging.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return SuccessOrFailure.failure("hung");
+        };
+        HealthCheck<Container> passesOnceTheOtherHangs = target ->
+                SuccessOrFailure.onResultOf(() -> hanging.await(1, TimeUnit.SECONDS));
+
+        assertThat(HealthCheck.anyOf(hangs, passesOnceTheOtherHangs).isHealthy(container), is(successful()));
+        assertThat(interrupted.await(1, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void report_every_failure_from_any_of_when_none_pass() {
+        HealthCheck<Container> check = HealthCheck.anyOf(failing("db is down"), failing("db is down"));
+
+        assertThat(check.isHealthy(container),
+                is(failureWithMessage(allOf(containsString("None of the 2 health checks passed"), containsString("db is down")))));
+    }
+
+    @Test(timeout = 2000L)
+    public void fail_an_attempt_which_takes_longer_than_the_timeout() {
+        HealthCheck<Container> slow = target -> {
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return SuccessOrFailure.success();
+        };
+
+        assertThat(HealthCheck.withTimeout(slow, Duration.millis(100)).isHealthy(container),
+                is(failureWithMessage("Health check did not finish within 100ms")));
+    }
+
+    @Test
+    public void pass_on_the_result_of_an_attempt_which_finishes_in_time() {
+        assertThat(HealthCheck.withTimeout(failing("db is down"), Duration.standardSeconds(1)).isHealthy(container),
+                is(failureWithMessage("db is down")));
+    }
+
+    @Test
+    public void turn_an_exception_from_a_sub_check_into_a_failure() {
+        HealthCheck<Container> throwing = target -> {
+            throw new IllegalStateException("no such container");
+        };
+
+        assertThat(HealthCheck.allOf(PASSING, throwing).isHealthy(container),
+                is(failureWithMessage(containsString("no such container"))));
+    }
+
+    @Test
+    public void combine_cluster_health_checks() {
+        ClusterHealthCheck passing = target -> SuccessOrFailure.success();
+        ClusterHealthCheck failing = target -> SuccessOrFailure.failure("cluster is down");
+
+        assertThat(ClusterHealthCheck.allOf(passing, failing).isClusterHealthy(cluster),
+                is(failureWithMessage(containsString("cluster is down"))));
+        assertThat(ClusterHealthCheck.anyOf(passing, failing).isClusterHealthy(cluster), is(successful()));
+        assertThat(ClusterHealthCheck.withTimeout(passing, Duration.standardSeconds(1)).isClusterHealthy(cluster),
+                is(successful()));
+    }
+
+    private static HealthCheck<Container> failing(String message) {
+        return container -> SuccessOrFailure.failure(message);
+    }
+}
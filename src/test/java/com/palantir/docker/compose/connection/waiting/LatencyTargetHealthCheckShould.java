@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.failureWithMessage;
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.successful;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+import com.google.common.base.Ticker;
+import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.ContainerCache;
+import com.palantir.docker.compose.connection.ImmutableCluster;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+
+public class LatencyTargetHealthCheckShould {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final Duration TARGET = Duration.millis(50);
+
+    @Rule public ExpectedException exception = ExpectedException.none();
+
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    public void fail_until_the_window_is_full() {
+        HealthCheck<Long> check = latencyTargetOver(3);
+
+        assertThat(check.isHealthy(10L), is(failureWithMessage(containsString("Waiting for more successful probes"))));
+        assertThat(check.isHealthy(10L), is(failureWithMessage(containsString("over 2 samples"))));
+        assertThat(check.isHealthy(10L), is(successful()));
+    }
+
+    @Test
+    public void fail_while_the_percentile_latency_is_above_the_target() {
+        HealthCheck<Long> check = latencyTargetOver(2);
+
+        check.isHealthy(10L);
+
+        assertThat(check.isHealthy(80L), is(failureWithMessage(
+                "p95 latency of 80.0ms is above the target of 50.0ms. "
+                        + "Latencies: min 10.0ms, p50 10.0ms, p95 80.0ms, p99 80.0ms, max 80.0ms over 2 samples")));
+    }
+
+    @Test
+    public void pass_once_slow_probes_have_slid_out_of_the_window() {
+        HealthCheck<Long> check = latencyTargetOver(2);
+
+        check.isHealthy(200L);
+        check.isHealthy(100L);
+        check.isHealthy(20L);
+
+        assertThat(check.isHealthy(20L), is(successful()));
+    }
+
+    @Test
+    public void start_again_after_a_failed_probe() {
+        HealthCheck<Long> check = latencyTargetOver(2);
+
+        check.isHealthy(10L);
+        check.isHealthy(-1L);
+
+        assertThat(check.isHealthy(10L), is(failureWithMessage(containsString("over 1 samples"))));
+    }
+
+    @Test
+    public void pass_on_the_failure_of_the_probe() {
+        HealthCheck<Long> check = latencyTargetOver(2);
+
+        assertThat(check.isHealthy(-1L), is(failureWithMessage("probe failed")));
+    }
+
+    @Test(timeout = 2000L)
+    public void report_the_latency_distribution_when_a_wait_times_out() {
+        HealthCheck<Cluster> slowProbe = cluster -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return SuccessOrFailure.success();
+        };
+        ClusterHealthCheck check = HealthChecks.toMeetLatencyTarget(slowProbe, 95, Duration.millis(1), 2)::isHealthy;
+        Cluster cluster = ImmutableCluster.builder()
+                .ip("127.0.0.1")
+                .containerCache(Mockito.mock(ContainerCache.class))
+                .build();
+
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("above the target of 1.0ms. Latencies: min ");
+
+        new ClusterWait(check, Duration.millis(300)).waitUntilReady(cluster);
+    }
+
+    /**
+     * The probe takes as long as the value it is given, in milliseconds, and fails when given a negative value.
+     */
+    private HealthCheck<Long> latencyTargetOver(int windowSize) {
+        HealthCheck<Long> probe = latencyMillis -> {
+            if (latencyMillis < 0) {
+                return SuccessOrFailure.failure("probe failed");
+            }
+            ticker.advance(latencyMillis * MILLIS);
+            return SuccessOrFailure.success();
+        };
+        return new LatencyTargetHealthCheck<>(probe, 95, TARGET, windowSize, ticker);
+    }
+
+    private static class ManualTicker extends Ticker {
+        private long nanos = 0;
+
+        void advance(long advanceNanos) {
+            nanos += advanceNanos;
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+}
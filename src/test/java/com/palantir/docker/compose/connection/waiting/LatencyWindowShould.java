@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+public class LatencyWindowShould {
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void give_the_nearest_rank_percentile() {
+        LatencyWindow window = windowOf(10, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+
+        assertThat(window.percentile(50), is(5L));
+        assertThat(window.percentile(95), is(10L));
+        assertThat(window.percentile(10), is(1L));
+    }
+
+    @Test
+    public void forget_the_oldest_samples_once_full() {
+        LatencyWindow window = windowOf(3, 100, 200, 1, 2, 3);
+
+        assertThat(window.isFull(), is(true));
+        assertThat(window.size(), is(3));
+        assertThat(window.percentile(100), is(3L));
+    }
+
+    @Test
+    public void be_empty_after_being_cleared() {
+        LatencyWindow window = windowOf(3, 1, 2, 3);
+
+        window.clear();
+
+        assertThat(window.size(), is(0));
+        assertThat(window.describe(), is("no samples"));
+    }
+
+    @Test
+    public void describe_the_distribution_in_milliseconds() {
+        LatencyWindow window = windowOf(4, 1_000_000, 2_000_000, 3_000_000, 40_000_000);
+
+        assertThat(window.describe(), is("min 1.0ms, p50 2.0ms, p95 40.0ms, p99 40.0ms, max 40.0ms over 4 samples"));
+    }
+
+    @Test
+    public void refuse_a_percentile_of_an_empty_window() {
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("No latencies have been recorded");
+
+        new LatencyWindow(5).percentile(50);
+    }
+
+    private static LatencyWindow windowOf(int capacity, long... latencies) {
+        LatencyWindow window = new LatencyWindow(capacity);
+        for (long latency : latencies) {
+            window.record(latency);
+        }
+        return window;
+    }
+}
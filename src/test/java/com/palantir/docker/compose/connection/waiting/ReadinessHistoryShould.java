@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReadinessHistoryShould {
+
+    @Rule
+    public final TemporaryFolder historyFolder = new TemporaryFolder();
+
+    @Test
+    public void have_no_profile_for_a_wait_it_has_not_seen() {
+        assertThat(history().profile("db"), is(Optional.empty()));
+    }
+
+    @Test
+    public void keep_what_it_records_between_runs() {
+        history().record("db", 1200);
+        history().record("db", 1300);
+
+        assertThat(history().profile("db").get().samplesMillis(), contains(1200L, 1300L));
+    }
+
+    @Test
+    public void only_keep_the_most_recent_samples() {
+        ReadinessHistory history = history();
+        IntStream.range(0, ReadinessHistory.MAX_SAMPLES + 5).forEach(sample -> history.record("db", sample));
+
+        assertThat(history().profile("db").get().samplesMillis(), hasSize(ReadinessHistory.MAX_SAMPLES));
+        assertThat(history().profile("db").get().samplesMillis().get(0), is(5L));
+    }
+
+    @Test
+    public void keep_separate_histories_for_each_wait() {
+        history().record("db", 1200);
+        history().record("db2,db3", 4000);
+
+        assertThat(history().profile("db2,db3").get().samplesMillis(), contains(4000L));
+    }
+
+    @Test
+    public void merge_the_samples_of_histories_recording_to_the_same_file() throws InterruptedException {
+        List<ReadinessHistory> forks = IntStream.range(0, 8).mapToObj(fork -> history()).collect(toList());
+        List<Thread> threads = IntStream.range(0, forks.size())
+                .mapToObj(fork -> new Thread(() -> forks.get(fork).record("db", 1000 + fork)))
+                .collect(toList());
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(history().profile("db").get().samplesMillis(),
+                containsInAnyOrder(1000L, 1001L, 1002L, 1003L, 1004L, 1005L, 1006L, 1007L));
+        assertThat(historyFolder.getRoot().list((directory, name) -> name.endsWith(".tmp")), is(emptyArray()));
+    }
+
+    private ReadinessHistory history() {
+        return new ReadinessHistory(new File(historyFolder.getRoot(), "fingerprint.properties"), false);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class ReadinessProfileShould {
+    private static final ReadinessProfile STEADY = ReadinessProfile.of(ImmutableList.of(1000L, 1100L, 900L, 1000L, 1000L));
+
+    @Test
+    public void start_polling_comfortably_before_the_fastest_previous_run() {
+        assertThat(ReadinessProfile.of(ImmutableList.of(1000L, 1000L)).firstPollDelayMillis(), is(800L));
+    }
+
+    @Test
+    public void start_polling_straight_away_when_startup_times_vary_widely() {
+        assertThat(ReadinessProfile.of(ImmutableList.of(100L, 5000L)).firstPollDelayMillis(), is(0L));
+    }
+
+    @Test
+    public void flag_a_startup_more_than_three_standard_deviations_slower_than_the_mean() {
+        assertThat(STEADY.isAnomalous(2000), is(true));
+    }
+
+    @Test
+    public void not_flag_a_startup_within_the_usual_jitter() {
+        assertThat(STEADY.isAnomalous(1250), is(false));
+    }
+
+    @Test
+    public void not_flag_anything_until_there_are_enough_samples() {
+        assertThat(ReadinessProfile.of(ImmutableList.of(1000L, 1000L)).isAnomalous(100_000), is(false));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.connection.waiting;
+
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.failureWithMessage;
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.successful;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.palantir.docker.compose.connection.Container;
+import com.palantir.docker.compose.connection.DockerPort;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Test;
+
+public class WireProtocolHealthChecksShould {
+    private static final int INTERNAL_PORT = 1234;
+
+    private final Container container = mock(Container.class);
+    private StubServer server;
+
+    @After
+    public void stopServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void be_healthy_when_postgres_asks_for_authentication() throws IOException {
+        givenAServerRespondingWith(postgresMessage('R', ByteBuffer.allocate(4).putInt(0).array()));
+
+        assertThat(HealthChecks.toAcceptPostgresConnections(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_healthy_when_postgres_rejects_the_probe_user() throws IOException {
+        givenAServerRespondingWith(postgresError("28000", "role \"postgres\" does not exist"));
+
+        assertThat(HealthChecks.toAcceptPostgresConnections(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_unhealthy_when_postgres_is_still_starting_up() throws IOException {
+        givenAServerRespondingWith(postgresError("57P03", "the database system is starting up"));
+
+        assertThat(HealthChecks.toAcceptPostgresConnections(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("the database system is starting up"))));
+    }
+
+    @Test
+    public void be_healthy_when_redis_replies_to_ping() throws IOException {
+        givenAServerRespondingWith("+PONG\r\n".getBytes(US_ASCII));
+
+        assertThat(HealthChecks.toRespondToRedisPing(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_unhealthy_when_redis_is_still_loading() throws IOException {
+        givenAServerRespondingWith("-LOADING Redis is loading the dataset in memory\r\n".getBytes(US_ASCII));
+
+        assertThat(HealthChecks.toRespondToRedisPing(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("LOADING"))));
+    }
+
+    @Test
+    public void be_healthy_when_kafka_answers_api_versions() throws IOException {
+        givenAServerRespondingWith(kafkaResponse(0x0dc0, (short) 0));
+
+        assertThat(HealthChecks.toRespondToKafkaApiVersions(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_unhealthy_when_kafka_answers_api_versions_with_an_error() throws IOException {
+        givenAServerRespondingWith(kafkaResponse(0x0dc0, (short) 35));
+
+        assertThat(HealthChecks.toRespondToKafkaApiVersions(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("error code 35"))));
+    }
+
+    @Test
+    public void be_healthy_when_cassandra_answers_options() throws IOException {
+        givenAServerRespondingWith(cassandraFrame((byte) 0x06, new byte[] {0, 0}));
+
+        assertThat(HealthChecks.toRespondToCassandraOptions(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_unhealthy_when_cassandra_answers_options_with_an_error() throws IOException {
+        byte[] message = "Not ready".getBytes(US_ASCII);
+        ByteBuffer error = ByteBuffer.allocate(6 + message.length).putInt(0x1001).putShort((short) message.length).put(message);
+        givenAServerRespondingWith(cassandraFrame((byte) 0x00, error.array()));
+
+        assertThat(HealthChecks.toRespondToCassandraOptions(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("Not ready"))));
+    }
+
+    @Test
+    public void be_healthy_when_the_elasticsearch_cluster_is_yellow() throws IOException {
+        givenAServerRespondingAndClosingWith(httpResponse("200 OK", "{\"cluster_name\":\"test\",\"status\":\"yellow\"}"));
+
+        assertThat(HealthChecks.toHaveHealthyElasticsearchCluster(INTERNAL_PORT).isHealthy(container), is(successful()));
+    }
+
+    @Test
+    public void be_unhealthy_when_the_elasticsearch_cluster_is_red() throws IOException {
+        givenAServerRespondingAndClosingWith(httpResponse("200 OK", "{\"cluster_name\":\"test\",\"status\":\"red\"}"));
+
+        assertThat(HealthChecks.toHaveHealthyElasticsearchCluster(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("status is red"))));
+    }
+
+    @Test
+    public void be_unhealthy_when_elasticsearch_is_unavailable() throws IOException {
+        givenAServerRespondingAndClosingWith(httpResponse("503 Service Unavailable", "{}"));
+
+        assertThat(HealthChecks.toHaveHealthyElasticsearchCluster(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("503"))));
+    }
+
+    @Test
+    public void be_unhealthy_when_nothing_is_listening() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        when(container.port(INTERNAL_PORT)).thenReturn(new DockerPort("127.0.0.1", port, INTERNAL_PORT));
+
+        assertThat(HealthChecks.toRespondToRedisPing(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("did not respond"))));
+    }
+
+    @Test
+    public void be_unhealthy_when_the_connection_is_closed_without_a_response() throws IOException {
+        givenAServerRespondingAndClosingWith(new byte[0]);
+
+        assertThat(HealthChecks.toRespondToRedisPing(INTERNAL_PORT).isHealthy(container),
+                is(failureWithMessage(containsString("closed the connection without responding"))));
+    }
+
+    @Test
+    public void give_up_on_a_server_that_never_responds() throws IOException {
+        givenAServerRespondingWith(new byte[0]);
+
+        long start = System.currentTimeMillis();
+        SuccessOrFailure result = HealthChecks.toRespondToKafkaApiVersions(INTERNAL_PORT).isHealthy(container);
+
+        assertThat(result, is(failureWithMessage(containsString("Timed out"))));
+        assertThat(System.currentTimeMillis() - start, is(lessThan(WireProtocolProbe.PROBE_TIMEOUT_MILLIS * 4)));
+    }
+
+    @Test
+    public void send_a_redis_ping() throws IOException {
+        givenAServerRespondingWith("+PONG\r\n".getBytes(US_ASCII));
+
+        HealthChecks.toRespondToRedisPing(INTERNAL_PORT).isHealthy(container);
+
+        assertThat(new String(server.received(), US_ASCII), is("*1\r\n$4\r\nPING\r\n"));
+    }
+
+    private void givenAServerRespondingWith(byte[] response) throws IOException {
+        givenAServer(new StubServer(response, false));
+    }
+
+    private void givenAServerRespondingAndClosingWith(byte[] response) throws IOException {
+        givenAServer(new StubServer(response, true));
+    }
+
+    private void givenAServer(StubServer stubServer) {
+        server = stubServer;
+        when(container.port(INTERNAL_PORT)).thenReturn(new DockerPort("127.0.0.1", server.port(), INTERNAL_PORT));
+    }
+
+    private static byte[] postgresMessage(char type, byte[] body) {
+        return ByteBuffer.allocate(5 + body.length).put((byte) type).putInt(4 + body.length).put(body).array();
+    }
+
+    private static byte[] postgresError(String code, String message) {
+        String fields = "SFATAL\0C" + code + "\0M" + message + "\0\0";
+        return postgresMessage('E', fields.getBytes(US_ASCII));
+    }
+
+    private static byte[] kafkaResponse(int correlationId, short errorCode) {
+        return ByteBuffer.allocate(14).putInt(10).putInt(correlationId).putShort(errorCode).putInt(0).array();
+    }
+
+    private static byte[] cassandraFrame(byte opcode, byte[] body) {
+        return ByteBuffer.allocate(9 + body.length)
+                .put((byte) 0x83)
+                .put((byte) 0)
+                .putShort((short) 0)
+                .put(opcode)
+                .putInt(body.length)
+                .put(body)
+                .array();
+    }
+
+    private static byte[] httpResponse(String status, String body) {
+        return ("HTTP/1.0 " + status + "\r\nContent-Type: application/json\r\n\r\n" + body).getBytes(US_ASCII);
+    }
+
+    private static final class StubServer implements Closeable {
+        private final ServerSocket serverSocket;
+        private final Thread thread;
+        private volatile byte[] received = new byte[0];
+
+        private StubServer(byte[] response, boolean closeAfterResponding) throws IOException {
+            serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            thread = new Thread(() -> {
+                try (Socket socket = serverSocket.accept()) {
+                    InputStream input = socket.getInputStream();
+                    byte[] buffer = new byte[1024];
+                    int read = input.read(buffer);
+                    received = Arrays.copyOf(buffer, Math.max(read, 0));
+                    socket.getOutputStream().write(response);
+                    socket.getOutputStream().flush();
+                    if (!closeAfterResponding) {
+                        while (input.read(buffer) >= 0) {
+                            // hold the connection open until the client hangs up
+                        }
+                    }
+                } catch (IOException e) {
+                    // the test has finished with the server
+                }
+            }, "stub-server");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private byte[] received() {
+            return received;
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
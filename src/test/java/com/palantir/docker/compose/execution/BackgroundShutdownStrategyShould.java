@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ */
+
+package com.palantir.docker.compose.execution;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.palantir.docker.compose.DockerComposeRule;
+import com.palantir.docker.compose.configuration.ProjectName;
+import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BackgroundShutdownStrategyShould {
+
+    private final DockerComposeRule rule = mock(DockerComposeRule.class);
+    private final ShutdownStrategy teardownStrategy = mock(ShutdownStrategy.class);
+    private final BackgroundTeardowns teardowns = new BackgroundTeardowns();
+    private final ShutdownStrategy strategy = new BackgroundShutdownStrategy(teardownStrategy, teardowns);
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+        when(rule.projectName()).thenReturn(ProjectName.fromString("project"));
+    }
+
+    @Test
+    public void return_before_the_teardown_has_finished() throws Exception {
+        doAnswer(invocation -> {
+            released.await();
+            return null;
+        }).when(teardownStrategy).shutdown(rule);
+
+        strategy.shutdown(rule);
+
+        released.countDown();
+        assertThat(teardowns.awaitAll(Duration.standardSeconds(10)), is(0));
+        verify(teardownStrategy).shutdown(rule);
+    }
+
+    @Test
+    public void run_what_follows_the_shutdown_in_the_background_after_the_teardown() throws Exception {
+        List<String> steps = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            released.await();
+            steps.add("shutdown");
+            return null;
+        }).when(teardownStrategy).shutdown(rule);
+
+        strategy.shutdown(rule, () -> steps.add("stop collecting logs"));
+
+        assertThat(steps, is(empty()));
+        released.countDown();
+        assertThat(teardowns.awaitAll(Duration.standardSeconds(10)), is(0));
+        assertThat(steps, contains("shutdown", "stop collecting logs"));
+    }
+
+    @Test
+    public void report_teardowns_which_failed_when_waiting_for_them() throws Exception {
+        doThrow(new IOException("down failed")).when(teardownStrategy).shutdown(rule);
+
+        strategy.shutdown(rule);
+
+        assertThat(teardowns.awaitAll(Duration.standardSeconds(10)), is(1));
+    }
+
+    @Test
+    public void report_teardowns_which_did_not_finish_before_the_deadline() throws Exception {
+        doAnswer(invocation -> {
+            released.await();
+            return null;
+        }).when(teardownStrategy).shutdown(rule);
+
+        strategy.shutdown(rule);
+
+        assertThat(teardowns.awaitAll(Duration.millis(50)), is(1));
+        released.countDown();
+    }
+
+    @Test
+    public void tear_down_straight_away_once_the_teardowns_have_been_waited_for() throws Exception {
+        teardowns.awaitAll(Duration.standardSeconds(10));
+
+        strategy.shutdown(rule);
+
+        verify(teardownStrategy).shutdown(rule);
+    }
+
+    @Test
+    public void tear_down_the_same_project_one_teardown_after_another_and_wait_for_both() throws Exception {
+        List<String> steps = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            released.await();
+            steps.add("shutdown");
+            return null;
+        }).when(teardownStrategy).shutdown(rule);
+
+        strategy.shutdown(rule, () -> steps.add("first finished"));
+        strategy.shutdown(rule, () -> steps.add("second finished"));
+
+        released.countDown();
+        assertThat(teardowns.awaitAll(Duration.standardSeconds(10)), is(0));
+        assertThat(steps, contains("shutdown", "first finished", "shutdown", "second finished"));
+    }
+
+    @Test
+    public void wait_for_a_project_to_be_torn_down_before_it_is_started_again() throws Exception {
+        List<String> steps = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            released.await();
+            steps.add("shutdown");
+            return null;
+        }).when(teardownStrategy).shutdown(rule);
+        strategy.shutdown(rule);
+
+        Thread release = new Thread(() -> {
+            steps.add("released");
+            released.countDown();
+        });
+        release.start();
+        teardowns.await("project", Duration.standardSeconds(10));
+
+        assertThat(steps, contains("released", "shutdown"));
+    }
+}
@@ -19,12 +19,16 @@ import static org.apache.commons.io.IOUtils.toInputStream;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -97,6 +101,24 @@ public class CommandShould {
         assertThat(consumedLogLines, contains("line 1", "line 2"));
     }
 
+    @Test public void
+    destroy_the_process_when_interrupted_while_waiting_for_it() throws IOException {
+        PipedOutputStream output = new PipedOutputStream();
+        when(executedProcess.getInputStream()).thenReturn(new PipedInputStream(output));
+        doAnswer(invocation -> {
+            output.close();
+            return null;
+        }).when(executedProcess).destroy();
+
+        Thread.currentThread().interrupt();
+        try {
+            dockerComposeCommand.execute(errorHandler, "build", "web");
+            fail("Expected the command to be interrupted");
+        } catch (InterruptedException e) {
+            verify(executedProcess).destroy();
+        }
+    }
+
     // flaky test: https://circleci.com/gh/palantir/docker-compose-rule/378, 370, 367, 366
     @Ignore
     @Test public void
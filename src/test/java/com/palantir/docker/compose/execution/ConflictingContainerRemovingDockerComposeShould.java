@@ -22,6 +22,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.io.IOException;
 import org.junit.Rule;
@@ -67,6 +68,21 @@ public class ConflictingContainerRemovingDockerComposeShould {
         verify(docker).rm(ImmutableSet.of(conflictingContainer));
     }
 
+    @Test
+    public void call_rm_and_retry_up_of_some_services_if_conflicting_containers_exist() throws IOException, InterruptedException {
+        String conflictingContainer = "conflictingContainer";
+        doThrow(new DockerExecutionException("The name \"" + conflictingContainer + "\" is already in use"))
+                .doNothing()
+                .when(dockerCompose).up(ImmutableList.of("db"));
+
+        ConflictingContainerRemovingDockerCompose conflictingContainerRemovingDockerCompose =
+                new ConflictingContainerRemovingDockerCompose(dockerCompose, docker);
+        conflictingContainerRemovingDockerCompose.up(ImmutableList.of("db"));
+
+        verify(dockerCompose, times(2)).up(ImmutableList.of("db"));
+        verify(docker).rm(ImmutableSet.of(conflictingContainer));
+    }
+
     @Test
     public void retry_specified_number_of_times() throws IOException, InterruptedException {
         String conflictingContainer = "conflictingContainer";
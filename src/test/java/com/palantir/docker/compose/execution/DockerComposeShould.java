@@ -27,6 +27,7 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
 import com.palantir.docker.compose.connection.Container;
 import com.palantir.docker.compose.connection.ContainerName;
 import com.palantir.docker.compose.connection.DockerMachine;
@@ -37,6 +38,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import org.joda.time.Duration;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -69,12 +71,76 @@ public class DockerComposeShould {
         verify(executor).execute("up", "-d");
     }
 
+    @Test
+    public void call_docker_compose_build_with_the_service_on_build_of_one_service() throws IOException, InterruptedException {
+        compose.build("web");
+        verify(executor).execute("build", "web");
+    }
+
+    @Test
+    public void call_docker_compose_up_with_the_services_on_up_of_some_services() throws IOException, InterruptedException {
+        compose.up(ImmutableList.of("db", "web"));
+        verify(executor).execute("up", "-d", "db", "web");
+    }
+
+    @Test
+    public void call_docker_compose_down_with_volumes_and_the_timeout_in_seconds_on_down_with_a_stop_timeout()
+            throws IOException, InterruptedException {
+        compose.down(Duration.standardSeconds(2));
+        verify(executor).execute("down", "--volumes", "--timeout", "2");
+    }
+
+    @Test
+    public void round_a_stop_timeout_up_to_whole_seconds_on_down() throws IOException, InterruptedException {
+        compose.down(Duration.millis(2500));
+        compose.down(Duration.millis(200));
+        compose.down(Duration.ZERO);
+        verify(executor).execute("down", "--volumes", "--timeout", "3");
+        verify(executor).execute("down", "--volumes", "--timeout", "1");
+        verify(executor).execute("down", "--volumes", "--timeout", "0");
+    }
+
     @Test
     public void call_docker_compose_rm_with_force_and_volume_flags_on_rm() throws IOException, InterruptedException {
         compose.rm();
         verify(executor).execute("rm", "--force", "-v");
     }
 
+    @Test
+    public void return_the_resolved_configuration_on_config() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("services:\n  db:\n    image: postgres"));
+        String config = compose.config();
+        verify(executor).execute("config");
+        assertThat(config, is("services:\n  db:\n    image: postgres"));
+    }
+
+    @Test
+    public void parse_the_exit_code_of_an_exited_container_on_exit_code() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream(
+                "  Name      Command   State   Ports\n"
+                + "-----------------------------------\n"
+                + "dir_db_1   run.sh    Exit 137"));
+        assertThat(compose.exitCode("db"), is(137));
+        verify(executor).execute("ps", "db");
+    }
+
+    @Test
+    public void throw_when_getting_the_exit_code_of_a_running_container() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream(
+                "  Name      Command   State   Ports\n"
+                + "-----------------------------------\n"
+                + "dir_db_1   run.sh    Up      0.0.0.0:7000->7000/tcp"));
+        exception.expect(IllegalStateException.class);
+        exception.expectMessage("Container 'db' has not exited");
+        compose.exitCode("db");
+    }
+
+    @Test
+    public void call_docker_compose_logs_with_tail_flag_on_logs_with_tail() throws IOException, InterruptedException {
+        compose.logs("db", 50);
+        verify(executor).execute("logs", "--no-color", "--tail=50", "db");
+    }
+
     @Test
     public void call_docker_compose_stop_on_stop() throws IOException, InterruptedException {
         compose.stop(container);
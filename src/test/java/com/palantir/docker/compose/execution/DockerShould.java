@@ -16,11 +16,16 @@
 package com.palantir.docker.compose.execution;
 
 import static org.apache.commons.io.IOUtils.toInputStream;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
+import java.io.File;
 import java.io.IOException;
 import org.junit.Before;
 import org.junit.Test;
@@ -46,4 +51,123 @@ public class DockerShould {
         verify(executor).execute("rm", "-f", "testContainer");
     }
 
+    @Test
+    public void call_docker_logs_with_tail_flag_on_logs() throws IOException, InterruptedException {
+        docker.logs("testContainer", 50);
+
+        verify(executor).execute("logs", "--tail", "50", "testContainer");
+    }
+
+    @Test
+    public void call_docker_run_detached_with_options_before_the_image() throws IOException, InterruptedException {
+        docker.runDetached(ImmutableList.of("--network", "project_default"), "alpine", "sleep", "1000");
+
+        verify(executor).execute("run", "-d", "--network", "project_default", "alpine", "sleep", "1000");
+    }
+
+    @Test
+    public void call_docker_exec_with_the_command_after_the_container() throws IOException, InterruptedException {
+        docker.exec("testContainer", "sh", "-c", "echo hello");
+
+        verify(executor).execute("exec", "testContainer", "sh", "-c", "echo hello");
+    }
+
+    @Test
+    public void call_docker_build_with_options_before_the_context() throws IOException, InterruptedException {
+        docker.build(ImmutableList.of("--tag", "project_web"), "/code/web");
+
+        verify(executor).execute("build", "--tag", "project_web", "/code/web");
+    }
+
+    @Test
+    public void call_docker_save_with_the_output_file_then_the_image_on_save() throws IOException, InterruptedException {
+        docker.save(new File("/cache/postgres.tar"), "postgres:9.6");
+
+        verify(executor).execute("save", "--output", "/cache/postgres.tar", "postgres:9.6");
+    }
+
+    @Test
+    public void call_docker_load_with_the_input_file_on_load() throws IOException, InterruptedException {
+        docker.load(new File("/cache/postgres.tar"));
+
+        verify(executor).execute("load", "--input", "/cache/postgres.tar");
+    }
+
+    @Test
+    public void call_docker_pull_with_the_image_on_pull() throws IOException, InterruptedException {
+        docker.pull("postgres:9.6");
+
+        verify(executor).execute("pull", "postgres:9.6");
+    }
+
+    @Test
+    public void return_the_size_of_the_image_in_bytes_on_image_size() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("104857600\n"));
+
+        assertThat(docker.imageSize("postgres:9.6"), is(104857600L));
+        verify(executor).execute("image", "inspect", "--format", "{{.Size}}", "postgres:9.6");
+    }
+
+    @Test
+    public void call_docker_tag_with_the_source_then_the_target_on_tag() throws IOException, InterruptedException {
+        docker.tag("sha256:abc", "project_web");
+
+        verify(executor).execute("tag", "sha256:abc", "project_web");
+    }
+
+    @Test
+    public void list_the_id_of_each_matching_image_on_image_ids() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("sha256:abc\nsha256:def\n"));
+
+        assertThat(docker.imageIds("label=fingerprint=123"), contains("sha256:abc", "sha256:def"));
+        verify(executor).execute("images", "--quiet", "--no-trunc", "--filter", "label=fingerprint=123");
+    }
+
+    @Test
+    public void list_the_status_of_each_matching_container_on_statuses() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("Up 2 minutes\nExited (1) 5 seconds ago\n"));
+
+        assertThat(docker.statuses("label=com.docker.compose.project=abc"), contains("Up 2 minutes", "Exited (1) 5 seconds ago"));
+        verify(executor).execute("ps", "--all", "--format", "{{.Status}}", "--filter", "label=com.docker.compose.project=abc");
+    }
+
+    @Test
+    public void list_each_matching_container_in_the_given_format_on_ps() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("db abc\nweb def\n"));
+
+        assertThat(docker.ps("{{.Names}} {{.ID}}", "label=com.docker.compose.project=abc"), contains("db abc", "web def"));
+        verify(executor).execute("ps", "--all", "--format", "{{.Names}} {{.ID}}", "--filter", "label=com.docker.compose.project=abc");
+    }
+
+    @Test
+    public void call_docker_volume_create_with_each_label_before_the_name_on_create_volume() throws IOException, InterruptedException {
+        docker.createVolume("project_owner", "owner=123@host@456", "com.docker.compose.project=project");
+
+        verify(executor).execute("volume", "create", "--label", "owner=123@host@456", "--label", "com.docker.compose.project=project",
+                "project_owner");
+    }
+
+    @Test
+    public void list_each_matching_volume_in_the_given_format_on_volumes() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("project_data\nproject_owner\n"));
+
+        assertThat(docker.volumes("{{.Name}}", "label=com.docker.compose.project=project"), contains("project_data", "project_owner"));
+        verify(executor).execute("volume", "ls", "--format", "{{.Name}}", "--filter", "label=com.docker.compose.project=project");
+    }
+
+    @Test
+    public void list_each_matching_network_in_the_given_format_on_networks() throws IOException, InterruptedException {
+        when(executedProcess.getInputStream()).thenReturn(toInputStream("abc\n"));
+
+        assertThat(docker.networks("{{.ID}}", "label=com.docker.compose.project=project"), contains("abc"));
+        verify(executor).execute("network", "ls", "--format", "{{.ID}}", "--filter", "label=com.docker.compose.project=project");
+    }
+
+    @Test
+    public void pass_each_filter_to_docker_events_on_events() throws IOException {
+        docker.events("type=container", "event=die");
+
+        verify(executor).execute("events", "--filter", "type=container", "--filter", "event=die");
+    }
+
 }
@@ -4,28 +4,53 @@
 
 package com.palantir.docker.compose.execution;
 
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.ImmutableList;
 import com.palantir.docker.compose.DockerComposeRule;
 import com.palantir.docker.compose.configuration.ShutdownStrategy;
+import com.palantir.docker.compose.connection.ImmutableContainerName;
+import org.joda.time.Duration;
+import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
 
 public class GracefulShutdownStrategyShould {
 
-    @Test
-    public void call_down_then_kill_then_rm() throws Exception {
-        DockerComposeRule rule = mock(DockerComposeRule.class);
-        DockerCompose dockerCompose = mock(DockerCompose.class);
+    private final DockerComposeRule rule = mock(DockerComposeRule.class);
+    private final DockerCompose dockerCompose = mock(DockerCompose.class);
+    private final Docker docker = mock(Docker.class);
+
+    @Before
+    public void setup() {
         when(rule.dockerCompose()).thenReturn(dockerCompose);
+        when(rule.docker()).thenReturn(docker);
+        when(rule.stopTimeout()).thenReturn(Duration.standardSeconds(3));
+    }
+
+    @Test
+    public void call_down_once_with_the_stop_timeout_of_the_rule() throws Exception {
         ShutdownStrategy.GRACEFUL.shutdown(rule);
 
         InOrder inOrder = inOrder(dockerCompose);
-        inOrder.verify(dockerCompose).down();
-        inOrder.verify(dockerCompose).kill();
-        inOrder.verify(dockerCompose).rm();
+        inOrder.verify(dockerCompose).down(Duration.standardSeconds(3));
+        inOrder.verify(dockerCompose).ps();
         inOrder.verifyNoMoreInteractions();
+        verify(docker, never()).rm(anyListOf(String.class));
+    }
+
+    @Test
+    public void remove_any_containers_left_after_down() throws Exception {
+        when(dockerCompose.ps()).thenReturn(ImmutableList.of(
+                ImmutableContainerName.builder().rawName("project_db_1").semanticName("db").build()));
+
+        ShutdownStrategy.GRACEFUL.shutdown(rule);
+
+        verify(docker).rm(ImmutableList.of("project_db_1"));
     }
 }
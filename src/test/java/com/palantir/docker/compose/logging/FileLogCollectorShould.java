@@ -26,6 +26,8 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.palantir.docker.compose.TestContainerNames;
@@ -189,6 +191,23 @@ public class FileLogCollectorShould {
         logCollector.stopCollecting();
     }
 
+    @Test
+    public void collect_logs_of_containers_started_after_collection_started() throws IOException, InterruptedException {
+        when(compose.ps()).thenReturn(TestContainerNames.of("db"), TestContainerNames.of("db", "web"));
+        when(compose.writeLogs(any(String.class), any(OutputStream.class))).thenAnswer((args) -> {
+            OutputStream outputStream = (OutputStream) args.getArguments()[1];
+            IOUtils.write("log", outputStream);
+            return false;
+        });
+
+        logCollector.startCollecting(compose);
+        logCollector.startCollectingNewContainers(compose);
+        logCollector.stopCollecting();
+
+        assertThat(logDirectory.listFiles(), arrayContainingInAnyOrder(fileWithName("db.log"), fileWithName("web.log")));
+        verify(compose, times(1)).writeLogs(eq("db"), any(OutputStream.class));
+    }
+
     @Test
     public void throw_exception_when_trying_to_start_a_started_collector_a_second_time()
             throws IOException, InterruptedException {
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.sidecar;
+
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.failureWithMessage;
+import static com.palantir.docker.compose.connection.waiting.SuccessOrFailureMatchers.successful;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.docker.compose.connection.DockerPort;
+import com.palantir.docker.compose.connection.Ports;
+import com.palantir.docker.compose.connection.waiting.SuccessOrFailure;
+import com.palantir.docker.compose.execution.Docker;
+import com.palantir.docker.compose.execution.DockerCompose;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SidecarProberShould {
+    private static final String PROBE_ID = "abc123";
+
+    private final Docker docker = mock(Docker.class);
+    private final SidecarProber prober = new SidecarProber(docker, "project_default");
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        when(docker.runDetached(anyListOf(String.class), anyString(), anyVararg())).thenReturn(PROBE_ID);
+    }
+
+    @Test
+    public void start_the_probe_container_on_the_project_network() throws IOException, InterruptedException {
+        prober.start();
+
+        verify(docker).runDetached(
+                ImmutableList.of("--rm", "--network", "project_default", "--label", "com.palantir.docker.compose.probe=project_default"),
+                SidecarProber.DEFAULT_IMAGE, "sleep", String.valueOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void remove_the_probe_container_on_stop() throws IOException, InterruptedException {
+        prober.start();
+        prober.stop();
+
+        verify(docker).rm(PROBE_ID);
+    }
+
+    @Test
+    public void report_the_ports_which_are_not_open() throws IOException, InterruptedException {
+        when(docker.exec(eq(PROBE_ID), eq("sh"), eq("-c"), anyString())).thenReturn("1 FAIL\n0 OK\n");
+        prober.start();
+
+        assertThat(prober.portsAreOpen("db", ImmutableList.of(5432, 8080)),
+                is(failureWithMessage("The following ports failed to open: [8080]")));
+    }
+
+    @Test
+    public void start_the_probe_container_from_the_given_image() throws IOException, InterruptedException {
+        new SidecarProber(docker, "project_default", "registry.local/alpine:3.18").start();
+
+        verify(docker).runDetached(anyListOf(String.class), eq("registry.local/alpine:3.18"), anyVararg());
+    }
+
+    @Test
+    public void look_up_the_ports_of_a_probed_container_only_once() throws IOException, InterruptedException {
+        DockerCompose dockerCompose = mock(DockerCompose.class);
+        when(dockerCompose.ports("db")).thenReturn(new Ports(new DockerPort("127.0.0.1", 15432, 5432)));
+        when(docker.exec(eq(PROBE_ID), eq("sh"), eq("-c"), anyString())).thenReturn("0 OK\n");
+        prober.start();
+        SidecarProbedContainer db = new SidecarProbedContainer("db", dockerCompose, prober);
+
+        assertThat(db.areAllPortsOpen(), is(successful()));
+        assertThat(db.areAllPortsOpen(), is(successful()));
+        verify(dockerCompose, times(1)).ports("db");
+    }
+
+    @Test
+    public void pass_when_the_url_gives_a_http_response() throws IOException, InterruptedException {
+        when(docker.exec(eq(PROBE_ID), eq("sh"), eq("-c"), anyString())).thenReturn("0 OK\n");
+        prober.start();
+
+        assertThat(prober.respondsOverHttp("http://web:8080/health"), is(successful()));
+    }
+
+    @Test
+    public void fail_probes_when_the_probe_container_has_not_been_started() {
+        assertThat(prober.respondsOverHttp("http://web:8080/health"),
+                is(failureWithMessage(containsString("The probe container has not been started"))));
+    }
+
+    @Test(timeout = 5000L)
+    public void batch_probes_requested_while_a_cycle_is_running_into_one_exec() throws Exception {
+        CountDownLatch firstCycleStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstCycle = new CountDownLatch(1);
+        when(docker.exec(eq(PROBE_ID), eq("sh"), eq("-c"), anyString()))
+                .thenAnswer(invocation -> {
+                    firstCycleStarted.countDown();
+                    releaseFirstCycle.await();
+                    return "0 OK\n";
+                })
+                .thenReturn("0 OK\n1 OK\n");
+        prober.start();
+
+        CompletableFuture<SuccessOrFailure> first = CompletableFuture.supplyAsync(() -> prober.portsAreOpen("db", ImmutableList.of(5432)));
+        firstCycleStarted.await();
+        CompletableFuture<SuccessOrFailure> second = CompletableFuture.supplyAsync(() -> prober.portsAreOpen("db2", ImmutableList.of(5432)));
+        CompletableFuture<SuccessOrFailure> third = CompletableFuture.supplyAsync(() -> prober.respondsOverHttp("http://web:8080"));
+        Thread.sleep(TimeUnit.MILLISECONDS.toMillis(200));
+        releaseFirstCycle.countDown();
+
+        assertThat(first.get(), is(successful()));
+        assertThat(second.get(), is(successful()));
+        assertThat(third.get(), is(successful()));
+        verify(docker, times(2)).exec(eq(PROBE_ID), eq("sh"), eq("-c"), anyString());
+    }
+
+    @Test
+    public void run_every_probe_of_a_cycle_in_the_background_and_wait_for_them_all() {
+        assertThat(SidecarProber.script(ImmutableList.of("nc -z -w 1 'db' 5432", "nc -z -w 1 'db2' 5432")), is(
+                "(if nc -z -w 1 'db' 5432; then echo '0 OK'; else echo '0 FAIL'; fi) &" + System.lineSeparator()
+                        + "(if nc -z -w 1 'db2' 5432; then echo '1 OK'; else echo '1 FAIL'; fi) &" + System.lineSeparator()
+                        + "wait"));
+    }
+}
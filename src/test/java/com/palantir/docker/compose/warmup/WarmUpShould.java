@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.warmup;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Iterables;
+import com.palantir.docker.compose.connection.Cluster;
+import com.palantir.docker.compose.connection.waiting.Attempt;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import org.joda.time.Duration;
+import org.junit.Test;
+
+public class WarmUpShould {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Cluster cluster = mock(Cluster.class);
+    private final ManualTicker ticker = new ManualTicker();
+
+    @Test
+    public void stop_once_the_latency_settles_down() {
+        WarmUpReport report = warmUpSendingRequestsTaking(50, 50, 20, 20, 10, 10, 10, 10, 10, 10)
+                .build()
+                .run(cluster, ticker);
+
+        assertThat(report.converged(), is(true));
+        assertThat(report.requests(), is(8));
+        assertThat(report.windowLatencies(), contains(50 * MILLIS, 20 * MILLIS, 10 * MILLIS, 10 * MILLIS));
+    }
+
+    @Test
+    public void give_up_when_the_budget_runs_out() {
+        WarmUpReport report = warmUpSendingRequestsTaking(Iterables.cycle(100L, 100L, 300L, 300L).iterator())
+                .budget(Duration.standardSeconds(2))
+                .build()
+                .run(cluster, ticker);
+
+        assertThat(report.converged(), is(false));
+        assertThat(report.requests(), is(11));
+        assertThat(report.describe(), containsString("ran out of time without converging"));
+    }
+
+    @Test
+    public void not_settle_on_a_window_containing_failures() {
+        WarmUp warmUp = WarmUp.builder()
+                .attempts("flaky", new Attempt() {
+                    private int calls = 0;
+
+                    @Override
+                    public boolean attempt() {
+                        ticker.advance(10 * MILLIS);
+                        calls++;
+                        return calls != 3;
+                    }
+                })
+                .windowSize(2)
+                .build();
+
+        WarmUpReport report = warmUp.run(cluster, ticker);
+
+        assertThat(report.failures(), is(1));
+        assertThat(report.requests(), is(6));
+    }
+
+    @Test
+    public void describe_the_warm_up_curve() {
+        WarmUpReport report = warmUpSendingRequestsTaking(50, 50, 10, 10, 10, 10).build().run(cluster, ticker);
+
+        assertThat(report.describe(), is("Warm-up of scripted converged after 6 requests (0 failed) in 0.1s. "
+                + "p95 latency of each 2 requests: 50.0ms, 10.0ms, 10.0ms"));
+    }
+
+    private WarmUp.Builder warmUpSendingRequestsTaking(long... latenciesInMillis) {
+        return warmUpSendingRequestsTaking(LongStream.of(latenciesInMillis).iterator());
+    }
+
+    private WarmUp.Builder warmUpSendingRequestsTaking(Iterator<Long> latenciesInMillis) {
+        return WarmUp.builder()
+                .attempts("scripted", () -> {
+                    ticker.advance(latenciesInMillis.next() * MILLIS);
+                    return true;
+                })
+                .windowSize(2);
+    }
+
+    private static class ManualTicker extends Ticker {
+        private long nanos = 0;
+
+        void advance(long advanceNanos) {
+            nanos += advanceNanos;
+        }
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Palantir Technologies, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.docker.compose.watchdog;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Throwables;
+import com.palantir.docker.compose.connection.ContainerDeath;
+import com.palantir.docker.compose.execution.Docker;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+public class DockerEventsWatchdogShould {
+
+    private static final String DB_DIED = "2016-10-19T10:00:00.000000000Z container die 4f2a8c (exitCode=137, "
+            + "com.docker.compose.project=abc123, image=postgres, name=abc123_db_1)";
+    private static final String DB_OOM = "2016-10-19T10:00:00.000000000Z container oom 4f2a8c ("
+            + "com.docker.compose.project=abc123, image=postgres, name=abc123_db_1)";
+    private static final String SETUP_FINISHED = "2016-10-19T10:00:00.000000000Z container die 9b1e3d (exitCode=0, "
+            + "com.docker.compose.project=abc123, image=flyway, name=abc123_migrations_1)";
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    private static final Description A_CLASS = Description.createSuiteDescription(DockerEventsWatchdogShould.class);
+    private static final Description A_TEST = Description.createTestDescription(DockerEventsWatchdogShould.class, "test");
+
+    private final Docker docker = mock(Docker.class);
+    private final DockerEventsWatchdog watchdog = new DockerEventsWatchdog();
+
+    @Before
+    public void setup() throws IOException, InterruptedException {
+        when(docker.logs("abc123_db_1", 50)).thenReturn("FATAL: could not map anonymous shared memory");
+    }
+
+    @Test
+    public void record_a_container_dying_with_its_exit_code_and_log_tail() {
+        watchdog.handleEvent(DB_DIED, docker);
+
+        assertThat(watchdog.deaths(), contains(ContainerDeath.builder()
+                .containerName("db")
+                .exitCode(137)
+                .logTail("FATAL: could not map anonymous shared memory")
+                .build()));
+    }
+
+    @Test
+    public void record_containers_killed_for_running_out_of_memory() {
+        watchdog.handleEvent(DB_OOM, docker);
+        watchdog.handleEvent(DB_DIED, docker);
+
+        assertThat(watchdog.deaths().get(0).oomKilled(), is(true));
+    }
+
+    @Test
+    public void ignore_containers_which_exit_cleanly() {
+        watchdog.handleEvent(SETUP_FINISHED, docker);
+
+        assertThat(watchdog.deaths(), is(empty()));
+    }
+
+    @Test
+    public void ignore_events_it_does_not_understand() {
+        watchdog.handleEvent("2016-10-19T10:00:00.000000000Z network connect 1a2b3c (container=4f2a8c, name=abc123_default)", docker);
+
+        assertThat(watchdog.deaths(), is(empty()));
+    }
+
+    @Test(timeout = 5000L)
+    public void fail_running_tests_as_soon_as_a_container_dies() throws Exception {
+        CountDownLatch testStarted = new CountDownLatch(1);
+        Statement slowTest = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                testStarted.countDown();
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            }
+        };
+
+        new Thread(() -> {
+            try {
+                testStarted.await();
+                watchdog.handleEvent(DB_DIED, docker);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).start();
+
+        exception.expect(ContainerDiedException.class);
+        exception.expectMessage("Container 'db' exited with code 137");
+        exception.expectMessage("could not map anonymous shared memory");
+        evaluate(watchdog.guard(slowTest, A_TEST));
+    }
+
+    @Test
+    public void report_the_failures_of_tests_when_no_container_has_died() throws Exception {
+        Statement failingTest = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                throw new AssertionError("expected 1 but was 2");
+            }
+        };
+
+        exception.expect(AssertionError.class);
+        exception.expectMessage("expected 1 but was 2");
+        evaluate(watchdog.guard(failingTest, A_TEST));
+    }
+
+    @Test
+    public void run_tests_on_the_calling_thread_and_leave_it_uninterrupted() throws Exception {
+        Thread caller = Thread.currentThread();
+        Statement dyingTest = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                assertThat(Thread.currentThread(), is(caller));
+                watchdog.handleEvent(DB_DIED, docker);
+            }
+        };
+
+        try {
+            evaluate(watchdog.guard(dyingTest, A_TEST));
+            fail("Expected the test to fail when the container died");
+        } catch (ContainerDiedException e) {
+            assertThat(Thread.currentThread().isInterrupted(), is(false));
+        }
+    }
+
+    @Test
+    public void report_a_death_against_the_test_which_was_running_rather_than_the_whole_class() throws Exception {
+        List<String> failures = new ArrayList<>();
+        Statement tests = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                Statement dyingTest = new Statement() {
+                    @Override
+                    public void evaluate() throws Throwable {
+                        watchdog.handleEvent(DB_DIED, docker);
+                    }
+                };
+                try {
+                    watchdog.guard(dyingTest, A_TEST).evaluate();
+                } catch (ContainerDiedException e) {
+                    failures.add(e.death().containerName());
+                }
+                watchdog.guard(new Statement() {
+                    @Override
+                    public void evaluate() {
+                        assertThat(Thread.currentThread().isInterrupted(), is(false));
+                    }
+                }, A_TEST).evaluate();
+            }
+        };
+
+        evaluate(watchdog.guard(tests, A_CLASS));
+
+        assertThat(failures, contains("db"));
+    }
+
+    @Test
+    public void fail_a_class_of_tests_once_they_have_finished_when_a_container_died() throws Exception {
+        Statement tests = new Statement() {
+            @Override
+            public void evaluate() throws Throwable {
+                watchdog.handleEvent(DB_DIED, docker);
+                assertThat(Thread.currentThread().isInterrupted(), is(false));
+            }
+        };
+
+        exception.expect(ContainerDiedException.class);
+        evaluate(watchdog.guard(tests, A_CLASS));
+    }
+
+    private static void evaluate(Statement statement) throws Exception {
+        try {
+            statement.evaluate();
+        } catch (Throwable e) {
+            Throwables.propagateIfPossible(e, Exception.class);
+            throw new RuntimeException(e);
+        }
+    }
+}